@@ -0,0 +1,52 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Channel;
+import com.example.chat.model.NewChannel;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelDirectoryBenchmark {
+
+    @Param({"20", "1000", "100000"})
+    int channels;
+
+    private InMemoryChannelRepository repository;
+
+    @Setup
+    public void setUp() {
+        var messageRepository = new InMemoryMessageRepository();
+        repository = new InMemoryChannelRepository(messageRepository);
+        var timestamp = Instant.now();
+        for (int i = 0; i < channels; i++) {
+            var channel = repository.save(new NewChannel("channel-" + Integer.toHexString(i * 0x9E3779B9)));
+            messageRepository.save(new NewMessage("hello", channel.getId(), "benchmark", timestamp));
+        }
+    }
+
+    @Benchmark
+    public List<Channel> findAll() {
+        return repository.findAll();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Channel;
+import com.example.chat.model.NewChannel;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paging, prefix search and creation against a channel directory without messages, at sizes where copying or scanning
+ * the whole directory would dominate. The directory is rebuilt for every iteration so that {@code create} does not let
+ * it grow without bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ChannelIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    int channels;
+
+    private InMemoryChannelRepository repository;
+    private String[] names;
+    private int created;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = new InMemoryChannelRepository(new InMemoryMessageRepository());
+        names = new String[channels];
+        created = 0;
+        for (int i = 0; i < channels; i++) {
+            names[i] = "Channel-" + Integer.toHexString(i * 0x9E3779B9);
+            repository.save(new NewChannel(names[i]));
+        }
+    }
+
+    @Benchmark
+    public List<Channel> page() {
+        return repository.findPage(randomName(), null, 50);
+    }
+
+    @Benchmark
+    public List<Channel> prefixSearch() {
+        var name = randomName();
+        return repository.findByNamePrefix(name.substring(0, Math.min(name.length(), 10)), 20);
+    }
+
+    @Benchmark
+    public Channel create() {
+        return repository.save(new NewChannel(names[created++ % channels] + "-copy"));
+    }
+
+    private String randomName() {
+        return names[ThreadLocalRandom.current().nextInt(channels)];
+    }
+}
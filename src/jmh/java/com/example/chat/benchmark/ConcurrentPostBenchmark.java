@@ -0,0 +1,108 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.bus.impl.LocalMessageBus;
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import com.example.chat.service.ChannelPostingExecutor;
+import com.example.chat.service.ChannelSinkRegistry;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.PostRateLimiter;
+import com.example.chat.service.ReadMarkerTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many threads posting to a handful of channels, either directly or through {@link ChatService#postMessageAsync}.
+ * Every operation posts {@link #POSTS} messages; the asynchronous variant waits for the last one only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(32)
+public class ConcurrentPostBenchmark {
+
+    private static final int POSTS = 100;
+
+    @Param({"1", "8"})
+    int channels;
+
+    private ChatService chatService;
+    private ChannelPostingExecutor postingExecutor;
+    private ReadMarkerTracker readMarkerTracker;
+    private String[] channelIds;
+    private final AtomicInteger posters = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Poster {
+        String channelId;
+
+        @Setup
+        public void setUp(ConcurrentPostBenchmark benchmark) {
+            channelId = benchmark.channelIds[benchmark.posters.getAndIncrement() % benchmark.channelIds.length];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var messageRepository = new InMemoryMessageRepository();
+        var channelRepository = new InMemoryChannelRepository(messageRepository);
+        var sinkRegistry = new ChannelSinkRegistry();
+        var clock = Clock.systemUTC();
+        var metrics = new ChatMetrics(new SimpleMeterRegistry(), messageRepository, sinkRegistry, clock);
+        postingExecutor = new ChannelPostingExecutor();
+        readMarkerTracker = new ReadMarkerTracker(new InMemoryReadMarkerRepository(), new ReadMarkerProperties());
+        chatService = new ChatService(messageRepository, channelRepository, sinkRegistry, new LocalMessageBus(), metrics,
+                postingExecutor, readMarkerTracker, new PostRateLimiter(), clock);
+        chatService.afterPropertiesSet();
+        channelIds = new String[channels];
+        for (int i = 0; i < channels; i++) {
+            channelIds[i] = chatService.createChannel("benchmark" + i).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        postingExecutor.destroy();
+        readMarkerTracker.destroy();
+    }
+
+    @Benchmark
+    public void direct(Poster poster) {
+        for (int i = 0; i < POSTS; i++) {
+            chatService.postMessage(poster.channelId, "The quick brown fox jumps over the lazy dog");
+        }
+    }
+
+    @Benchmark
+    public Object async(Poster poster) {
+        CompletableFuture<?> last = null;
+        for (int i = 0; i < POSTS; i++) {
+            last = chatService.postMessageAsync(poster.channelId, "The quick brown fox jumps over the lazy dog").toFuture();
+        }
+        return last.join();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentReadBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+    private static final int FETCH_MAX = 50;
+
+    private InMemoryMessageRepository repository;
+    private NewMessage message;
+    private String cursor;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryMessageRepository();
+        message = new NewMessage("The quick brown fox jumps over the lazy dog", CHANNEL, "benchmark", Instant.now());
+        for (int i = 0; i < 100_000; i++) {
+            var saved = repository.save(message);
+            if (i == 99_000) {
+                cursor = saved.getMessageId();
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public List<Message> read1() {
+        return repository.findLatest(CHANNEL, FETCH_MAX, cursor);
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public Message write1() {
+        return repository.save(message);
+    }
+
+    @Benchmark
+    @Group("readers8")
+    @GroupThreads(8)
+    public List<Message> read8() {
+        return repository.findLatest(CHANNEL, FETCH_MAX, cursor);
+    }
+
+    @Benchmark
+    @Group("readers8")
+    @GroupThreads(1)
+    public Message write8() {
+        return repository.save(message);
+    }
+
+    @Benchmark
+    @Group("readers32")
+    @GroupThreads(32)
+    public List<Message> read32() {
+        return repository.findLatest(CHANNEL, FETCH_MAX, cursor);
+    }
+
+    @Benchmark
+    @Group("readers32")
+    @GroupThreads(1)
+    public Message write32() {
+        return repository.save(message);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FindLatestBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+    private static final int FETCH_MAX = 50;
+
+    @Param({"1000", "100000", "1000000"})
+    int archiveSize;
+
+    private InMemoryMessageRepository repository;
+    private String recentCursor;
+    private String distantCursor;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryMessageRepository();
+        var timestamp = Instant.now();
+        for (int i = 0; i < archiveSize; i++) {
+            var saved = repository.save(new NewMessage("message" + i, CHANNEL, "benchmark", timestamp));
+            if (i == 0) {
+                distantCursor = saved.getMessageId();
+            }
+            if (i == archiveSize - FETCH_MAX / 2) {
+                recentCursor = saved.getMessageId();
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Message> withoutCursor() {
+        return repository.findLatest(CHANNEL, FETCH_MAX);
+    }
+
+    @Benchmark
+    public List<Message> withRecentCursor() {
+        return repository.findLatest(CHANNEL, FETCH_MAX, recentCursor);
+    }
+
+    @Benchmark
+    public List<Message> withDistantCursor() {
+        return repository.findLatest(CHANNEL, FETCH_MAX, distantCursor);
+    }
+
+    @Benchmark
+    public List<Message> beforeMiddle() {
+        return repository.findBefore(CHANNEL, archiveSize / 2, FETCH_MAX);
+    }
+
+    @Benchmark
+    public List<Message> aroundDistantCursor() {
+        return repository.findAround(CHANNEL, distantCursor, FETCH_MAX / 2);
+    }
+}
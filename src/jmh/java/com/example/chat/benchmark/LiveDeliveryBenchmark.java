@@ -0,0 +1,103 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.bus.impl.LocalMessageBus;
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import com.example.chat.service.ChannelPostingExecutor;
+import com.example.chat.service.ChannelSinkRegistry;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.PostRateLimiter;
+import com.example.chat.service.ReadMarkerTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.Disposable;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LiveDeliveryBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int subscribers;
+
+    private ReadMarkerTracker readMarkerTracker;
+    private ChatService chatService;
+    private String channelId;
+    private List<Disposable> subscriptions;
+    private LongAdder delivered;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Deliveries {
+
+        private LiveDeliveryBenchmark benchmark;
+
+        @Setup(Level.Iteration)
+        public void setUp(LiveDeliveryBenchmark benchmark) {
+            this.benchmark = benchmark;
+            benchmark.delivered.reset();
+        }
+
+        public long deliveredMessages() {
+            return benchmark.delivered.sum();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var messageRepository = new InMemoryMessageRepository();
+        var channelRepository = new InMemoryChannelRepository(messageRepository);
+        var sinkRegistry = new ChannelSinkRegistry();
+        var clock = Clock.systemUTC();
+        var metrics = new ChatMetrics(new SimpleMeterRegistry(), messageRepository, sinkRegistry, clock);
+        readMarkerTracker = new ReadMarkerTracker(new InMemoryReadMarkerRepository(), new ReadMarkerProperties());
+        chatService = new ChatService(messageRepository, channelRepository, sinkRegistry, new LocalMessageBus(), metrics,
+                new ChannelPostingExecutor(), readMarkerTracker, new PostRateLimiter(), clock);
+        chatService.afterPropertiesSet();
+        channelId = chatService.createChannel("benchmark").getId();
+        var otherChannelId = chatService.createChannel("other").getId();
+
+        delivered = new LongAdder();
+        subscriptions = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(chatService.liveMessages(channelId).subscribe(batch -> delivered.add(batch.getMessages().size())));
+            subscriptions.add(chatService.liveMessages(otherChannelId).subscribe());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        subscriptions.forEach(Disposable::dispose);
+        readMarkerTracker.destroy();
+    }
+
+    @Benchmark
+    public void postMessage(Deliveries deliveries) {
+        chatService.postMessage(channelId, "The quick brown fox jumps over the lazy dog");
+    }
+}
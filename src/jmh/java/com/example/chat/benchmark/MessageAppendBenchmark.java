@@ -0,0 +1,76 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.impl.AppendOnlyLog;
+import com.example.chat.repository.impl.FileMessageRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageAppendBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+
+    @Param({"memory", "file"})
+    String storage;
+
+    @Param({"128"})
+    int fsyncEvery;
+
+    private Path directory;
+    private MessageRepository repository;
+    private NewMessage message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        message = new NewMessage("The quick brown fox jumps over the lazy dog", CHANNEL, "benchmark", Instant.now());
+        if (storage.equals("file")) {
+            directory = Files.createTempDirectory("chat-benchmark");
+            repository = new FileMessageRepository(new AppendOnlyLog(directory, 64L * 1024 * 1024, fsyncEvery, Duration.ofSeconds(1)));
+        } else {
+            repository = new InMemoryMessageRepository();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (repository instanceof FileMessageRepository fileRepository) {
+            fileRepository.close();
+            try (var files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public Message append() {
+        return repository.save(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.repository.impl.TimeOrderedIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class MessageIdBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+
+    private long sequenceNumber;
+    private String cursor;
+
+    @Setup
+    public void setUp() {
+        cursor = TimeOrderedIds.messageId(System.currentTimeMillis(), CHANNEL, 123_456);
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String timeOrdered() {
+        return TimeOrderedIds.messageId(System.currentTimeMillis(), CHANNEL, ++sequenceNumber);
+    }
+
+    @Benchmark
+    public long decodeCursor() {
+        return TimeOrderedIds.sequenceNumber(cursor, CHANNEL);
+    }
+}
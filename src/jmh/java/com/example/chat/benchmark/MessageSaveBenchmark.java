@@ -0,0 +1,80 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSaveBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Repository {
+
+        @Param({"1", "64"})
+        int channels;
+
+        InMemoryMessageRepository repository;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            repository = new InMemoryMessageRepository();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private NewMessage[] messages;
+
+        @Setup(Level.Trial)
+        public void setUp(Repository repository) {
+            messages = new NewMessage[repository.channels];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = new NewMessage("The quick brown fox jumps over the lazy dog", "channel" + i, "benchmark", Instant.now());
+            }
+        }
+
+        NewMessage next() {
+            return messages.length == 1 ? messages[0] : messages[ThreadLocalRandom.current().nextInt(messages.length)];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Message oneWriter(Repository repository, Writer writer) {
+        return repository.repository.save(writer.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Message fourWriters(Repository repository, Writer writer) {
+        return repository.repository.save(writer.next());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Message maxWriters(Repository repository, Writer writer) {
+        return repository.repository.save(writer.next());
+    }
+}
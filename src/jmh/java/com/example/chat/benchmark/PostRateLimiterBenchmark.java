@@ -0,0 +1,75 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.configuration.RateLimitProperties;
+import com.example.chat.exception.RateLimitExceededException;
+import com.example.chat.service.PostRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission cost of {@link PostRateLimiter} with many threads posting, either all as one author to one channel, the
+ * worst case for contention on a bucket, or as random authors out of a large population to random channels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class PostRateLimiterBenchmark {
+
+    @Param({"1", "100000"})
+    int authors;
+
+    private PostRateLimiter limiter;
+    private String[] authorNames;
+    private String[] channelIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var properties = new RateLimitProperties();
+        properties.setAuthor(new RateLimitProperties.Limit(1e9, 1_000_000));
+        properties.setChannel(new RateLimitProperties.Limit(1e9, 1_000_000));
+        limiter = new PostRateLimiter(properties);
+        authorNames = new String[authors];
+        for (int i = 0; i < authors; i++) {
+            authorNames[i] = "author" + i;
+        }
+        channelIds = new String[Math.min(authors, 100)];
+        for (int i = 0; i < channelIds.length; i++) {
+            channelIds[i] = "channel" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        limiter.destroy();
+    }
+
+    @Benchmark
+    public boolean acquire() {
+        var random = ThreadLocalRandom.current();
+        try {
+            limiter.acquire(authorNames[random.nextInt(authorNames.length)], channelIds[random.nextInt(channelIds.length)], 1);
+            return true;
+        } catch (RateLimitExceededException e) {
+            return false;
+        }
+    }
+}
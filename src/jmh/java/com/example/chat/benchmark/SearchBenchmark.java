@@ -0,0 +1,76 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SearchBenchmark {
+
+    private static final String CHANNEL = "benchmark";
+    private static final String[] WORDS = {"deploy", "build", "coffee", "review", "merge", "release", "lunch", "standup"};
+
+    @Param({"100000", "1000000"})
+    int archiveSize;
+
+    private InMemoryMessageRepository repository;
+
+    @Setup
+    public void setUp() {
+        repository = new InMemoryMessageRepository();
+        var timestamp = Instant.now();
+        for (int i = 0; i < archiveSize; i++) {
+            var text = "%s the %s of ticket %d".formatted(WORDS[i % WORDS.length], WORDS[i / 7 % WORDS.length], i % 10_000);
+            repository.save(new NewMessage(text, CHANNEL, "benchmark", timestamp));
+        }
+        repository.index();
+    }
+
+    @Benchmark
+    public List<Message> commonTerm() {
+        return repository.search(CHANNEL, "deploy", 50);
+    }
+
+    @Benchmark
+    public List<Message> twoTerms() {
+        return repository.search(CHANNEL, "deploy merge", 50);
+    }
+
+    @Benchmark
+    public List<Message> rareTerm() {
+        return repository.search(CHANNEL, "4242", 50);
+    }
+
+    @Benchmark
+    public IndexSize indexSize(IndexSize size) {
+        size.bytesPerMessage = repository.searchIndexBytes(CHANNEL) / archiveSize;
+        return size;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class IndexSize {
+        public long bytesPerMessage;
+    }
+}
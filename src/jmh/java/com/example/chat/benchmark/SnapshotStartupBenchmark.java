@@ -0,0 +1,104 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.NewChannel;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.RetentionPolicy;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time from opening the repositories on a snapshot directory to answering the first history request, against the
+ * total number of archived messages spread over {@link #CHANNELS} channels. {@code firstRequest} loads only the
+ * requested channel, {@code allChannels} the whole archive as an eager startup would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SnapshotStartupBenchmark {
+
+    private static final int CHANNELS = 100;
+
+    @Param({"100000", "1000000"})
+    int messages;
+
+    private Path directory;
+    private String firstChannelId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshots");
+        var messageRepository = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(),
+                InMemoryMessageRepository.DEFAULT_SEGMENT_SIZE, directory);
+        var channelRepository = new InMemoryChannelRepository(messageRepository, directory);
+        var channelIds = new ArrayList<String>();
+        for (int i = 0; i < CHANNELS; i++) {
+            channelIds.add(channelRepository.save(new NewChannel("channel" + i)).getId());
+        }
+        var batch = new ArrayList<NewMessage>();
+        var timestamp = Instant.now();
+        for (int i = 0; i < messages / CHANNELS; i++) {
+            batch.clear();
+            for (var channelId : channelIds) {
+                batch.add(new NewMessage("The quick brown fox jumps over the lazy dog " + i, channelId, "user" + i % 100, timestamp));
+            }
+            messageRepository.saveAll(batch);
+        }
+        messageRepository.writeSnapshot();
+        channelRepository.writeSnapshot();
+        firstChannelId = channelRepository.findAll().get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Object firstRequest() {
+        var messageRepository = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(),
+                InMemoryMessageRepository.DEFAULT_SEGMENT_SIZE, directory);
+        var channelRepository = new InMemoryChannelRepository(messageRepository, directory);
+        channelRepository.findAll();
+        return messageRepository.findLatest(firstChannelId, 50);
+    }
+
+    @Benchmark
+    public long allChannels() {
+        var messageRepository = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(),
+                InMemoryMessageRepository.DEFAULT_SEGMENT_SIZE, directory);
+        var channelRepository = new InMemoryChannelRepository(messageRepository, directory);
+        long count = 0;
+        for (var channel : channelRepository.findAll()) {
+            count += messageRepository.count(channel.getId());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chat.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.HdrHistogram.Histogram;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Records the duration of every stop-the-world collection and the heap left in use after it, from the collectors'
+ * JMX notifications. Concurrent cycles run alongside the application and are not counted as pauses.
+ */
+class GcMonitor implements NotificationListener, AutoCloseable {
+
+    private final Histogram pauses = new Histogram(3);
+    private long heapAfterLastGc;
+
+    GcMonitor() {
+        for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long heapAfterGc = 0;
+        for (MemoryUsage usage : info.getGcInfo().getMemoryUsageAfterGc().values()) {
+            heapAfterGc += usage.getUsed();
+        }
+        synchronized (this) {
+            heapAfterLastGc = heapAfterGc;
+            if (!info.getGcName().contains("Concurrent")) {
+                pauses.recordValue(info.getGcInfo().getDuration());
+            }
+        }
+    }
+
+    synchronized Histogram pausesMillis() {
+        return pauses.copy();
+    }
+
+    synchronized long heapAfterLastGc() {
+        return heapAfterLastGc;
+    }
+
+    synchronized void reset() {
+        pauses.reset();
+    }
+
+    @Override
+    public void close() {
+        for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.chat.loadtest;
+
+import com.example.chat.bus.impl.LocalMessageBus;
+import com.example.chat.configuration.DeliveryProperties;
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
+import com.example.chat.repository.RetentionPolicy;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import com.example.chat.service.ChannelPostingExecutor;
+import com.example.chat.service.ChannelSinkRegistry;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.PostRateLimiter;
+import com.example.chat.service.ReadMarkerTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@link ChatService} in-process with a fixed posting rate and a Zipf-distributed population of live
+ * subscribers, and reports the end-to-end latency from posting a message to its arrival at each subscriber.
+ * <p>
+ * Every message carries the time it was scheduled to be posted, not the time it actually was, so a stalled poster
+ * shows up as latency instead of silently lowering the load. Interval and total histograms, GC pauses, heap growth
+ * and dropped deliveries are written to the report directory; see {@link LoadTestOptions} for the load shape.
+ */
+public class LoadTest {
+
+    static final int HEADER_LENGTH = 17;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LoadTestOptions options;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChannelPostingExecutor postingExecutor = new ChannelPostingExecutor();
+    private final ReadMarkerTracker readMarkerTracker = new ReadMarkerTracker(new InMemoryReadMarkerRepository(), new ReadMarkerProperties());
+    private final InMemoryMessageRepository messageRepository;
+    private final ChatService chatService;
+    private final Recorder latencies = new Recorder(3);
+    private final LongAdder posted = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedPosts = new LongAdder();
+    private final String padding;
+    private volatile boolean running = true;
+
+    public LoadTest(LoadTestOptions options) {
+        this.options = options;
+        messageRepository = new InMemoryMessageRepository(new RetentionPolicy(options.getRetention(), null, 0), Clock.systemUTC());
+        var channelRepository = new InMemoryChannelRepository(messageRepository);
+        var deliveryProperties = new DeliveryProperties();
+        deliveryProperties.setQueueSize(options.getQueueSize());
+        deliveryProperties.setMaxBatchDelay(options.getMaxBatchDelay());
+        deliveryProperties.setOverflow(options.getOverflow());
+        var sinkRegistry = new ChannelSinkRegistry(deliveryProperties);
+        var clock = Clock.systemUTC();
+        var metrics = new ChatMetrics(meterRegistry, messageRepository, sinkRegistry, clock);
+        chatService = new ChatService(messageRepository, channelRepository, sinkRegistry, new LocalMessageBus(), metrics,
+                postingExecutor, readMarkerTracker, new PostRateLimiter(), clock);
+        chatService.afterPropertiesSet();
+        padding = "x".repeat(options.getMessageSize() - HEADER_LENGTH);
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = LoadTestOptions.parse(args);
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        System.out.println("Load test: " + options);
+        var channelIds = new String[options.getChannels()];
+        for (int i = 0; i < channelIds.length; i++) {
+            channelIds[i] = chatService.createChannel("load-test-" + i).getId();
+        }
+        var subscriptions = subscribe(channelIds);
+        var posterThreads = startPosters(channelIds);
+
+        Files.createDirectories(options.getReport());
+        var total = new Histogram(3);
+        try (var gcMonitor = new GcMonitor();
+             var intervalLog = new PrintStream(Files.newOutputStream(options.getReport().resolve("latency.hlog")))) {
+            var logWriter = new HistogramLogWriter(intervalLog);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(System.currentTimeMillis());
+            logWriter.outputLegend();
+
+            long start = System.nanoTime();
+            runPhase("warmup", start, options.getWarmup(), null, gcMonitor, logWriter);
+            var baseline = new Baseline(usedHeapAfterFullGc(), droppedDeliveries(), disconnectedSubscribers(), posted.sum());
+            gcMonitor.reset();
+            latencies.reset();
+            var measuredStart = System.nanoTime();
+            runPhase("measure", measuredStart, options.getDuration(), total, gcMonitor, logWriter);
+
+            running = false;
+            for (var thread : posterThreads) {
+                thread.join();
+            }
+            Thread.sleep(options.getMaxBatchDelay().plusSeconds(1).toMillis());
+            var tail = latencies.getIntervalHistogram();
+            total.add(tail);
+            logWriter.outputIntervalHistogram(tail);
+            var elapsed = Duration.ofNanos(System.nanoTime() - measuredStart);
+            var pauses = gcMonitor.pausesMillis();
+            var heapGrowth = usedHeapAfterFullGc() - baseline.heap();
+
+            try (var summary = new PrintStream(Files.newOutputStream(options.getReport().resolve("summary.txt")))) {
+                for (var out : List.of(System.out, summary)) {
+                    printSummary(out, elapsed, total, pauses, heapGrowth, baseline);
+                }
+            }
+            try (var out = new PrintStream(Files.newOutputStream(options.getReport().resolve("latency.hgrm")))) {
+                total.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+            try (var out = new PrintStream(Files.newOutputStream(options.getReport().resolve("gc-pauses.hgrm")))) {
+                pauses.outputPercentileDistribution(out, 1.0);
+            }
+        } finally {
+            running = false;
+            subscriptions.forEach(Disposable::dispose);
+            postingExecutor.destroy();
+            readMarkerTracker.destroy();
+        }
+        System.out.println("Reports written to " + options.getReport().toAbsolutePath());
+    }
+
+    private List<Disposable> subscribe(String[] channelIds) {
+        var zipf = new ZipfDistribution(channelIds.length, options.getZipfExponent());
+        var random = new SplittableRandom(42);
+        var perChannel = new int[channelIds.length];
+        var subscriptions = new ArrayList<Disposable>();
+        for (int i = 0; i < channelIds.length * options.getSubscribers(); i++) {
+            int channel = zipf.sample(random);
+            perChannel[channel]++;
+            subscriptions.add(chatService.liveMessages(channelIds[channel])
+                    .subscribe(this::onBatch, error -> { }));
+        }
+        System.out.printf("Subscribers: %d in total, %d on the busiest channel, %d channels without any%n",
+                subscriptions.size(), perChannel[0], Arrays.stream(perChannel).filter(count -> count == 0).count());
+        return subscriptions;
+    }
+
+    private void onBatch(MessageBatch batch) {
+        long now = System.nanoTime();
+        var messages = batch.getMessages();
+        for (int i = 0; i < messages.size(); i++) {
+            latencies.recordValue(Math.max(0, now - scheduledAt(messages.get(i))));
+        }
+        delivered.add(messages.size());
+    }
+
+    private List<Thread> startPosters(String[] channelIds) {
+        var threads = new ArrayList<Thread>();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(options.getPosters()) / options.getRate();
+        long start = System.nanoTime();
+        for (int i = 0; i < options.getPosters(); i++) {
+            long offset = i * intervalNanos / options.getPosters();
+            var thread = new Thread(() -> post(channelIds, start + offset, intervalNanos), "load-test-poster-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private void post(String[] channelIds, long start, long intervalNanos) {
+        var random = ThreadLocalRandom.current();
+        for (long scheduled = start; running; scheduled += intervalNanos) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            var channelId = channelIds[random.nextInt(channelIds.length)];
+            var message = header(scheduled) + padding;
+            if (options.isAsync()) {
+                chatService.postMessageAsync(channelId, message).subscribe(posted -> { }, error -> failedPosts.increment());
+            } else {
+                chatService.postMessage(channelId, message);
+            }
+            posted.increment();
+        }
+    }
+
+    private void runPhase(String phase, long start, Duration length, Histogram total, GcMonitor gcMonitor,
+                          HistogramLogWriter logWriter) {
+        long end = start + length.toNanos();
+        long tick = options.getReportInterval().toNanos();
+        long lastPosted = posted.sum();
+        long lastDelivered = delivered.sum();
+        long lastTick = start;
+        Histogram interval = null;
+        while (lastTick < end) {
+            long next = Math.min(lastTick + tick, end);
+            while (System.nanoTime() < next) {
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+            interval = latencies.getIntervalHistogram(interval);
+            if (total != null) {
+                total.add(interval);
+                logWriter.outputIntervalHistogram(interval);
+            }
+            double seconds = (next - lastTick) / 1e9;
+            long postedNow = posted.sum();
+            long deliveredNow = delivered.sum();
+            System.out.printf("%-7s %6.0fs  posted %7.0f/s  delivered %9.0f/s  latency ms p50 %7.2f  p99 %7.2f  p99.9 %7.2f  max %7.2f  dropped %d  gc pauses %d  heap after gc %d MB%n",
+                    phase, (next - start) / 1e9, (postedNow - lastPosted) / seconds, (deliveredNow - lastDelivered) / seconds,
+                    millis(interval, 50), millis(interval, 99), millis(interval, 99.9), interval.getMaxValue() / NANOS_PER_MILLI,
+                    droppedDeliveries(), gcMonitor.pausesMillis().getTotalCount(), gcMonitor.heapAfterLastGc() >> 20);
+            lastPosted = postedNow;
+            lastDelivered = deliveredNow;
+            lastTick = next;
+        }
+    }
+
+    private void printSummary(PrintStream out, Duration elapsed, Histogram total, Histogram pauses, long heapGrowth,
+                              Baseline baseline) {
+        out.println("Load test: " + options);
+        out.printf("Measured %ds: %d posts, %d deliveries, %d failed posts%n", elapsed.toSeconds(),
+                posted.sum() - baseline.posted(), total.getTotalCount(), failedPosts.sum());
+        out.printf("Delivery latency ms: p50 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                millis(total, 50), millis(total, 99), millis(total, 99.9), total.getMaxValue() / NANOS_PER_MILLI);
+        out.printf("Dropped deliveries: %d, disconnected subscribers: %d%n",
+                droppedDeliveries() - baseline.dropped(), disconnectedSubscribers() - baseline.disconnected());
+        out.printf("GC pauses: %d, total %d ms, p99 %d ms, max %d ms%n", pauses.getTotalCount(),
+                Math.round(pauses.getMean() * pauses.getTotalCount()), pauses.getValueAtPercentile(99), pauses.getMaxValue());
+        out.printf("Heap growth after full GC: %d KB with %d messages retained%n", heapGrowth >> 10, retainedMessages());
+    }
+
+    private long droppedDeliveries() {
+        return Math.round(meterRegistry.find("chat.delivery.dropped").counters().stream().mapToDouble(Counter::count).sum());
+    }
+
+    private long disconnectedSubscribers() {
+        return Math.round(meterRegistry.find("chat.delivery.disconnected").counters().stream().mapToDouble(Counter::count).sum());
+    }
+
+    private long retainedMessages() {
+        return chatService.getAllChannels().stream().mapToLong(channel -> messageRepository.count(channel.getId())).sum();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    private static long usedHeapAfterFullGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    static String header(long scheduledNanos) {
+        var header = new char[HEADER_LENGTH];
+        for (int i = HEADER_LENGTH - 2; i >= 0; i--, scheduledNanos >>>= 4) {
+            header[i] = Character.forDigit((int) (scheduledNanos & 0xf), 16);
+        }
+        header[HEADER_LENGTH - 1] = ' ';
+        return new String(header);
+    }
+
+    static long scheduledAt(Message message) {
+        var text = message.getMessage();
+        long value = 0;
+        for (int i = 0; i < HEADER_LENGTH - 1; i++) {
+            value = value << 4 | Character.digit(text.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private record Baseline(long heap, long dropped, long disconnected, long posted) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chat.loadtest;
+
+import com.example.chat.configuration.DeliveryProperties;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Load shape of a {@link LoadTest} run, parsed from {@code --name=value} arguments. Durations accept the same
+ * formats as the application properties, e.g. {@code 90s} or {@code 2h}.
+ */
+@Getter
+@Setter
+public class LoadTestOptions {
+
+    private int channels = 100;
+    private int subscribers = 20;
+    private double zipfExponent = 1.0;
+    private int rate = 5000;
+    private int posters = 4;
+    private boolean async = false;
+    private int messageSize = 200;
+    private long retention = 10_000;
+    private int queueSize = 1024;
+    private Duration maxBatchDelay = Duration.ofMillis(100);
+    private DeliveryProperties.OverflowStrategy overflow = DeliveryProperties.OverflowStrategy.DROP_OLDEST;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(60);
+    private Duration reportInterval = Duration.ofSeconds(5);
+    private Path report = Path.of(System.getProperty("chat.loadtest.report", "build/reports/loadtest"));
+
+    public static LoadTestOptions parse(String... args) {
+        var options = new LoadTestOptions();
+        for (var arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.set(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        if (options.channels < 1 || options.subscribers < 0 || options.rate < 1 || options.posters < 1
+                || options.messageSize < LoadTest.HEADER_LENGTH) {
+            throw new IllegalArgumentException("Invalid load test options " + String.join(" ", args));
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "channels" -> channels = Integer.parseInt(value);
+            case "subscribers" -> subscribers = Integer.parseInt(value);
+            case "zipf-exponent" -> zipfExponent = Double.parseDouble(value);
+            case "rate" -> rate = Integer.parseInt(value);
+            case "posters" -> posters = Integer.parseInt(value);
+            case "async" -> async = Boolean.parseBoolean(value);
+            case "message-size" -> messageSize = Integer.parseInt(value);
+            case "retention" -> retention = Long.parseLong(value);
+            case "queue-size" -> queueSize = Integer.parseInt(value);
+            case "max-batch-delay" -> maxBatchDelay = DurationStyle.detectAndParse(value);
+            case "overflow" -> overflow = DeliveryProperties.OverflowStrategy.valueOf(value.toUpperCase().replace('-', '_'));
+            case "warmup" -> warmup = DurationStyle.detectAndParse(value);
+            case "duration" -> duration = DurationStyle.detectAndParse(value);
+            case "report-interval" -> reportInterval = DurationStyle.detectAndParse(value);
+            case "report" -> report = Path.of(value);
+            default -> throw new IllegalArgumentException("Unknown load test option --" + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "channels=%d subscribers=%d zipf-exponent=%.2f rate=%d/s posters=%d async=%b message-size=%d retention=%d queue-size=%d max-batch-delay=%s overflow=%s warmup=%s duration=%s"
+                .formatted(channels, subscribers, zipfExponent, rate, posters, async, messageSize, retention, queueSize,
+                        maxBatchDelay, overflow, warmup, duration);
+    }
+}
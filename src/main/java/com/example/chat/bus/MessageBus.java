@@ -0,0 +1,38 @@
+package com.example.chat.bus;
+
+import com.example.chat.model.Channel;
+import com.example.chat.model.Message;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Carries saved messages to the live subscribers of every application instance. Messages published on this node are
+ * handed to the listeners of this node and of all other nodes, in publishing order per channel.
+ */
+public interface MessageBus {
+    void publish(String channelId, List<Message> messages);
+
+    void addListener(BiConsumer<String, List<Message>> listener);
+
+    /**
+     * Makes a channel created on this node known to all other nodes.
+     */
+    default void publishChannel(Channel channel) {
+    }
+
+    /**
+     * Whether writes run on this node. Only one node assigns the channel ids and sequence numbers of all nodes.
+     */
+    default boolean isSequencer() {
+        return true;
+    }
+
+    /**
+     * Returns the {@link Sequencer} to run writes with. That is {@code local} on the sequencer node. On every other
+     * node it is a proxy that runs them on the sequencer, and returns once their results are stored on this node too.
+     */
+    default Sequencer sequencer(Sequencer local) {
+        return local;
+    }
+}
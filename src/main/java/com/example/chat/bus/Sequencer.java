@@ -0,0 +1,25 @@
+package com.example.chat.bus;
+
+import com.example.chat.model.Channel;
+import com.example.chat.model.Message;
+import com.example.chat.model.NewChannel;
+import com.example.chat.model.NewMessage;
+
+import java.util.List;
+
+/**
+ * The writes that assign channel ids, sequence numbers or revision numbers. Each one stores its result and publishes
+ * it on the {@link MessageBus}. They must all run on one node, see {@link MessageBus#sequencer}.
+ */
+public interface Sequencer {
+
+    Channel createChannel(NewChannel newChannel);
+
+    Message save(NewMessage newMessage);
+
+    List<Message> saveAll(String channelId, List<NewMessage> newMessages);
+
+    Message edit(String channelId, long sequenceNumber, String message);
+
+    Message delete(String channelId, long sequenceNumber);
+}
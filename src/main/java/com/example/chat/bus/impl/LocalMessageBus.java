@@ -0,0 +1,27 @@
+package com.example.chat.bus.impl;
+
+import com.example.chat.bus.MessageBus;
+import com.example.chat.model.Message;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "local", matchIfMissing = true)
+public class LocalMessageBus implements MessageBus {
+
+    private List<BiConsumer<String, List<Message>>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(String channelId, List<Message> messages) {
+        listeners.forEach(listener -> listener.accept(channelId, messages));
+    }
+
+    @Override
+    public void addListener(BiConsumer<String, List<Message>> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,939 @@
+package com.example.chat.bus.impl;
+
+import com.example.chat.bus.MessageBus;
+import com.example.chat.bus.Sequencer;
+import com.example.chat.configuration.BusProperties;
+import com.example.chat.exception.InvalidChannelException;
+import com.example.chat.exception.MessageNotFoundException;
+import com.example.chat.exception.SequencerUnavailableException;
+import com.example.chat.model.Channel;
+import com.example.chat.model.Message;
+import com.example.chat.model.NewChannel;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.ChannelRepository;
+import com.example.chat.repository.MessageRepository;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Replicates channels and messages from one node, the sequencer, to any number of replicas over plain TCP. The
+ * sequencer assigns every channel id and sequence number: replicas forward their writes to it and store what it
+ * replicates in their own repositories, so sequence numbers agree on all nodes and reads stay local.
+ * <p>
+ * Each replica keeps one connection to the sequencer. Both sides start it with the protocol version, and the replica
+ * sends its last sequence number per channel. The sequencer answers with what the replica is missing, including newer
+ * revisions of the messages it has, then streams its writes as they happen. The result of a forwarded write follows
+ * the write itself, so the write is stored on the replica once the result arrives. The writes of a channel are
+ * published in sequence order, so replicas store them without gaps. Every replica is fed by a bounded FIFO queue, and
+ * the sender writes whatever has queued up since its last write, up to {@code max-batch-size} frames with publications
+ * grouped by channel, with a single flush. A replica whose queue overflows is disconnected and catches up when it
+ * reconnects.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "tcp")
+public class TcpMessageBus implements MessageBus, DisposableBean {
+
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x43484154;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_FRAME_MESSAGES = 4096;
+    private static final int MAX_SYNC_CHANNELS = 1 << 24;
+    private static final int MAX_STRING_BYTES = 1 << 24;
+    private static final int LOCK_STRIPES = 64;
+
+    private static final byte SYNC = 1;
+    private static final byte CHANNEL = 2;
+    private static final byte MESSAGES = 3;
+    private static final byte CREATE_CHANNEL = 4;
+    private static final byte SAVE = 5;
+    private static final byte EDIT = 6;
+    private static final byte DELETE = 7;
+    private static final byte CHANNEL_RESULT = 8;
+    private static final byte MESSAGES_RESULT = 9;
+    private static final byte FAILURE = 10;
+
+    private static final byte INVALID_CHANNEL = 1;
+    private static final byte MESSAGE_NOT_FOUND = 2;
+    private static final byte INVALID_ARGUMENT = 3;
+    private static final byte UNAVAILABLE = 4;
+    private static final byte FAILED = 5;
+
+    private BusProperties properties;
+    private MessageRepository messageRepository;
+    private ChannelRepository channelRepository;
+    private List<BiConsumer<String, List<Message>>> listeners = new CopyOnWriteArrayList<>();
+    @Nullable
+    private ServerSocket serverSocket;
+    private List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private Lock[] channelLocks = new Lock[LOCK_STRIPES];
+    @Nullable
+    private volatile Sequencer local;
+    @Nullable
+    private SequencerLink sequencerLink;
+    private AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    public TcpMessageBus(BusProperties properties, MessageRepository messageRepository, ChannelRepository channelRepository) {
+        this.properties = properties;
+        this.messageRepository = messageRepository;
+        this.channelRepository = channelRepository;
+        for (int i = 0; i < channelLocks.length; i++) {
+            channelLocks[i] = new ReentrantLock();
+        }
+
+        if (properties.getSequencer() != null) {
+            sequencerLink = new SequencerLink(address(properties.getSequencer()));
+            return;
+        }
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(properties.getBindAddress(), properties.getPort()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen on %s:%d".formatted(properties.getBindAddress(), properties.getPort()), e);
+        }
+        daemon("chat-bus-accept", this::accept).start();
+    }
+
+    @Override
+    public void publish(String channelId, List<Message> messages) {
+        requireSequencer();
+        var publication = new Publication(channelId, messages);
+        replicas.forEach(replica -> replica.offer(publication));
+        deliver(channelId, messages);
+    }
+
+    @Override
+    public void publishChannel(Channel channel) {
+        requireSequencer();
+        var created = new ChannelCreated(channel.getId(), channel.getName());
+        replicas.forEach(replica -> replica.offer(created));
+    }
+
+    @Override
+    public void addListener(BiConsumer<String, List<Message>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isSequencer() {
+        return sequencerLink == null;
+    }
+
+    @Override
+    public Sequencer sequencer(Sequencer local) {
+        if (sequencerLink != null) {
+            return sequencerLink;
+        }
+        var ordered = new OrderedSequencer(local);
+        this.local = ordered;
+        return ordered;
+    }
+
+    public int getPort() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("Only the sequencer listens for connections");
+        }
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Whether this replica has a connection to the sequencer. The sequencer itself is always connected.
+     */
+    public boolean isConnected() {
+        return sequencerLink == null || sequencerLink.out != null;
+    }
+
+    /**
+     * Returns the number of publications that were queued for replicas when they fell behind and were disconnected.
+     */
+    public long droppedPublications() {
+        return dropped.get();
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        closeQuietly(serverSocket);
+        replicas.forEach(Replica::close);
+        inbound.forEach(TcpMessageBus::closeQuietly);
+        if (sequencerLink != null) {
+            sequencerLink.close();
+        }
+    }
+
+    private void requireSequencer() {
+        if (sequencerLink != null) {
+            throw new IllegalStateException("Only the sequencer publishes, this node replicates %s".formatted(properties.getSequencer()));
+        }
+    }
+
+    private Sequencer localSequencer() {
+        var sequencer = local;
+        if (sequencer == null) {
+            throw new SequencerUnavailableException("The sequencer is still starting");
+        }
+        return sequencer;
+    }
+
+    private void deliver(String channelId, List<Message> messages) {
+        for (var listener : listeners) {
+            try {
+                listener.accept(channelId, messages);
+            } catch (RuntimeException e) {
+                log.error("Listener failed to handle {} messages of channelId {}", messages.size(), channelId, e);
+            }
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+                new Replica(socket);
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Failed to accept a replica connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a write of a replica and returns the frame with its result or failure, which is queued after the
+     * publication of the write.
+     */
+    private Frame execute(byte kind, DataInputStream in) throws IOException {
+        long requestId = in.readLong();
+        Supplier<Frame> write = switch (kind) {
+            case CREATE_CHANNEL -> {
+                var name = readString(in);
+                yield () -> new ChannelResult(requestId, localSequencer().createChannel(new NewChannel(name)));
+            }
+            case SAVE -> {
+                var channelId = readString(in);
+                int count = readCount(in, MAX_FRAME_MESSAGES);
+                var newMessages = new ArrayList<NewMessage>(count);
+                for (int i = 0; i < count; i++) {
+                    var message = readString(in);
+                    var author = readString(in);
+                    newMessages.add(new NewMessage(message, channelId, author, readInstant(in)));
+                }
+                yield () -> new MessagesResult(requestId, channelId, localSequencer().saveAll(channelId, newMessages));
+            }
+            case EDIT -> {
+                var channelId = readString(in);
+                long sequenceNumber = in.readLong();
+                var message = readString(in);
+                yield () -> new MessagesResult(requestId, channelId, List.of(localSequencer().edit(channelId, sequenceNumber, message)));
+            }
+            case DELETE -> {
+                var channelId = readString(in);
+                long sequenceNumber = in.readLong();
+                yield () -> new MessagesResult(requestId, channelId, List.of(localSequencer().delete(channelId, sequenceNumber)));
+            }
+            default -> throw new ProtocolException("Unknown request kind %d".formatted(kind));
+        };
+
+        try {
+            return write.get();
+        } catch (RuntimeException e) {
+            byte reason = reason(e);
+            if (reason == FAILED) {
+                log.error("Failed to run write {} of a replica", kind, e);
+            }
+            return new Failure(requestId, reason, e.getMessage());
+        }
+    }
+
+    /**
+     * Sends every channel and, per channel, the messages after the replica's last one and the revisions of every
+     * edited or deleted message, which the replica skips where it is up to date. This reads all retained messages,
+     * but only once per connection.
+     */
+    private void writeSync(DataOutputStream out, Map<String, Long> positions) throws IOException {
+        for (var channel : channelRepository.findAll()) {
+            var channelId = channel.getId();
+            new ChannelCreated(channelId, channel.getName()).write(out);
+            long position = positions.getOrDefault(channelId, 0L);
+            long after = 0;
+            while (true) {
+                var chunk = messageRepository.findAfter(channelId, after, MessageRepository.STREAM_CHUNK_SIZE);
+                var missing = new ArrayList<Message>(chunk.size());
+                for (var message : chunk) {
+                    if (message.isUpdate()) {
+                        missing.addAll(messageRepository.findRevisions(channelId, message.getSequenceNumber()));
+                    } else if (message.getSequenceNumber() > position) {
+                        missing.add(message);
+                    }
+                }
+                writeMessages(out, MESSAGES, channelId, missing);
+                if (chunk.size() < MessageRepository.STREAM_CHUNK_SIZE) {
+                    break;
+                }
+                after = chunk.get(chunk.size() - 1).getSequenceNumber();
+            }
+        }
+    }
+
+    private void writeSync(DataOutputStream out) throws IOException {
+        var channels = channelRepository.findAll();
+        out.writeByte(SYNC);
+        out.writeInt(channels.size());
+        for (var channel : channels) {
+            writeString(out, channel.getId());
+            var latest = messageRepository.findLatest(channel.getId(), 1);
+            out.writeLong(latest.isEmpty() ? 0 : latest.get(0).getSequenceNumber());
+        }
+    }
+
+    private static Map<String, Long> readSync(DataInputStream in) throws IOException {
+        if (in.readByte() != SYNC) {
+            throw new ProtocolException("Replica did not start with its positions");
+        }
+        int count = readCount(in, MAX_SYNC_CHANNELS);
+        var positions = new HashMap<String, Long>();
+        for (int i = 0; i < count; i++) {
+            positions.put(readString(in), in.readLong());
+        }
+        return positions;
+    }
+
+    /**
+     * Writes the publications of a batch grouped by channel. Every other frame is written in its place, after the
+     * publications queued before it.
+     */
+    private static void writeBatch(DataOutputStream out, List<Frame> batch) throws IOException {
+        var byChannel = new LinkedHashMap<String, List<Message>>();
+        for (var frame : batch) {
+            if (frame instanceof Publication publication) {
+                byChannel.computeIfAbsent(publication.channelId(), channelId -> new ArrayList<>()).addAll(publication.messages());
+                continue;
+            }
+            writePublications(out, byChannel);
+            frame.write(out);
+        }
+        writePublications(out, byChannel);
+    }
+
+    private static void writePublications(DataOutputStream out, Map<String, List<Message>> byChannel) throws IOException {
+        for (var entry : byChannel.entrySet()) {
+            writeMessages(out, MESSAGES, entry.getKey(), entry.getValue());
+        }
+        byChannel.clear();
+    }
+
+    private static void writeMessages(DataOutputStream out, byte kind, String channelId, List<Message> messages) throws IOException {
+        for (int from = 0; from < messages.size(); from += MAX_FRAME_MESSAGES) {
+            int to = Math.min(messages.size(), from + MAX_FRAME_MESSAGES);
+            out.writeByte(kind);
+            writeString(out, channelId);
+            out.writeInt(to - from);
+            for (int i = from; i < to; i++) {
+                writeMessage(out, messages.get(i));
+            }
+        }
+    }
+
+    private static List<Message> readMessages(DataInputStream in, String channelId) throws IOException {
+        int count = readCount(in, MAX_FRAME_MESSAGES);
+        var messages = new ArrayList<Message>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(readMessage(in, channelId));
+        }
+        return messages;
+    }
+
+    private static void writeMessage(DataOutputStream out, Message message) throws IOException {
+        out.writeLong(message.getSequenceNumber());
+        writeInstant(out, message.getTimestamp());
+        writeString(out, message.getMessageId());
+        writeString(out, message.getAuthor());
+        writeString(out, message.getMessage());
+        out.writeInt(message.getRevision());
+        if (message.isUpdate()) {
+            out.writeLong(message.getEditedAt().getEpochSecond());
+            out.writeInt(message.getEditedAt().getNano());
+            out.writeBoolean(message.isDeleted());
+        }
+    }
+
+    private static Message readMessage(DataInputStream in, String channelId) throws IOException {
+        var message = new Message();
+        message.setChannelId(channelId);
+        message.setSequenceNumber(in.readLong());
+        message.setTimestamp(readInstant(in));
+        message.setMessageId(readString(in));
+        message.setAuthor(readString(in));
+        message.setMessage(readString(in));
+        message.setRevision(in.readInt());
+        if (message.isUpdate()) {
+            message.setEditedAt(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+            message.setDeleted(in.readBoolean());
+        }
+        return message;
+    }
+
+    private static void writeInstant(DataOutputStream out, @Nullable Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        out.writeLong(instant == null ? 0 : instant.getEpochSecond());
+        out.writeInt(instant == null ? 0 : instant.getNano());
+    }
+
+    @Nullable
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        boolean present = in.readBoolean();
+        long epochSecond = in.readLong();
+        int nano = in.readInt();
+        return present ? Instant.ofEpochSecond(epochSecond, nano) : null;
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_BYTES) {
+            throw new ProtocolException("String of %d bytes exceeds %d".formatted(length, MAX_STRING_BYTES));
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a count sent by the other side, which sizes collections, so it is checked before it is used.
+     */
+    private static int readCount(DataInputStream in, int max) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > max) {
+            throw new ProtocolException("Count %d is not between 0 and %d".formatted(count, max));
+        }
+        return count;
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new ProtocolException("Peer does not speak the chat bus protocol");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new ProtocolException("Peer speaks version %d of the chat bus protocol, this node version %d".formatted(version, VERSION));
+        }
+    }
+
+    private static byte reason(RuntimeException e) {
+        if (e instanceof InvalidChannelException) {
+            return INVALID_CHANNEL;
+        }
+        if (e instanceof MessageNotFoundException) {
+            return MESSAGE_NOT_FOUND;
+        }
+        if (e instanceof IllegalArgumentException) {
+            return INVALID_ARGUMENT;
+        }
+        if (e instanceof SequencerUnavailableException) {
+            return UNAVAILABLE;
+        }
+        return FAILED;
+    }
+
+    private static RuntimeException failure(byte reason, @Nullable String message) {
+        return switch (reason) {
+            case INVALID_CHANNEL -> new InvalidChannelException(message);
+            case MESSAGE_NOT_FOUND -> new MessageNotFoundException(message);
+            case INVALID_ARGUMENT -> new IllegalArgumentException(message);
+            case UNAVAILABLE -> new SequencerUnavailableException(message);
+            default -> new IllegalStateException("Sequencer failed to run the write: " + message);
+        };
+    }
+
+    private static InetSocketAddress address(String peer) {
+        int separator = peer.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Peer %s is not of the form host:port".formatted(peer));
+        }
+        return new InetSocketAddress(peer.substring(0, separator), Integer.parseInt(peer.substring(separator + 1)));
+    }
+
+    private static Thread daemon(String name, Runnable runnable) {
+        var thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Failed to close {}", closeable, e);
+        }
+    }
+
+    private interface Frame {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private record Publication(String channelId, List<Message> messages) implements Frame {
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            writeMessages(out, MESSAGES, channelId, messages);
+        }
+    }
+
+    private record ChannelCreated(String channelId, String name) implements Frame {
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(CHANNEL);
+            writeString(out, channelId);
+            writeString(out, name);
+        }
+    }
+
+    private record ChannelResult(long requestId, Channel channel) implements Frame {
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(CHANNEL_RESULT);
+            out.writeLong(requestId);
+            writeString(out, channel.getId());
+            writeString(out, channel.getName());
+        }
+    }
+
+    private record MessagesResult(long requestId, String channelId, List<Message> messages) implements Frame {
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(MESSAGES_RESULT);
+            out.writeLong(requestId);
+            writeString(out, channelId);
+            out.writeInt(messages.size());
+            for (var message : messages) {
+                writeMessage(out, message);
+            }
+        }
+    }
+
+    private record Failure(long requestId, byte reason, @Nullable String message) implements Frame {
+        @Override
+        public void write(DataOutputStream out) throws IOException {
+            out.writeByte(FAILURE);
+            out.writeLong(requestId);
+            out.writeByte(reason);
+            writeString(out, message);
+        }
+    }
+
+    /**
+     * Holds a lock of the channel from storing a write until it is published, so replicas receive the writes of every
+     * channel in sequence order.
+     */
+    private class OrderedSequencer implements Sequencer {
+        private final Sequencer local;
+
+        private OrderedSequencer(Sequencer local) {
+            this.local = local;
+        }
+
+        @Override
+        public Channel createChannel(NewChannel newChannel) {
+            return local.createChannel(newChannel);
+        }
+
+        @Override
+        public Message save(NewMessage newMessage) {
+            return locked(newMessage.getChannelId(), () -> local.save(newMessage));
+        }
+
+        @Override
+        public List<Message> saveAll(String channelId, List<NewMessage> newMessages) {
+            return locked(channelId, () -> local.saveAll(channelId, newMessages));
+        }
+
+        @Override
+        public Message edit(String channelId, long sequenceNumber, String message) {
+            return locked(channelId, () -> local.edit(channelId, sequenceNumber, message));
+        }
+
+        @Override
+        public Message delete(String channelId, long sequenceNumber) {
+            return locked(channelId, () -> local.delete(channelId, sequenceNumber));
+        }
+
+        private <T> T locked(String channelId, Supplier<T> write) {
+            var lock = channelLocks[Math.floorMod(channelId.hashCode(), LOCK_STRIPES)];
+            lock.lock();
+
+            try {
+                return write.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The sequencer's end of the connection of one replica. The receiving thread runs the replica's writes, the
+     * sending thread first catches the replica up and then drains its queue.
+     */
+    private class Replica {
+        private final Socket socket;
+        private final BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(properties.getQueueSize());
+        private volatile Thread sender;
+        private volatile boolean disconnected;
+
+        private Replica(Socket socket) {
+            this.socket = socket;
+            daemon("chat-bus-replica-" + socket.getRemoteSocketAddress(), this::receive).start();
+        }
+
+        private void offer(Frame frame) {
+            if (disconnected || queue.offer(frame)) {
+                return;
+            }
+            dropped.addAndGet(queue.size() + 1);
+            log.warn("Replica {} fell {} frames behind, disconnecting it", socket.getRemoteSocketAddress(), queue.size());
+            close();
+        }
+
+        /**
+         * Registers the replica for publications before reading the repositories for its catch-up, so every write is
+         * either part of the catch-up or queued, or both, in which case the replica skips it the second time.
+         */
+        private void receive() {
+            try (socket) {
+                var in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+                var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                readHeader(in);
+                writeHeader(out);
+                out.flush();
+                var positions = readSync(in);
+                replicas.add(this);
+                sender = daemon("chat-bus-replica-sender-" + socket.getRemoteSocketAddress(), () -> send(out, positions));
+                sender.start();
+                log.info("Replica {} connected", socket.getRemoteSocketAddress());
+                while (!closed) {
+                    offer(execute(in.readByte(), in));
+                }
+            } catch (EOFException e) {
+                log.debug("Replica {} closed its connection", socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (!closed && !disconnected) {
+                    log.warn("Lost connection to replica {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                }
+            } finally {
+                close();
+                inbound.remove(socket);
+            }
+        }
+
+        private void send(DataOutputStream out, Map<String, Long> positions) {
+            var batch = new ArrayList<Frame>(properties.getMaxBatchSize());
+            try {
+                writeSync(out, positions);
+                out.flush();
+                while (!closed) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, properties.getMaxBatchSize() - 1);
+                    writeBatch(out, batch);
+                    out.flush();
+                    batch.clear();
+                }
+            } catch (IOException e) {
+                if (!closed && !disconnected) {
+                    log.warn("Lost connection to replica {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to catch up replica {}", socket.getRemoteSocketAddress(), e);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            disconnected = true;
+            replicas.remove(this);
+            closeQuietly(socket);
+            var sender = this.sender;
+            if (sender != null && sender != Thread.currentThread()) {
+                sender.interrupt();
+            }
+        }
+    }
+
+    /**
+     * A replica's connection to the sequencer, which it runs its writes on. The receiving thread stores what the
+     * sequencer replicates and completes the writes waiting for their result.
+     */
+    private class SequencerLink implements Sequencer {
+        private final InetSocketAddress address;
+        private final Thread receiver;
+        private final AtomicLong requestIds = new AtomicLong();
+        private final ConcurrentMap<Long, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+        @Nullable
+        private volatile DataOutputStream out;
+        @Nullable
+        private volatile Socket socket;
+
+        private SequencerLink(InetSocketAddress address) {
+            this.address = address;
+            this.receiver = daemon("chat-bus-sequencer-" + address, this::receive);
+            receiver.start();
+        }
+
+        @Override
+        public Channel createChannel(NewChannel newChannel) {
+            return request((out, requestId) -> {
+                out.writeByte(CREATE_CHANNEL);
+                out.writeLong(requestId);
+                writeString(out, newChannel.getName());
+            });
+        }
+
+        @Override
+        public Message save(NewMessage newMessage) {
+            return saveAll(newMessage.getChannelId(), List.of(newMessage)).get(0);
+        }
+
+        @Override
+        public List<Message> saveAll(String channelId, List<NewMessage> newMessages) {
+            var saved = new ArrayList<Message>(newMessages.size());
+            for (int from = 0; from < newMessages.size(); from += MAX_FRAME_MESSAGES) {
+                var chunk = newMessages.subList(from, Math.min(newMessages.size(), from + MAX_FRAME_MESSAGES));
+                List<Message> savedChunk = request((out, requestId) -> {
+                    out.writeByte(SAVE);
+                    out.writeLong(requestId);
+                    writeString(out, channelId);
+                    out.writeInt(chunk.size());
+                    for (var newMessage : chunk) {
+                        writeString(out, newMessage.getMessage());
+                        writeString(out, newMessage.getAuthor());
+                        writeInstant(out, newMessage.getTimestamp());
+                    }
+                });
+                saved.addAll(savedChunk);
+            }
+            return saved;
+        }
+
+        @Override
+        public Message edit(String channelId, long sequenceNumber, String message) {
+            List<Message> edited = request((out, requestId) -> {
+                out.writeByte(EDIT);
+                out.writeLong(requestId);
+                writeString(out, channelId);
+                out.writeLong(sequenceNumber);
+                writeString(out, message);
+            });
+            return edited.get(0);
+        }
+
+        @Override
+        public Message delete(String channelId, long sequenceNumber) {
+            List<Message> deleted = request((out, requestId) -> {
+                out.writeByte(DELETE);
+                out.writeLong(requestId);
+                writeString(out, channelId);
+                out.writeLong(sequenceNumber);
+            });
+            return deleted.get(0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T request(Request request) {
+            var out = this.out;
+            if (out == null) {
+                throw new SequencerUnavailableException("No connection to sequencer %s".formatted(address));
+            }
+
+            long requestId = requestIds.incrementAndGet();
+            var result = new CompletableFuture<Object>();
+            pending.put(requestId, result);
+            try {
+                synchronized (out) {
+                    request.write(out, requestId);
+                    out.flush();
+                }
+                return (T) result.get(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                throw new SequencerUnavailableException("Lost connection to sequencer %s".formatted(address));
+            } catch (TimeoutException e) {
+                throw new SequencerUnavailableException("Sequencer %s did not answer within %s".formatted(address, properties.getRequestTimeout()));
+            } catch (ExecutionException e) {
+                throw (RuntimeException) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SequencerUnavailableException("Interrupted while waiting for sequencer %s".formatted(address));
+            } finally {
+                pending.remove(requestId);
+            }
+        }
+
+        private void receive() {
+            while (!closed) {
+                try (var socket = new Socket()) {
+                    this.socket = socket;
+                    socket.setTcpNoDelay(true);
+                    socket.connect(address, (int) properties.getReconnectDelay().toMillis());
+                    var in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+                    var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                    writeHeader(out);
+                    writeSync(out);
+                    out.flush();
+                    readHeader(in);
+                    this.out = out;
+                    log.info("Connected to sequencer {}", address);
+                    while (!closed) {
+                        apply(in.readByte(), in);
+                    }
+                } catch (IOException e) {
+                    if (!closed) {
+                        log.warn("No connection to sequencer {}, retrying in {}: {}", address, properties.getReconnectDelay(), e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to replicate from sequencer {}, reconnecting in {}", address, properties.getReconnectDelay(), e);
+                }
+
+                disconnected();
+                if (closed || !pause()) {
+                    return;
+                }
+            }
+        }
+
+        private void apply(byte kind, DataInputStream in) throws IOException {
+            switch (kind) {
+                case CHANNEL -> {
+                    var channelId = readString(in);
+                    channelRepository.replicate(new Channel(channelId, readString(in)));
+                }
+                case MESSAGES -> {
+                    var channelId = readString(in);
+                    var stored = messageRepository.replicate(channelId, readMessages(in, channelId));
+                    if (!stored.isEmpty()) {
+                        deliver(channelId, stored);
+                    }
+                }
+                case CHANNEL_RESULT -> {
+                    long requestId = in.readLong();
+                    var channelId = readString(in);
+                    complete(requestId, new Channel(channelId, readString(in)));
+                }
+                case MESSAGES_RESULT -> {
+                    long requestId = in.readLong();
+                    var channelId = readString(in);
+                    complete(requestId, readMessages(in, channelId));
+                }
+                case FAILURE -> {
+                    long requestId = in.readLong();
+                    byte reason = in.readByte();
+                    var result = pending.get(requestId);
+                    var failure = failure(reason, readString(in));
+                    if (result != null) {
+                        result.completeExceptionally(failure);
+                    }
+                }
+                default -> throw new ProtocolException("Unknown frame kind %d".formatted(kind));
+            }
+        }
+
+        private void complete(long requestId, Object value) {
+            var result = pending.get(requestId);
+            if (result != null) {
+                result.complete(value);
+            }
+        }
+
+        /**
+         * Fails the writes waiting for a result. The socket is closed already, so writes that start later fail on it.
+         */
+        private void disconnected() {
+            out = null;
+            for (var requestId : pending.keySet()) {
+                var result = pending.remove(requestId);
+                if (result != null) {
+                    result.completeExceptionally(new SequencerUnavailableException("Lost connection to sequencer %s".formatted(address)));
+                }
+            }
+        }
+
+        private boolean pause() {
+            try {
+                Thread.sleep(properties.getReconnectDelay().toMillis());
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        private void close() {
+            receiver.interrupt();
+            closeQuietly(socket);
+        }
+    }
+
+    private interface Request {
+        void write(DataOutputStream out, long requestId) throws IOException;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.chat.configuration;
+
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.bus")
+public class BusProperties {
+
+    private BusType type = BusType.LOCAL;
+    private String bindAddress = "127.0.0.1";
+    private int port = 7070;
+    @Nullable
+    private String sequencer;
+    private int queueSize = 65536;
+    private int maxBatchSize = 256;
+    private Duration reconnectDelay = Duration.ofSeconds(1);
+    private Duration requestTimeout = Duration.ofSeconds(5);
+
+    public enum BusType {
+        LOCAL,
+        TCP
+    }
+}
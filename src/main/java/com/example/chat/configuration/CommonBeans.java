@@ -1,15 +1,23 @@
 package com.example.chat.configuration;
 
+import com.example.chat.repository.RetentionPolicy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Clock;
 
 @Configuration
+@EnableConfigurationProperties({BusProperties.class, DeliveryProperties.class, PostingProperties.class, PresenceProperties.class, RateLimitProperties.class, ReadMarkerProperties.class, RetentionProperties.class, StorageProperties.class})
 public class CommonBeans {
 
     @Bean
     public Clock getClock() {
         return Clock.systemUTC();
     }
+
+    @Bean
+    public RetentionPolicy getDefaultRetentionPolicy(RetentionProperties retentionProperties) {
+        return retentionProperties.toPolicy();
+    }
 }
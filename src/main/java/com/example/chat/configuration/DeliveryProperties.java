@@ -0,0 +1,23 @@
+package com.example.chat.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.delivery")
+public class DeliveryProperties {
+
+    private int queueSize = 1024;
+    private int maxBatchSize = 256;
+    private Duration maxBatchDelay = Duration.ofMillis(100);
+    private OverflowStrategy overflow = OverflowStrategy.DROP_OLDEST;
+
+    public enum OverflowStrategy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.chat.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.posting")
+public class PostingProperties {
+
+    private Mode mode = Mode.CHANNEL_SERIAL;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public enum Mode {
+        CHANNEL_SERIAL,
+        CALLER
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.chat.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.presence")
+public class PresenceProperties {
+
+    private Duration ttl = Duration.ofSeconds(30);
+    private Duration typingTtl = Duration.ofSeconds(5);
+    private Duration updateInterval = Duration.ofMillis(500);
+}
@@ -0,0 +1,35 @@
+package com.example.chat.configuration;
+
+import jakarta.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    /**
+     * Off by default: posts are not attributed to the signed-in user yet, so an author limit would throttle the whole
+     * node as one author.
+     */
+    @Nullable
+    private Limit author;
+    private Limit channel = new Limit(500, 2000);
+    private Duration evictionInterval = Duration.ofMinutes(1);
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private double messagesPerSecond;
+        private int burst;
+    }
+}
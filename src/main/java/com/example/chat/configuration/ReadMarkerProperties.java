@@ -0,0 +1,15 @@
+package com.example.chat.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.read-markers")
+public class ReadMarkerProperties {
+
+    private Duration flushInterval = Duration.ofSeconds(1);
+}
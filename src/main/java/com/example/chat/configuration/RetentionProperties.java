@@ -0,0 +1,23 @@
+package com.example.chat.configuration;
+
+import com.example.chat.repository.RetentionPolicy;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.retention")
+public class RetentionProperties {
+
+    private long maxMessages;
+    private Duration maxAge;
+    private DataSize maxBytes = DataSize.ofBytes(0);
+
+    public RetentionPolicy toPolicy() {
+        return new RetentionPolicy(maxMessages, maxAge, maxBytes.toBytes());
+    }
+}
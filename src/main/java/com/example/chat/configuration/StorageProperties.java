@@ -0,0 +1,37 @@
+package com.example.chat.configuration;
+
+import com.example.chat.repository.impl.AppendOnlyLog;
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.storage")
+public class StorageProperties {
+
+    private StorageType type = StorageType.MEMORY;
+    private Path directory = Path.of("data");
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    private int fsyncEvery = 128;
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+    @Nullable
+    private Path snapshotDirectory;
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+    private Duration compactionInterval = Duration.ofSeconds(30);
+    private Duration indexInterval = Duration.ofSeconds(1);
+
+    public AppendOnlyLog openLog(String name) {
+        return new AppendOnlyLog(directory.resolve(name), segmentSize.toBytes(), fsyncEvery, fsyncInterval);
+    }
+
+    public enum StorageType {
+        MEMORY,
+        FILE
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.chat.exception;
+
+public class ExpiredCursorException extends IllegalArgumentException {
+    public ExpiredCursorException(String message) {
+        super(message);
+    }
+}
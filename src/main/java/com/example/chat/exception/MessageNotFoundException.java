@@ -0,0 +1,7 @@
+package com.example.chat.exception;
+
+public class MessageNotFoundException extends IllegalArgumentException {
+    public MessageNotFoundException(String message) {
+        super(message);
+    }
+}
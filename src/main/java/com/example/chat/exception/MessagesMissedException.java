@@ -0,0 +1,7 @@
+package com.example.chat.exception;
+
+public class MessagesMissedException extends IllegalStateException {
+    public MessagesMissedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chat.exception;
+
+import jakarta.annotation.Nullable;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Thrown when a post exceeds the rate limit of its author or channel. Rejections are expected under a flood, so the
+ * exception carries no stack trace.
+ */
+@Getter
+public class RateLimitExceededException extends IllegalStateException {
+
+    private final Limit limit;
+    /**
+     * When the post would be admitted, or null for a batch that is larger than the burst and never will be.
+     */
+    @Nullable
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(Limit limit, String key, Duration retryAfter) {
+        super("Rate limit of %s %s exceeded, retry after %d ms".formatted(limit.name().toLowerCase(Locale.ROOT), key, retryAfter.toMillis()));
+        this.limit = limit;
+        this.retryAfter = retryAfter;
+    }
+
+    public RateLimitExceededException(Limit limit, String key, int messages, int burst) {
+        super("Batch of %d messages exceeds the burst of %d of %s %s".formatted(messages, burst, limit.name().toLowerCase(Locale.ROOT), key));
+        this.limit = limit;
+        this.retryAfter = null;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    public enum Limit {
+        AUTHOR,
+        CHANNEL
+    }
+}
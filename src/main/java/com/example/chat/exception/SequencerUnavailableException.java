@@ -0,0 +1,11 @@
+package com.example.chat.exception;
+
+/**
+ * Thrown when a write can't be forwarded to the sequencer node, or its result doesn't come back in time. A write whose
+ * result didn't come back may still have been stored.
+ */
+public class SequencerUnavailableException extends IllegalStateException {
+    public SequencerUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ChannelSummary {
+
+    private Channel channel;
+    private long unreadCount;
+}
@@ -1,5 +1,6 @@
 package com.example.chat.model;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -7,6 +8,7 @@ import java.time.Instant;
 
 @Getter
 @Setter
+@EqualsAndHashCode
 public class Message {
 
     private String messageId;
@@ -15,4 +17,14 @@ public class Message {
     private Long sequenceNumber;
     private String message;
     private Instant timestamp;
+    private int revision;
+    private Instant editedAt;
+    private boolean deleted;
+
+    /**
+     * Whether this is a later revision of a message that was posted before, an edit or a deletion.
+     */
+    public boolean isUpdate() {
+        return revision > 0;
+    }
 }
@@ -0,0 +1,27 @@
+package com.example.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Live messages in posting order, followed by edits and deletions of earlier messages. Updates carry the complete new
+ * revision; a client keeps the highest revision it has seen of every sequence number.
+ */
+@Getter
+@AllArgsConstructor
+public class MessageBatch {
+
+    private List<Message> messages;
+    private List<Message> updates;
+    private long missed;
+
+    public MessageBatch(List<Message> messages, long missed) {
+        this(messages, List.of(), missed);
+    }
+
+    public boolean hasGap() {
+        return missed > 0;
+    }
+}
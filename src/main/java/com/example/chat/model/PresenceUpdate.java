@@ -0,0 +1,17 @@
+package com.example.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Set;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class PresenceUpdate {
+
+    private String channelId;
+    private Set<String> online;
+    private Set<String> typing;
+}
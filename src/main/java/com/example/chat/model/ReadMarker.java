@@ -0,0 +1,15 @@
+package com.example.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ReadMarker {
+
+    private String userId;
+    private String channelId;
+    private long sequenceNumber;
+}
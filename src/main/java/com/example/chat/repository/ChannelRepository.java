@@ -2,6 +2,7 @@ package com.example.chat.repository;
 
 import com.example.chat.model.Channel;
 import com.example.chat.model.NewChannel;
+import jakarta.annotation.Nullable;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,8 +13,25 @@ public interface ChannelRepository {
 
     List<Channel> findAll();
 
+    /**
+     * Returns up to {@code limit} channels in case-insensitive name order, starting after the channel named
+     * {@code afterName} with id {@code afterId}, or with the first channel if {@code afterName} is null. Without
+     * {@code afterId} the page starts after every channel named {@code afterName}.
+     */
+    List<Channel> findPage(@Nullable String afterName, @Nullable String afterId, int limit);
+
+    /**
+     * Returns up to {@code limit} channels whose name starts with {@code prefix}, ignoring case, in name order.
+     */
+    List<Channel> findByNamePrefix(String prefix, int limit);
+
     Channel save(NewChannel newChannel);
 
+    /**
+     * Stores a channel that another node created under its id, unless it is stored already.
+     */
+    void replicate(Channel channel);
+
     Optional<Channel> findById(String channelId);
 
     boolean exists(String channelId);
@@ -5,16 +5,92 @@ import com.example.chat.model.Message;
 import com.example.chat.model.NewMessage;
 import jakarta.annotation.Nullable;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public interface MessageRepository {
+    int STREAM_CHUNK_SIZE = 256;
+
     List<Message> findLatest(String channelId, int fetchMax, @Nullable String lastSeenMessageId);
 
     default List<Message> findLatest(String channelId, int fetchMax) {
         return findLatest(channelId, fetchMax, null);
     }
 
+    List<Message> findBefore(String channelId, long beforeSequenceNumber, int limit);
+
+    List<Message> findAfter(String channelId, long afterSequenceNumber, int limit);
+
+    /**
+     * Streams the messages after {@code afterSequenceNumber} in order, reading {@link #STREAM_CHUNK_SIZE} messages at a
+     * time as downstream demand arrives, until a read comes back short of a full chunk.
+     */
+    default Flux<Message> streamFrom(String channelId, long afterSequenceNumber) {
+        return Flux.<List<Message>, Long>generate(() -> afterSequenceNumber, (cursor, sink) -> {
+                    var chunk = findAfter(channelId, cursor, STREAM_CHUNK_SIZE);
+                    if (!chunk.isEmpty()) {
+                        sink.next(chunk);
+                    }
+                    if (chunk.size() < STREAM_CHUNK_SIZE) {
+                        sink.complete();
+                        return cursor;
+                    }
+                    return chunk.get(chunk.size() - 1).getSequenceNumber();
+                })
+                .concatMapIterable(chunk -> chunk, 1);
+    }
+
+    List<Message> findAround(String channelId, String messageId, int radius);
+
+    List<Message> search(String channelId, String query, int limit, long beforeSequenceNumber);
+
+    default List<Message> search(String channelId, String query, int limit) {
+        return search(channelId, query, limit, Long.MAX_VALUE);
+    }
+
     Message save(NewMessage newMessage);
+
+    List<Message> saveAll(List<NewMessage> newMessages);
+
+    /**
+     * Replaces the text of a message with a new revision. Earlier revisions stay available through
+     * {@link #findRevisions}.
+     *
+     * @throws com.example.chat.exception.MessageNotFoundException if the message is not retained or was deleted
+     */
+    Message edit(String channelId, long sequenceNumber, String message);
+
+    /**
+     * Replaces a message with a tombstone revision without text. The text of every revision of the message is gone
+     * from reads right away; where it is reclaimed later depends on the storage.
+     *
+     * @throws com.example.chat.exception.MessageNotFoundException if the message is not retained or was deleted
+     */
+    Message delete(String channelId, long sequenceNumber);
+
+    /**
+     * Returns every revision of a message, oldest first, or only the tombstone of a deleted message.
+     */
+    List<Message> findRevisions(String channelId, long sequenceNumber);
+
+    /**
+     * Stores messages of one channel that another node saved, keeping their sequence numbers and ids, and returns the
+     * ones that were new here. Messages must arrive in sequence order. A message stored before is skipped, unless it
+     * is a revision newer than the stored one, and a message with a later revision than 0 is stored with that revision
+     * applied. A new message that leaves a gap after the stored ones starts the channel over from it. Save listeners
+     * are notified as for saved messages.
+     */
+    List<Message> replicate(String channelId, List<Message> messages);
+
+    long count(String channelId);
+
+    long searchIndexBytes(String channelId);
+
+    /**
+     * Registers a listener for every saved message and every later revision of one.
+     */
+    void addSaveListener(Consumer<Message> listener);
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.ReadMarker;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface ReadMarkerRepository {
+
+    /**
+     * Returns the sequence number of the last message the user has read in the channel, or 0 if they have read none.
+     */
+    long findSequenceNumber(String userId, String channelId);
+
+    /**
+     * Stores the markers. A marker never moves backwards, an older sequence number than the stored one is ignored.
+     */
+    void saveAll(Collection<ReadMarker> markers);
+}
@@ -0,0 +1,19 @@
+package com.example.chat.repository;
+
+import jakarta.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+@AllArgsConstructor
+public class RetentionPolicy {
+
+    public static final RetentionPolicy UNLIMITED = new RetentionPolicy(0, null, 0);
+
+    private long maxMessages;
+    @Nullable
+    private Duration maxAge;
+    private long maxBytes;
+}
@@ -0,0 +1,7 @@
+package com.example.chat.repository;
+
+import java.io.IOException;
+
+public interface Snapshottable {
+    void writeSnapshot() throws IOException;
+}
@@ -0,0 +1,256 @@
+package com.example.chat.repository.impl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32C;
+
+@Slf4j
+public class AppendOnlyLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int fsyncEvery;
+    private final ConcurrentNavigableMap<Long, FileChannel> segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService flusher;
+    private long activeBaseOffset;
+    private FileChannel activeSegment;
+    private long endOffset;
+    private int unsyncedRecords;
+
+    public AppendOnlyLog(Path directory, long segmentBytes, int fsyncEvery, Duration fsyncInterval) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncEvery = fsyncEvery;
+
+        try {
+            Files.createDirectories(directory);
+            openSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open log in " + directory, e);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "log-flusher-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, fsyncInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized long append(ByteBuffer payload) {
+        return append(1, (index, position) -> payload)[0];
+    }
+
+    public synchronized long[] append(int count, RecordEncoder encoder) {
+        var positions = new long[count];
+
+        try {
+            for (int i = 0; i < count; i++) {
+                long position = endOffset;
+                var payload = encoder.encode(i, position);
+                int length = payload.remaining();
+                if (endOffset - activeBaseOffset > 0 && endOffset - activeBaseOffset + HEADER_BYTES + length > segmentBytes) {
+                    roll();
+                }
+
+                var header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(length)
+                        .putInt(checksum(payload))
+                        .flip();
+                writeFully(activeSegment, new ByteBuffer[]{header, payload.duplicate()}, position - activeBaseOffset);
+                endOffset += HEADER_BYTES + length;
+                positions[i] = position;
+            }
+
+            unsyncedRecords += count;
+            if (unsyncedRecords >= fsyncEvery) {
+                force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to log in " + directory, e);
+        }
+
+        return positions;
+    }
+
+    public ByteBuffer read(long position) {
+        var segment = segments.floorEntry(position);
+        if (segment == null) {
+            throw new IllegalArgumentException("No record at position " + position);
+        }
+
+        try {
+            long offset = position - segment.getKey();
+            var header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(segment.getValue(), header, offset);
+            var payload = ByteBuffer.allocate(header.flip().getInt());
+            readFully(segment.getValue(), payload, offset + HEADER_BYTES);
+            return payload.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read log in " + directory, e);
+        }
+    }
+
+    public void replay(BiConsumer<Long, ByteBuffer> consumer) {
+        for (Map.Entry<Long, FileChannel> segment : segments.entrySet()) {
+            try {
+                long size = segment.getValue().size();
+                long offset = 0;
+                while (offset < size) {
+                    var header = ByteBuffer.allocate(HEADER_BYTES);
+                    readFully(segment.getValue(), header, offset);
+                    var payload = ByteBuffer.allocate(header.flip().getInt());
+                    readFully(segment.getValue(), payload, offset + HEADER_BYTES);
+                    consumer.accept(segment.getKey() + offset, payload.flip());
+                    offset += HEADER_BYTES + payload.capacity();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot replay log in " + directory, e);
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        if (unsyncedRecords == 0) {
+            return;
+        }
+
+        try {
+            force();
+        } catch (IOException e) {
+            log.error("Failed to sync log in {}", directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flusher.shutdownNow();
+        flush();
+        for (var segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Failed to close log segment in {}", directory, e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordEncoder {
+        ByteBuffer encode(int index, long position);
+    }
+
+    private void force() throws IOException {
+        activeSegment.force(false);
+        unsyncedRecords = 0;
+    }
+
+    private void roll() throws IOException {
+        force();
+        activeBaseOffset = endOffset;
+        activeSegment = openSegment(activeBaseOffset);
+        segments.put(activeBaseOffset, activeSegment);
+    }
+
+    private void openSegments() throws IOException {
+        try (var files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(baseOffset -> segments.put(baseOffset, openSegment(baseOffset)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (segments.isEmpty()) {
+            segments.put(0L, openSegment(0L));
+        }
+
+        var last = segments.lastEntry();
+        activeBaseOffset = last.getKey();
+        activeSegment = last.getValue();
+        endOffset = activeBaseOffset + recoverEnd(activeSegment);
+    }
+
+    private long recoverEnd(FileChannel segment) throws IOException {
+        long size = segment.size();
+        long offset = 0;
+        var header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(segment, header, offset);
+            int length = header.flip().getInt();
+            int crc = header.getInt();
+            if (length < 0 || offset + HEADER_BYTES + length > size) {
+                break;
+            }
+            var payload = ByteBuffer.allocate(length);
+            readFully(segment, payload, offset + HEADER_BYTES);
+            if (checksum(payload.flip()) != crc) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+
+        if (offset < size) {
+            log.warn("Truncating torn tail of log in {} at offset {} (was {} bytes)", directory, activeBaseOffset + offset, size);
+            segment.truncate(offset);
+        }
+
+        return offset;
+    }
+
+    private FileChannel openSegment(long baseOffset) {
+        var path = directory.resolve("%020d%s".formatted(baseOffset, SEGMENT_SUFFIX));
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open log segment " + path, e);
+        }
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        var crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        for (var buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of log segment at " + position);
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.chat.repository.impl;
+
+import com.example.chat.configuration.StorageProperties;
+import com.example.chat.model.Channel;
+import com.example.chat.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+@Component
+@ConditionalOnProperty(name = "chat.storage.type", havingValue = "file")
+public class FileChannelRepository extends InMemoryChannelRepository {
+
+    private AppendOnlyLog log;
+
+    @Autowired
+    public FileChannelRepository(MessageRepository messageRepository, StorageProperties storageProperties) {
+        this(messageRepository, storageProperties.openLog("channels"));
+    }
+
+    public FileChannelRepository(MessageRepository messageRepository, AppendOnlyLog log) {
+        super(messageRepository);
+        this.log = log;
+        log.replay((position, record) -> super.store(decode(record)));
+    }
+
+    /**
+     * Logs a channel only if it was not stored yet, since replicas are sent every channel whenever they reconnect.
+     */
+    @Override
+    protected boolean store(Channel channel) {
+        if (!super.store(channel)) {
+            return false;
+        }
+        log.append(encode(channel));
+        return true;
+    }
+
+    @PreDestroy
+    public void close() {
+        log.close();
+    }
+
+    private static ByteBuffer encode(Channel channel) {
+        var id = channel.getId().getBytes(StandardCharsets.UTF_8);
+        var name = channel.getName().getBytes(StandardCharsets.UTF_8);
+
+        return ByteBuffer.allocate(8 + id.length + name.length)
+                .putInt(id.length).put(id)
+                .putInt(name.length).put(name)
+                .flip();
+    }
+
+    private static Channel decode(ByteBuffer record) {
+        var id = new byte[record.getInt()];
+        record.get(id);
+        var name = new byte[record.getInt()];
+        record.get(name);
+
+        return new Channel(new String(id, StandardCharsets.UTF_8), new String(name, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,752 @@
+package com.example.chat.repository.impl;
+
+import com.example.chat.configuration.StorageProperties;
+import com.example.chat.exception.MessageNotFoundException;
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.MessageRepository;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "chat.storage.type", havingValue = "file")
+public class FileMessageRepository implements MessageRepository {
+
+    private static final int INDEX_INTERVAL = 64;
+    private static final long NO_POSITION = -1;
+    private static final int KIND_OFFSET = 16;
+    private static final byte MESSAGE_WITHOUT_TIMESTAMP = 0;
+    private static final byte MESSAGE = 1;
+    private static final byte REVISION = 2;
+    private static final byte GAP = 3;
+
+    private AppendOnlyLog log;
+    private Clock clock;
+    private ConcurrentMap<String, ChannelLog> channels = new ConcurrentHashMap<>();
+    private List<Consumer<Message>> saveListeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public FileMessageRepository(StorageProperties storageProperties, Clock clock) {
+        this(storageProperties.openLog("messages"), clock);
+    }
+
+    public FileMessageRepository(AppendOnlyLog log) {
+        this(log, Clock.systemUTC());
+    }
+
+    public FileMessageRepository(AppendOnlyLog log, Clock clock) {
+        this.log = log;
+        this.clock = clock;
+        log.replay(this::restore);
+    }
+
+    @Override
+    public List<Message> findLatest(String channelId, int fetchMax, @Nullable String lastSeenMessageId) {
+        if (fetchMax < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            return Collections.emptyList();
+        }
+
+        return channelLog.findLatest(fetchMax, lastSeenMessageId);
+    }
+
+    @Override
+    public List<Message> findBefore(String channelId, long beforeSequenceNumber, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            return Collections.emptyList();
+        }
+
+        return channelLog.findBefore(beforeSequenceNumber, limit);
+    }
+
+    @Override
+    public List<Message> findAfter(String channelId, long afterSequenceNumber, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            return Collections.emptyList();
+        }
+
+        return channelLog.findAfter(afterSequenceNumber, limit);
+    }
+
+    @Override
+    public List<Message> findAround(String channelId, String messageId, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius can't be negative");
+        }
+
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            return Collections.emptyList();
+        }
+
+        return channelLog.findAround(messageId, radius);
+    }
+
+    @Override
+    public Message save(NewMessage newMessage) {
+        var saved = channels.computeIfAbsent(newMessage.getChannelId(), ChannelLog::new)
+                .save(newMessage);
+        saveListeners.forEach(listener -> listener.accept(saved));
+        return saved;
+    }
+
+    @Override
+    public List<Message> saveAll(List<NewMessage> newMessages) {
+        var saved = new ArrayList<Message>(newMessages.size());
+        InMemoryMessageRepository.groupByChannel(newMessages).forEach((channelId, messages) ->
+                saved.addAll(channels.computeIfAbsent(channelId, ChannelLog::new).saveAll(messages)));
+        saved.forEach(message -> saveListeners.forEach(listener -> listener.accept(message)));
+        return saved;
+    }
+
+    /**
+     * Appends a revision record. The text of the earlier revisions stays in the log, which is never rewritten, but is
+     * gone from reads and the search index.
+     */
+    @Override
+    public Message edit(String channelId, long sequenceNumber, String message) {
+        var edited = channelLog(channelId, sequenceNumber).revise(sequenceNumber, message, false);
+        saveListeners.forEach(listener -> listener.accept(edited));
+        return edited;
+    }
+
+    @Override
+    public Message delete(String channelId, long sequenceNumber) {
+        var deleted = channelLog(channelId, sequenceNumber).revise(sequenceNumber, null, true);
+        saveListeners.forEach(listener -> listener.accept(deleted));
+        return deleted;
+    }
+
+    @Override
+    public List<Message> findRevisions(String channelId, long sequenceNumber) {
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            return Collections.emptyList();
+        }
+
+        return channelLog.findRevisions(sequenceNumber);
+    }
+
+    /**
+     * A message that leaves a gap after the stored ones, because the other node no longer retains the messages in
+     * between, starts the channel over from it. The log records the gap, so the channel starts there after a restart
+     * as well.
+     */
+    @Override
+    public List<Message> replicate(String channelId, List<Message> messages) {
+        var stored = channels.computeIfAbsent(channelId, ChannelLog::new).replicate(messages);
+        stored.forEach(message -> saveListeners.forEach(listener -> listener.accept(message)));
+        return stored;
+    }
+
+    private ChannelLog channelLog(String channelId, long sequenceNumber) {
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            throw notFound(channelId, sequenceNumber);
+        }
+        return channelLog;
+    }
+
+    private static MessageNotFoundException notFound(String channelId, long sequenceNumber) {
+        return new MessageNotFoundException("Message %d of channel %s does not exist".formatted(sequenceNumber, channelId));
+    }
+
+    @Override
+    public List<Message> search(String channelId, String query, int limit, long beforeSequenceNumber) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        var channelLog = channels.get(channelId);
+        if (channelLog == null) {
+            return Collections.emptyList();
+        }
+
+        return channelLog.search(query, limit, beforeSequenceNumber);
+    }
+
+    @Override
+    public long count(String channelId) {
+        var channelLog = channels.get(channelId);
+        return channelLog == null ? 0 : channelLog.count();
+    }
+
+    @Override
+    public long searchIndexBytes(String channelId) {
+        var channelLog = channels.get(channelId);
+        return channelLog == null ? 0 : channelLog.searchIndex.estimatedBytes();
+    }
+
+    @Override
+    public void addSaveListener(Consumer<Message> listener) {
+        saveListeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        log.close();
+    }
+
+    private void restore(long position, ByteBuffer record) {
+        if (record.get(KIND_OFFSET) == GAP) {
+            var gap = decodeGap(record);
+            channels.computeIfAbsent(gap.channelId, ChannelLog::new).startAt(gap.firstSequenceNumber);
+            return;
+        }
+        if (record.get(KIND_OFFSET) == REVISION) {
+            var revision = decodeRevision(record);
+            channels.computeIfAbsent(revision.channelId, ChannelLog::new).apply(revision, position);
+            return;
+        }
+
+        var stored = decode(record);
+        var channelLog = channels.computeIfAbsent(stored.message.getChannelId(), ChannelLog::new);
+        channelLog.restore(stored.message, position);
+        channelLog.searchIndex.add(stored.message.getSequenceNumber(), SearchIndex.tokenize(stored.message.getMessage()));
+    }
+
+    private class ChannelLog {
+        private String channelId;
+        private long firstSequenceNumber = 1;
+        private long nextSequenceNumber = 1;
+        private long lastPosition = NO_POSITION;
+        private long[] sparseIndex = new long[16];
+        private Map<String, Long> legacySequenceById = new HashMap<>();
+        private Map<Long, Long> revisionPositions = new HashMap<>();
+        private long lastIdMillis;
+        private ReadWriteLock lock = new ReentrantReadWriteLock();
+        private SearchIndex searchIndex = new SearchIndex();
+
+        private ChannelLog(String channelId) {
+            this.channelId = channelId;
+        }
+
+        private List<Message> findLatest(int fetchMax, @Nullable String lastSeenMessageId) {
+            lock.readLock().lock();
+
+            try {
+                long last = nextSequenceNumber - 1;
+                long lastSeen = Objects.isNull(lastSeenMessageId) ? 0 : sequenceOf(lastSeenMessageId, last);
+                return readRange(Math.max(firstSequenceNumber, Math.max(lastSeen + 1, last - fetchMax + 1)), last);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<Message> findBefore(long beforeSequenceNumber, int limit) {
+            lock.readLock().lock();
+
+            try {
+                long last = Math.min(nextSequenceNumber - 1, beforeSequenceNumber - 1);
+                return readRange(Math.max(firstSequenceNumber, last - limit + 1), last);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<Message> findAfter(long afterSequenceNumber, int limit) {
+            lock.readLock().lock();
+
+            try {
+                long from = Math.max(firstSequenceNumber, afterSequenceNumber + 1);
+                return readRange(from, Math.min(nextSequenceNumber - 1, from - 1 + limit));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<Message> findAround(String messageId, int radius) {
+            lock.readLock().lock();
+
+            try {
+                long last = nextSequenceNumber - 1;
+                long sequenceNumber = sequenceOf(messageId, last);
+                if (sequenceNumber == 0) {
+                    return Collections.emptyList();
+                }
+
+                return readRange(Math.max(firstSequenceNumber, sequenceNumber - radius), Math.min(last, sequenceNumber + radius));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * The 16-bit channel tag of an id from another channel may collide with this one, so the decoded sequence
+         * number is only trusted if the message stored there has exactly this id.
+         */
+        private long sequenceOf(String messageId, long last) {
+            long sequenceNumber = TimeOrderedIds.sequenceNumber(messageId, channelId);
+            if (sequenceNumber >= firstSequenceNumber && sequenceNumber <= last
+                    && messageId.equals(readRange(sequenceNumber, sequenceNumber).get(0).getMessageId())) {
+                return sequenceNumber;
+            }
+
+            return legacySequenceById.getOrDefault(messageId, 0L);
+        }
+
+        /**
+         * Revisions update the index while posts still add to it behind the lock, so revised messages are matched
+         * again against their current text, and the index is searched further back for every one that no longer
+         * matches.
+         */
+        private List<Message> search(String query, int limit, long beforeSequenceNumber) {
+            var terms = SearchIndex.tokenize(query);
+            var results = new ArrayList<Message>(Math.min(limit, 64));
+            long before = beforeSequenceNumber;
+            while (true) {
+                int wanted = limit - results.size();
+                var sequenceNumbers = searchIndex.search(terms, before, wanted);
+                boolean skipped = false;
+                lock.readLock().lock();
+
+                try {
+                    for (long sequenceNumber : sequenceNumbers) {
+                        var message = readRange(sequenceNumber, sequenceNumber).get(0);
+                        if (!message.isUpdate() || SearchIndex.matches(message.getMessage(), terms)) {
+                            results.add(message);
+                        } else {
+                            skipped = true;
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+
+                if (!skipped || sequenceNumbers.length < wanted) {
+                    return results;
+                }
+                before = sequenceNumbers[sequenceNumbers.length - 1];
+            }
+        }
+
+        private List<Message> findRevisions(long sequenceNumber) {
+            lock.readLock().lock();
+
+            try {
+                if (sequenceNumber < firstSequenceNumber || sequenceNumber >= nextSequenceNumber) {
+                    return Collections.emptyList();
+                }
+
+                var current = readRange(sequenceNumber, sequenceNumber).get(0);
+                if (current.isDeleted()) {
+                    return List.of(current);
+                }
+
+                var original = read(sequenceNumber, sequenceNumber, false).get(0);
+                var revisions = new ArrayList<Message>(current.getRevision() + 1);
+                long position = revisionPositions.getOrDefault(sequenceNumber, NO_POSITION);
+                while (position != NO_POSITION) {
+                    var revision = decodeRevision(log.read(position));
+                    revisions.add(revised(original, revision));
+                    position = revision.previousPosition;
+                }
+                revisions.add(original);
+                Collections.reverse(revisions);
+                return revisions;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Appends a revision of a message and applies it, under the write lock so the revision numbers of one message
+         * are consecutive.
+         */
+        private Message revise(long sequenceNumber, @Nullable String text, boolean deleted) {
+            lock.writeLock().lock();
+
+            try {
+                if (sequenceNumber < firstSequenceNumber || sequenceNumber >= nextSequenceNumber) {
+                    throw notFound(channelId, sequenceNumber);
+                }
+                var current = readRange(sequenceNumber, sequenceNumber).get(0);
+                if (current.isDeleted()) {
+                    throw notFound(channelId, sequenceNumber);
+                }
+
+                var revision = new StoredRevision(channelId, sequenceNumber, current.getRevision() + 1, clock.instant(), text, deleted,
+                        revisionPositions.getOrDefault(sequenceNumber, NO_POSITION));
+                apply(revision, log.append(encodeRevision(revision)));
+                return revised(current, revision);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Appends the new messages of another node as they are, except that a message which is already revised is
+         * appended without its original text, followed by its revision. Newer revisions of stored messages are
+         * appended like by {@link #revise}, and revisions of messages before the first stored one are ignored.
+         */
+        private List<Message> replicate(List<Message> messages) {
+            var stored = new ArrayList<Message>(messages.size());
+            lock.writeLock().lock();
+
+            try {
+                for (var message : messages) {
+                    long sequenceNumber = message.getSequenceNumber();
+                    if (sequenceNumber >= nextSequenceNumber) {
+                        if (sequenceNumber != nextSequenceNumber) {
+                            log.append(encodeGap(channelId, sequenceNumber));
+                            startAt(sequenceNumber);
+                        }
+                        var original = original(message);
+                        original.setMessage(message.isUpdate() ? null : message.getMessage());
+                        restore(original, log.append(encode(original, lastPosition)));
+                        searchIndex.add(sequenceNumber, SearchIndex.tokenize(original.getMessage()));
+                    } else if (sequenceNumber < firstSequenceNumber || !message.isUpdate() || readRange(sequenceNumber, sequenceNumber).get(0).getRevision() >= message.getRevision()) {
+                        continue;
+                    }
+
+                    if (message.isUpdate()) {
+                        var revision = new StoredRevision(channelId, sequenceNumber, message.getRevision(), message.getEditedAt(),
+                                message.getMessage(), message.isDeleted(), revisionPositions.getOrDefault(sequenceNumber, NO_POSITION));
+                        apply(revision, log.append(encodeRevision(revision)));
+                    }
+                    stored.add(message);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            return stored;
+        }
+
+        /**
+         * Makes {@code revision} the current state of its message and moves the message in the search index from the
+         * terms of its previous text to those of the new one.
+         */
+        private void apply(StoredRevision revision, long position) {
+            long sequenceNumber = revision.sequenceNumber;
+            var previousText = readRange(sequenceNumber, sequenceNumber).get(0).getMessage();
+            revisionPositions.put(sequenceNumber, position);
+
+            var tokens = SearchIndex.tokenize(revision.message);
+            var stale = new ArrayList<String>();
+            for (var token : SearchIndex.tokenize(previousText)) {
+                if (!Arrays.asList(tokens).contains(token)) {
+                    stale.add(token);
+                }
+            }
+            searchIndex.remove(sequenceNumber, stale.toArray(String[]::new));
+            searchIndex.add(sequenceNumber, tokens);
+        }
+
+        /**
+         * Drops the messages before {@code sequenceNumber}, which another node no longer retains, so that the channel
+         * goes on from there without a gap.
+         */
+        private void startAt(long sequenceNumber) {
+            firstSequenceNumber = sequenceNumber;
+            nextSequenceNumber = sequenceNumber;
+            lastPosition = NO_POSITION;
+            legacySequenceById.clear();
+            revisionPositions.clear();
+            searchIndex.dropBefore(sequenceNumber);
+        }
+
+        private long count() {
+            lock.readLock().lock();
+
+            try {
+                return nextSequenceNumber - firstSequenceNumber;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<Message> readRange(long from, long to) {
+            return read(from, to, true);
+        }
+
+        /**
+         * Walks the log backwards from the nearest indexed message after {@code to}. With {@code current}, every
+         * message comes with its latest revision applied, otherwise as it was posted.
+         */
+        private List<Message> read(long from, long to, boolean current) {
+            if (from > to) {
+                return Collections.emptyList();
+            }
+
+            var result = new Message[(int) (to - from + 1)];
+            var indexed = indexedAtOrAfter(to);
+            long position = indexed.position;
+            for (long sequenceNumber = indexed.sequenceNumber; sequenceNumber >= from; sequenceNumber--) {
+                var stored = decode(log.read(position));
+                if (sequenceNumber <= to) {
+                    var revisionPosition = current ? revisionPositions.get(sequenceNumber) : null;
+                    result[(int) (sequenceNumber - from)] = revisionPosition == null
+                            ? stored.message
+                            : revised(stored.message, decodeRevision(log.read(revisionPosition)));
+                }
+                position = stored.previousPosition;
+            }
+
+            return Collections.unmodifiableList(Arrays.asList(result));
+        }
+
+        private IndexEntry indexedAtOrAfter(long sequenceNumber) {
+            long indexed = (sequenceNumber + INDEX_INTERVAL - 1) / INDEX_INTERVAL * INDEX_INTERVAL;
+            if (indexed >= nextSequenceNumber - 1) {
+                return new IndexEntry(nextSequenceNumber - 1, lastPosition);
+            }
+
+            return new IndexEntry(indexed, sparseIndex[(int) (indexed / INDEX_INTERVAL) - 1]);
+        }
+
+        private Message save(NewMessage message) {
+            return saveAll(List.of(message)).get(0);
+        }
+
+        private List<Message> saveAll(List<NewMessage> messages) {
+            var saved = new Message[messages.size()];
+            var tokens = new String[saved.length][];
+            for (int i = 0; i < saved.length; i++) {
+                tokens[i] = SearchIndex.tokenize(messages.get(i).getMessage());
+            }
+            long now = clock.millis();
+            lock.writeLock().lock();
+
+            try {
+                for (int i = 0; i < saved.length; i++) {
+                    var message = messages.get(i);
+                    saved[i] = new Message();
+                    lastIdMillis = Math.max(lastIdMillis, message.getTimestamp() == null ? now : message.getTimestamp().toEpochMilli());
+                    saved[i].setMessageId(TimeOrderedIds.messageId(lastIdMillis, channelId, nextSequenceNumber + i));
+                    saved[i].setMessage(message.getMessage());
+                    saved[i].setAuthor(message.getAuthor());
+                    saved[i].setChannelId(message.getChannelId());
+                    saved[i].setTimestamp(message.getTimestamp());
+                    saved[i].setSequenceNumber(nextSequenceNumber + i);
+                }
+
+                var previous = new long[]{lastPosition};
+                var positions = log.append(saved.length, (index, position) -> {
+                    var record = encode(saved[index], previous[0]);
+                    previous[0] = position;
+                    return record;
+                });
+                for (int i = 0; i < saved.length; i++) {
+                    restore(saved[i], positions[i]);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            for (int i = 0; i < saved.length; i++) {
+                searchIndex.add(saved[i].getSequenceNumber(), tokens[i]);
+            }
+            return Arrays.asList(saved);
+        }
+
+        private void restore(Message message, long position) {
+            long sequenceNumber = message.getSequenceNumber();
+            if (sequenceNumber % INDEX_INTERVAL == 0) {
+                int slot = (int) (sequenceNumber / INDEX_INTERVAL) - 1;
+                if (slot >= sparseIndex.length) {
+                    sparseIndex = Arrays.copyOf(sparseIndex, sparseIndex.length * 2);
+                }
+                sparseIndex[slot] = position;
+            }
+
+            if (TimeOrderedIds.sequenceNumber(message.getMessageId(), channelId) != sequenceNumber) {
+                legacySequenceById.put(message.getMessageId(), sequenceNumber);
+            }
+            if (message.getTimestamp() != null) {
+                lastIdMillis = Math.max(lastIdMillis, message.getTimestamp().toEpochMilli());
+            }
+            nextSequenceNumber = sequenceNumber + 1;
+            lastPosition = position;
+        }
+    }
+
+    private record IndexEntry(long sequenceNumber, long position) {
+    }
+
+    private static Message revised(Message message, StoredRevision revision) {
+        var revised = original(message);
+        revised.setMessage(revision.message);
+        revised.setRevision(revision.number);
+        revised.setEditedAt(revision.editedAt);
+        revised.setDeleted(revision.deleted);
+        return revised;
+    }
+
+    private static Message original(Message message) {
+        var original = new Message();
+        original.setMessageId(message.getMessageId());
+        original.setChannelId(message.getChannelId());
+        original.setAuthor(message.getAuthor());
+        original.setSequenceNumber(message.getSequenceNumber());
+        original.setTimestamp(message.getTimestamp());
+        return original;
+    }
+
+    static ByteBuffer encode(Message message, long previousPosition) {
+        var channelId = bytes(message.getChannelId());
+        var messageId = bytes(message.getMessageId());
+        var author = bytes(message.getAuthor());
+        var body = bytes(message.getMessage());
+        var timestamp = message.getTimestamp();
+
+        return ByteBuffer.allocate(8 + 8 + 1 + 12 + 16 + length(channelId) + length(messageId) + length(author) + length(body))
+                .putLong(previousPosition)
+                .putLong(message.getSequenceNumber())
+                .put(timestamp == null ? MESSAGE_WITHOUT_TIMESTAMP : MESSAGE)
+                .putLong(timestamp == null ? 0 : timestamp.getEpochSecond())
+                .putInt(timestamp == null ? 0 : timestamp.getNano())
+                .putInt(channelId == null ? -1 : channelId.length).put(orEmpty(channelId))
+                .putInt(messageId == null ? -1 : messageId.length).put(orEmpty(messageId))
+                .putInt(author == null ? -1 : author.length).put(orEmpty(author))
+                .putInt(body == null ? -1 : body.length).put(orEmpty(body))
+                .flip();
+    }
+
+    static StoredMessage decode(ByteBuffer record) {
+        long previousPosition = record.getLong();
+        var message = new Message();
+        message.setSequenceNumber(record.getLong());
+        boolean hasTimestamp = record.get() == MESSAGE;
+        long epochSecond = record.getLong();
+        int nano = record.getInt();
+        message.setTimestamp(hasTimestamp ? Instant.ofEpochSecond(epochSecond, nano) : null);
+        message.setChannelId(string(record));
+        message.setMessageId(string(record));
+        message.setAuthor(string(record));
+        message.setMessage(string(record));
+
+        return new StoredMessage(message, previousPosition);
+    }
+
+    /**
+     * Revision records share the layout of message records up to the byte that tells whether a message has a
+     * timestamp, which is {@link #REVISION} for them, so logs written before revisions existed replay unchanged.
+     */
+    static ByteBuffer encodeRevision(StoredRevision revision) {
+        var channelId = bytes(revision.channelId);
+        var body = bytes(revision.message);
+
+        return ByteBuffer.allocate(8 + 8 + 1 + 12 + 4 + 1 + 8 + length(channelId) + length(body))
+                .putLong(revision.previousPosition)
+                .putLong(revision.sequenceNumber)
+                .put(REVISION)
+                .putLong(revision.editedAt.getEpochSecond())
+                .putInt(revision.editedAt.getNano())
+                .putInt(channelId.length).put(channelId)
+                .putInt(revision.number)
+                .put((byte) (revision.deleted ? 1 : 0))
+                .putInt(body == null ? -1 : body.length).put(orEmpty(body))
+                .flip();
+    }
+
+    static StoredRevision decodeRevision(ByteBuffer record) {
+        long previousPosition = record.getLong();
+        long sequenceNumber = record.getLong();
+        record.get();
+        var editedAt = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        var channelId = string(record);
+        int number = record.getInt();
+        boolean deleted = record.get() == 1;
+        var message = string(record);
+
+        return new StoredRevision(channelId, sequenceNumber, number, editedAt, message, deleted, previousPosition);
+    }
+
+    /**
+     * Gap records share the layout of message records up to the kind byte, like revision records.
+     */
+    static ByteBuffer encodeGap(String channelId, long firstSequenceNumber) {
+        var id = bytes(channelId);
+
+        return ByteBuffer.allocate(8 + 8 + 1 + 4 + id.length)
+                .putLong(NO_POSITION)
+                .putLong(firstSequenceNumber)
+                .put(GAP)
+                .putInt(id.length).put(id)
+                .flip();
+    }
+
+    static StoredGap decodeGap(ByteBuffer record) {
+        record.getLong();
+        long firstSequenceNumber = record.getLong();
+        record.get();
+
+        return new StoredGap(string(record), firstSequenceNumber);
+    }
+
+    @Nullable
+    private static byte[] bytes(@Nullable String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(@Nullable byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static byte[] orEmpty(@Nullable byte[] bytes) {
+        return bytes == null ? new byte[0] : bytes;
+    }
+
+    @Nullable
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    record StoredMessage(Message message, long previousPosition) {
+    }
+
+    /**
+     * The start of a channel that was replicated from another node after the messages before it had been evicted there.
+     */
+    record StoredGap(String channelId, long firstSequenceNumber) {
+    }
+
+    /**
+     * An edit or a tombstone, linked to the record of the revision it replaced, or {@link #NO_POSITION} for the first.
+     */
+    record StoredRevision(String channelId, long sequenceNumber, int number, Instant editedAt, @Nullable String message,
+                          boolean deleted, long previousPosition) {
+    }
+}
@@ -1,60 +1,258 @@
 package com.example.chat.repository.impl;
 
+import com.example.chat.configuration.StorageProperties;
 import com.example.chat.model.Channel;
 import com.example.chat.model.Message;
 import com.example.chat.model.NewChannel;
 import com.example.chat.repository.ChannelRepository;
 import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.Snapshottable;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.util.Comparator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
-public class InMemoryChannelRepository implements ChannelRepository {
+@ConditionalOnProperty(name = "chat.storage.type", havingValue = "memory", matchIfMissing = true)
+@Order(2)
+public class InMemoryChannelRepository implements ChannelRepository, Snapshottable {
+
+    private static final String SNAPSHOT_FILE = "channels" + SnapshotFiles.SUFFIX;
 
     private MessageRepository messageRepository;
-    private ConcurrentMap<String, Channel> storage = new ConcurrentHashMap<>();
+    private ConcurrentMap<String, ChannelEntry> storage = new ConcurrentHashMap<>();
+    private ConcurrentNavigableMap<DirectoryKey, ChannelEntry> directory = new ConcurrentSkipListMap<>();
+    @Nullable
+    private Path snapshotFile;
 
     public InMemoryChannelRepository(MessageRepository messageRepository) {
-        this.messageRepository = messageRepository;
+        this(messageRepository, (Path) null);
     }
 
-    private Channel getLatestMessageIfExists(Channel channel) {
-        return messageRepository.findLatest(channel.getId(), 1).stream()
-                .findFirst()
-                .map(message -> new Channel(channel.getId(), channel.getName(), message))
-                .orElse(channel);
+    @Autowired
+    public InMemoryChannelRepository(MessageRepository messageRepository, StorageProperties storageProperties) {
+        this(messageRepository, storageProperties.getSnapshotDirectory());
+    }
+
+    /**
+     * Restores the channel directory, including the last message of every channel, from {@code snapshotDirectory}
+     * without touching the message archives. A restored last message only stands until the first message posted after
+     * the restart, even if that one has a lower sequence number, since the message archives may have been snapshotted
+     * at an earlier point.
+     */
+    public InMemoryChannelRepository(MessageRepository messageRepository, @Nullable Path snapshotDirectory) {
+        this.messageRepository = messageRepository;
+        this.snapshotFile = snapshotDirectory == null ? null : snapshotDirectory.resolve(SNAPSHOT_FILE);
+        restoreSnapshot();
+        messageRepository.addSaveListener(this::onMessageSaved);
     }
 
     @Override
     public List<Channel> findAll() {
-        return storage.values().stream()
-                .map(this::getLatestMessageIfExists)
-                .sorted(Comparator.comparing(Channel::getName))
-                .toList();
+        var channels = new ArrayList<Channel>(storage.size());
+        for (var entry : directory.values()) {
+            channels.add(entry.current.get());
+        }
+        return Collections.unmodifiableList(channels);
+    }
+
+    @Override
+    public List<Channel> findPage(@Nullable String afterName, @Nullable String afterId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 channel");
+        }
+
+        var entries = afterName == null ? directory : directory.tailMap(new DirectoryKey(normalize(afterName), afterId), false);
+        var channels = new ArrayList<Channel>(Math.min(limit, 256));
+        for (var entry : entries.values()) {
+            if (channels.size() == limit) {
+                break;
+            }
+            channels.add(entry.current.get());
+        }
+        return Collections.unmodifiableList(channels);
+    }
+
+    @Override
+    public List<Channel> findByNamePrefix(String prefix, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 channel");
+        }
+
+        var normalizedPrefix = normalize(prefix);
+        var channels = new ArrayList<Channel>(Math.min(limit, 256));
+        for (var entry : directory.tailMap(new DirectoryKey(normalizedPrefix, ""), true).entrySet()) {
+            if (channels.size() == limit || !entry.getKey().normalizedName().startsWith(normalizedPrefix)) {
+                break;
+            }
+            channels.add(entry.getValue().current.get());
+        }
+        return Collections.unmodifiableList(channels);
     }
 
     @Override
     public Channel save(NewChannel newChannel) {
-        var uuid = UUID.randomUUID().toString();
-        Channel channel = new Channel(uuid, newChannel.getName());
-        storage.putIfAbsent(channel.getId(), channel);
+        var id = TimeOrderedIds.randomId(System.currentTimeMillis());
+        Channel channel = new Channel(id, newChannel.getName());
+        store(channel);
         return channel;
     }
 
+    @Override
+    public void replicate(Channel channel) {
+        store(new Channel(channel.getId(), channel.getName()));
+    }
+
+    /**
+     * Returns whether the channel was stored, which it is not if a channel with its id is stored already.
+     */
+    protected boolean store(Channel channel) {
+        var entry = new ChannelEntry(channel);
+        if (storage.putIfAbsent(channel.getId(), entry) != null) {
+            return false;
+        }
+        directory.put(entry.key, entry);
+        messageRepository.findLatest(channel.getId(), 1).forEach(entry::update);
+        return true;
+    }
+
     @Override
     public Optional<Channel> findById(String channelId) {
         return Optional.ofNullable(storage.get(channelId))
-                .map(this::getLatestMessageIfExists);
+                .map(entry -> entry.current.get());
     }
 
     @Override
     public boolean exists(String channelId) {
         return storage.containsKey(channelId);
     }
+
+    @Override
+    public void writeSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        var snapshot = findAll();
+        SnapshotFiles.write(snapshotFile, out -> {
+            out.writeInt(snapshot.size());
+            for (var channel : snapshot) {
+                SnapshotFiles.writeString(out, channel.getId());
+                SnapshotFiles.writeString(out, channel.getName());
+                out.writeBoolean(channel.getLastMessage() != null);
+                if (channel.getLastMessage() != null) {
+                    SnapshotFiles.writeMessage(out, channel.getLastMessage());
+                }
+            }
+        });
+    }
+
+    private void restoreSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+
+        List<ChannelEntry> entries;
+        try {
+            entries = SnapshotFiles.read(snapshotFile, (in, version) -> {
+                int count = in.readInt();
+                var restored = new ArrayList<ChannelEntry>(count);
+                for (int i = 0; i < count; i++) {
+                    var id = SnapshotFiles.readString(in);
+                    var name = SnapshotFiles.readString(in);
+                    var lastMessage = in.readBoolean() ? SnapshotFiles.readMessage(in, version) : null;
+                    restored.add(new ChannelEntry(new Channel(id, name, lastMessage), lastMessage));
+                }
+                return restored;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot " + snapshotFile, e);
+        }
+
+        for (var entry : entries) {
+            storage.put(entry.id, entry);
+            directory.put(entry.key, entry);
+        }
+    }
+
+    private void onMessageSaved(Message message) {
+        var entry = storage.get(message.getChannelId());
+        if (entry != null) {
+            entry.update(message);
+        }
+    }
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Position of a channel in the directory: its case-insensitive name, with the id breaking ties between channels of
+     * the same name. A key without id sorts after every channel of its name.
+     */
+    private record DirectoryKey(String normalizedName, @Nullable String id) implements Comparable<DirectoryKey> {
+
+        @Override
+        public int compareTo(DirectoryKey other) {
+            int byName = normalizedName.compareTo(other.normalizedName);
+            if (byName != 0) {
+                return byName;
+            }
+            if (id == null || other.id == null) {
+                return id == null ? (other.id == null ? 0 : 1) : -1;
+            }
+            return id.compareTo(other.id);
+        }
+    }
+
+    private static class ChannelEntry {
+        private final String id;
+        private final String name;
+        private final DirectoryKey key;
+        private final AtomicReference<Channel> current;
+        @Nullable
+        private final Message restoredLastMessage;
+
+        private ChannelEntry(Channel channel) {
+            this(channel, null);
+        }
+
+        private ChannelEntry(Channel channel, @Nullable Message restoredLastMessage) {
+            this.id = channel.getId();
+            this.name = channel.getName();
+            this.key = new DirectoryKey(normalize(name), id);
+            this.current = new AtomicReference<>(channel);
+            this.restoredLastMessage = restoredLastMessage;
+        }
+
+        private void update(Message message) {
+            current.updateAndGet(channel -> {
+                var lastMessage = channel.getLastMessage();
+                if (lastMessage != null && lastMessage == restoredLastMessage && !message.isUpdate()) {
+                    return new Channel(id, name, message);
+                }
+                if (lastMessage != null && (lastMessage.getSequenceNumber() > message.getSequenceNumber()
+                        || lastMessage.getSequenceNumber().equals(message.getSequenceNumber()) && lastMessage.getRevision() >= message.getRevision())) {
+                    return channel;
+                }
+                return new Channel(id, name, message);
+            });
+        }
+    }
 }
@@ -1,27 +1,117 @@
 package com.example.chat.repository.impl;
 
+import com.example.chat.configuration.StorageProperties;
+import com.example.chat.exception.ExpiredCursorException;
+import com.example.chat.exception.MessageNotFoundException;
 import com.example.chat.model.Message;
 import com.example.chat.model.NewMessage;
 import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.RetentionPolicy;
+import com.example.chat.repository.Snapshottable;
 import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
+@Slf4j
 @Component
-public class InMemoryMessageRepository implements MessageRepository {
+@ConditionalOnProperty(name = "chat.storage.type", havingValue = "memory", matchIfMissing = true)
+@Order(3)
+public class InMemoryMessageRepository implements MessageRepository, Snapshottable, DisposableBean {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024;
+    private static final String SNAPSHOT_DIRECTORY = "messages";
 
     private ConcurrentMap<String, MessageArchive> storage = new ConcurrentHashMap<>();
+    private ConcurrentMap<String, RetentionPolicy> retentionPolicies = new ConcurrentHashMap<>();
+    private List<Consumer<Message>> saveListeners = new CopyOnWriteArrayList<>();
+    private AuthorTable authors = new AuthorTable();
+    private Set<String> snapshotted = ConcurrentHashMap.newKeySet();
+    private ConcurrentMap<String, CompletableFuture<MessageArchive>> loading = new ConcurrentHashMap<>();
+    private RetentionPolicy defaultRetentionPolicy;
+    private Clock clock;
+    private int segmentSize;
+    @Nullable
+    private Path snapshotDirectory;
+    private ScheduledExecutorService maintenance;
+
+    public InMemoryMessageRepository() {
+        this(RetentionPolicy.UNLIMITED, Clock.systemUTC());
+    }
+
+    public InMemoryMessageRepository(RetentionPolicy defaultRetentionPolicy, Clock clock) {
+        this(defaultRetentionPolicy, clock, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Autowired
+    public InMemoryMessageRepository(RetentionPolicy defaultRetentionPolicy, Clock clock, StorageProperties storageProperties) {
+        this(defaultRetentionPolicy, clock, DEFAULT_SEGMENT_SIZE, storageProperties.getSnapshotDirectory());
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "message-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long compactionMillis = Math.max(1, storageProperties.getCompactionInterval().toMillis());
+        maintenance.scheduleWithFixedDelay(this::compactQuietly, compactionMillis, compactionMillis, TimeUnit.MILLISECONDS);
+        long indexMillis = Math.max(1, storageProperties.getIndexInterval().toMillis());
+        maintenance.scheduleWithFixedDelay(this::indexQuietly, indexMillis, indexMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public InMemoryMessageRepository(RetentionPolicy defaultRetentionPolicy, Clock clock, int segmentSize) {
+        this(defaultRetentionPolicy, clock, segmentSize, null);
+    }
+
+    /**
+     * Archives found in {@code snapshotDirectory} are not read here, only listed, and each one is loaded on the first
+     * access to its channel.
+     */
+    public InMemoryMessageRepository(RetentionPolicy defaultRetentionPolicy, Clock clock, int segmentSize, @Nullable Path snapshotDirectory) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.defaultRetentionPolicy = defaultRetentionPolicy;
+        this.clock = clock;
+        this.segmentSize = segmentSize;
+        this.snapshotDirectory = snapshotDirectory == null ? null : snapshotDirectory.resolve(SNAPSHOT_DIRECTORY);
+        listSnapshots();
+    }
 
     @Override
     public List<Message> findLatest(String channelId, int fetchMax, @Nullable String lastSeenMessageId) {
@@ -29,71 +119,1188 @@ public class InMemoryMessageRepository implements MessageRepository {
             throw new IllegalArgumentException("Can't fetch less than 1 message");
         }
 
-        return Optional.ofNullable(storage.get(channelId))
+        return Optional.ofNullable(archive(channelId))
                 .map(archive -> archive.findLatest(fetchMax, lastSeenMessageId))
                 .orElse(Collections.emptyList());
     }
 
+    @Override
+    public List<Message> findBefore(String channelId, long beforeSequenceNumber, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        return Optional.ofNullable(archive(channelId))
+                .map(archive -> archive.findBefore(beforeSequenceNumber, limit))
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public List<Message> findAfter(String channelId, long afterSequenceNumber, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        return Optional.ofNullable(archive(channelId))
+                .map(archive -> archive.findAfter(afterSequenceNumber, limit))
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public List<Message> findAround(String channelId, String messageId, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius can't be negative");
+        }
+
+        return Optional.ofNullable(archive(channelId))
+                .map(archive -> archive.findAround(messageId, radius))
+                .orElse(Collections.emptyList());
+    }
+
     @Override
     public Message save(NewMessage newMessage) {
-        return storage.computeIfAbsent(newMessage.getChannelId(), MessageArchive::new)
-                .save(newMessage);
+        var saved = writableArchive(newMessage.getChannelId())
+                .save(newMessage, clock.instant());
+        saveListeners.forEach(listener -> listener.accept(saved));
+        return saved;
+    }
+
+    @Override
+    public List<Message> saveAll(List<NewMessage> newMessages) {
+        var now = clock.instant();
+        var saved = new ArrayList<Message>(newMessages.size());
+        groupByChannel(newMessages).forEach((channelId, messages) ->
+                saved.addAll(writableArchive(channelId).saveAll(messages, now)));
+        saved.forEach(message -> saveListeners.forEach(listener -> listener.accept(message)));
+        return saved;
+    }
+
+    @Override
+    public Message edit(String channelId, long sequenceNumber, String message) {
+        var edited = retainedArchive(channelId, sequenceNumber).edit(sequenceNumber, message, clock.instant());
+        saveListeners.forEach(listener -> listener.accept(edited));
+        return edited;
+    }
+
+    @Override
+    public Message delete(String channelId, long sequenceNumber) {
+        var deleted = retainedArchive(channelId, sequenceNumber).delete(sequenceNumber, clock.instant());
+        saveListeners.forEach(listener -> listener.accept(deleted));
+        return deleted;
+    }
+
+    /**
+     * A message that leaves a gap after the stored ones, because the other node no longer retains the messages in
+     * between, starts the channel over from it.
+     */
+    @Override
+    public List<Message> replicate(String channelId, List<Message> messages) {
+        var stored = replicaArchive(channelId, messages).replicate(messages, clock.instant());
+        stored.forEach(message -> saveListeners.forEach(listener -> listener.accept(message)));
+        return stored;
+    }
+
+    @Override
+    public List<Message> findRevisions(String channelId, long sequenceNumber) {
+        return Optional.ofNullable(archive(channelId))
+                .map(archive -> archive.findRevisions(sequenceNumber))
+                .orElse(Collections.emptyList());
+    }
+
+    /**
+     * Drops the text of messages deleted since the last compaction from memory and from the search index, removes the
+     * terms that only occurred in superseded revisions of edited messages from the search index, and returns the number
+     * of bytes reclaimed. Reads already ignore both, so this only runs in the background.
+     */
+    public long compact() {
+        long reclaimed = 0;
+        for (var archive : storage.values()) {
+            reclaimed += archive.compact();
+        }
+        return reclaimed;
+    }
+
+    private void compactQuietly() {
+        try {
+            long reclaimed = compact();
+            if (reclaimed > 0) {
+                log.debug("Compaction reclaimed {} bytes of deleted messages", reclaimed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to compact deleted messages", e);
+        }
+    }
+
+    /**
+     * Adds the messages saved since the last call to the search index of their channel. Searches do this themselves
+     * before looking at the index, so this only runs in the background to keep their share small.
+     */
+    public void index() {
+        for (var archive : storage.values()) {
+            archive.index();
+        }
+    }
+
+    private void indexQuietly() {
+        try {
+            index();
+        } catch (RuntimeException e) {
+            log.error("Failed to index saved messages", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+    }
+
+    static Map<String, List<NewMessage>> groupByChannel(List<NewMessage> newMessages) {
+        var byChannel = new LinkedHashMap<String, List<NewMessage>>();
+        for (var newMessage : newMessages) {
+            byChannel.computeIfAbsent(newMessage.getChannelId(), channelId -> new ArrayList<>()).add(newMessage);
+        }
+        return byChannel;
+    }
+
+    @Override
+    public List<Message> search(String channelId, String query, int limit, long beforeSequenceNumber) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Can't fetch less than 1 message");
+        }
+
+        return Optional.ofNullable(archive(channelId))
+                .map(archive -> archive.search(query, limit, beforeSequenceNumber))
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public long count(String channelId) {
+        var archive = archive(channelId);
+        return archive == null ? 0 : archive.count();
+    }
+
+    @Override
+    public long searchIndexBytes(String channelId) {
+        var archive = archive(channelId);
+        return archive == null ? 0 : archive.searchIndex.estimatedBytes();
+    }
+
+    @Override
+    public void addSaveListener(Consumer<Message> listener) {
+        saveListeners.add(listener);
+    }
+
+    public void setRetentionPolicy(String channelId, RetentionPolicy retentionPolicy) {
+        retentionPolicies.put(channelId, retentionPolicy);
+        writableArchive(channelId).setRetentionPolicy(retentionPolicy);
+    }
+
+    /**
+     * Writes every archive that changed since its last snapshot. Archives are read like by any other reader, so saves
+     * carry on while a snapshot is written.
+     */
+    @Override
+    public void writeSnapshot() throws IOException {
+        if (snapshotDirectory == null) {
+            return;
+        }
+
+        for (var archive : storage.values()) {
+            archive.writeSnapshot(snapshotFile(archive.channelId));
+        }
+    }
+
+    private MessageArchive retainedArchive(String channelId, long sequenceNumber) {
+        var archive = archive(channelId);
+        if (archive == null) {
+            throw MessageArchive.notFound(channelId, sequenceNumber);
+        }
+        return archive;
+    }
+
+    private MessageArchive replicaArchive(String channelId, List<Message> messages) {
+        var archive = writableArchive(channelId);
+        long last = archive.lastSequenceNumber;
+        for (var message : messages) {
+            if (message.getSequenceNumber() > last) {
+                if (last > 0 && message.getSequenceNumber() > last + 1) {
+                    archive = createArchive(channelId);
+                    storage.put(channelId, archive);
+                }
+                break;
+            }
+        }
+        return archive;
+    }
+
+    private MessageArchive writableArchive(String channelId) {
+        var archive = archive(channelId);
+        return archive != null ? archive : storage.computeIfAbsent(channelId, this::createArchive);
+    }
+
+    @Nullable
+    private MessageArchive archive(String channelId) {
+        var archive = storage.get(channelId);
+        if (archive != null || !snapshotted.contains(channelId)) {
+            return archive;
+        }
+
+        return loadArchive(channelId);
+    }
+
+    /**
+     * Reads the snapshot of a channel outside of any lock of {@link #storage}, so a slow read only holds up the callers
+     * of this channel. Concurrent callers wait for the first one's load instead of reading the file again. The archive
+     * is published before the channel leaves {@link #snapshotted}, so whoever finds neither has nothing to load.
+     */
+    private MessageArchive loadArchive(String channelId) {
+        var load = new CompletableFuture<MessageArchive>();
+        var pending = loading.putIfAbsent(channelId, load);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+
+        try {
+            var archive = storage.get(channelId);
+            if (archive == null) {
+                archive = readArchive(channelId);
+                storage.put(channelId, archive);
+                snapshotted.remove(channelId);
+            }
+            load.complete(archive);
+            return archive;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(channelId, load);
+        }
+    }
+
+    private MessageArchive readArchive(String channelId) {
+        var archive = createArchive(channelId);
+        var file = snapshotFile(channelId);
+        try {
+            SnapshotFiles.read(file, (in, version) -> {
+                archive.restore(in, version, clock.instant());
+                return archive;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot " + file, e);
+        }
+        return archive;
+    }
+
+    private MessageArchive createArchive(String channelId) {
+        return new MessageArchive(channelId, segmentSize, retentionPolicies.getOrDefault(channelId, defaultRetentionPolicy), authors);
+    }
+
+    private void listSnapshots() {
+        if (snapshotDirectory == null || !Files.isDirectory(snapshotDirectory)) {
+            return;
+        }
+
+        try (var files = Files.list(snapshotDirectory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SnapshotFiles.SUFFIX))
+                    .map(name -> name.substring(0, name.length() - SnapshotFiles.SUFFIX.length()))
+                    .forEach(snapshotted::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list snapshots in " + snapshotDirectory, e);
+        }
+    }
+
+    private Path snapshotFile(String channelId) {
+        return snapshotDirectory.resolve(channelId + SnapshotFiles.SUFFIX);
     }
 
+    /**
+     * Single-writer archive. Saves are serialized by {@code writeLock}; reads take no lock and rely on the
+     * writer publishing the segment directory before the message slot and the sequence number after it.
+     * Messages are stored column-wise in their segments and only materialized as {@link Message} when read.
+     * Edits and deletions never touch the columns: they publish a new {@link Revision} in the segment's overlay, which
+     * reads check per message, and deleted text is dropped from the columns later by {@link #compact}.
+     */
     private static class MessageArchive {
-        private AtomicLong sequentialNumber = new AtomicLong(1);
-        private String channelId;
-        private List<Message> messages = new ArrayList<>();
-        private ReadWriteLock lock = new ReentrantReadWriteLock();
+        private static final long MESSAGE_OVERHEAD_BYTES = 48;
+        private static final long REVISION_OVERHEAD_BYTES = 40;
+        private static final int REVISIONS_VERSION = 2;
+        private static final int INDEX_BATCH_SIZE = 256;
+        private static final String[] NO_TOKENS = new String[0];
+        private final String channelId;
+        private final AuthorTable authors;
+        private final int segmentSize;
+        private final Lock writeLock = new ReentrantLock();
+        private final SearchIndex searchIndex = new SearchIndex();
+        private final Lock indexLock = new ReentrantLock();
+        private volatile long indexedSequenceNumber;
+        private volatile RetentionPolicy retentionPolicy;
+        private volatile Directory directory;
+        private volatile long lastSequenceNumber;
+        private long retainedBytes;
+        private long lastIdMillis;
+        private long snapshotSequenceNumber;
+        private volatile long revisionCount;
+        private long snapshotRevisionCount;
+        private long[] uncompacted = new long[0];
+        private int uncompactedCount;
 
-        private MessageArchive(String channelId) {
+        private MessageArchive(String channelId, int segmentSize, RetentionPolicy retentionPolicy, AuthorTable authors) {
             this.channelId = channelId;
+            this.authors = authors;
+            this.segmentSize = segmentSize;
+            this.retentionPolicy = retentionPolicy;
+            this.directory = new Directory(new Segment[0], 1, segmentSize);
         }
 
         public List<Message> findLatest(int fetchMax, @Nullable String lastSeenMessageId) {
-            lock.readLock().lock();
+            var snapshot = directory;
+            long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+            long lastSeen = Objects.isNull(lastSeenMessageId) ? 0 : sequenceOf(lastSeenMessageId, snapshot, last);
+            long from = Math.max(Math.max(lastSeen + 1, last - fetchMax + 1), snapshot.firstSequenceNumber);
+
+            return snapshot.range(from, last);
+        }
+
+        private List<Message> findBefore(long beforeSequenceNumber, int limit) {
+            var snapshot = directory;
+            long last = Math.min(Math.min(lastSequenceNumber, snapshot.capacityEnd()), beforeSequenceNumber - 1);
+            long from = Math.max(last - limit + 1, snapshot.firstSequenceNumber);
+
+            return snapshot.range(from, last);
+        }
+
+        private List<Message> findAfter(long afterSequenceNumber, int limit) {
+            var snapshot = directory;
+            long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+            if (afterSequenceNumber > 0 && afterSequenceNumber + 1 < snapshot.firstSequenceNumber) {
+                throw new ExpiredCursorException("Messages after %d are no longer retained in channel %s".formatted(afterSequenceNumber, channelId));
+            }
+            long from = Math.max(afterSequenceNumber + 1, snapshot.firstSequenceNumber);
+
+            return snapshot.range(from, Math.min(last, from - 1 + limit));
+        }
+
+        private List<Message> findAround(String messageId, int radius) {
+            var snapshot = directory;
+            long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+            long sequenceNumber = resolve(messageId, snapshot, last);
+            if (sequenceNumber < 0) {
+                long decoded = TimeOrderedIds.sequenceNumber(messageId, channelId);
+                if (decoded > 0 && decoded < snapshot.firstSequenceNumber) {
+                    throw new ExpiredCursorException("Message %s is no longer retained in channel %s".formatted(messageId, channelId));
+                }
+                return Collections.emptyList();
+            }
+
+            return snapshot.range(Math.max(sequenceNumber - radius, snapshot.firstSequenceNumber), Math.min(sequenceNumber + radius, last));
+        }
+
+        /**
+         * The index keeps the terms of superseded and deleted texts until the next compaction removes them, so revised
+         * messages are matched again against their current text, and the index is searched further back for every one
+         * that no longer matches.
+         */
+        private List<Message> search(String query, int limit, long beforeSequenceNumber) {
+            index();
+            var terms = SearchIndex.tokenize(query);
+            var results = new ArrayList<Message>(Math.min(limit, 64));
+            long before = beforeSequenceNumber;
+            while (true) {
+                int wanted = limit - results.size();
+                var sequenceNumbers = searchIndex.search(terms, before, wanted);
+                var snapshot = directory;
+                long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+                boolean skipped = false;
+                for (long sequenceNumber : sequenceNumbers) {
+                    if (sequenceNumber >= snapshot.firstSequenceNumber && sequenceNumber <= last) {
+                        var message = snapshot.get(sequenceNumber);
+                        if (!message.isUpdate() || SearchIndex.matches(message.getMessage(), terms)) {
+                            results.add(message);
+                        } else {
+                            skipped = true;
+                        }
+                    }
+                }
+                if (!skipped || sequenceNumbers.length < wanted) {
+                    return results;
+                }
+                before = sequenceNumbers[sequenceNumbers.length - 1];
+            }
+        }
+
+        private List<Message> findRevisions(long sequenceNumber) {
+            var snapshot = directory;
+            long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+            if (sequenceNumber < snapshot.firstSequenceNumber || sequenceNumber > last) {
+                return Collections.emptyList();
+            }
+
+            var segment = snapshot.segmentOf(sequenceNumber);
+            int offset = (int) (sequenceNumber - segment.firstSequenceNumber);
+            var body = segment.body(offset);
+            var head = segment.revision(offset);
+            if (head == null || head.deleted) {
+                return List.of(segment.message(offset, head, body));
+            }
+
+            var revisions = new ArrayList<Message>(head.number + 1);
+            for (var revision = head; revision != null; revision = revision.previous) {
+                revisions.add(segment.message(offset, revision, null));
+            }
+            revisions.add(segment.message(offset, null, body));
+            Collections.reverse(revisions);
+            return revisions;
+        }
+
+        private long count() {
+            var snapshot = directory;
+            return Math.max(0, Math.min(lastSequenceNumber, snapshot.capacityEnd()) - snapshot.firstSequenceNumber + 1);
+        }
+
+        private long sequenceOf(String messageId, Directory snapshot, long last) {
+            long sequenceNumber = resolve(messageId, snapshot, last);
+            if (sequenceNumber > 0) {
+                return sequenceNumber;
+            }
+            if (snapshot.firstSequenceNumber > 1) {
+                throw new ExpiredCursorException("Message %s is no longer retained in channel %s".formatted(messageId, channelId));
+            }
+
+            return 0;
+        }
+
+        private long resolve(String messageId, Directory snapshot, long last) {
+            long sequenceNumber = TimeOrderedIds.sequenceNumber(messageId, channelId);
+            if (sequenceNumber >= snapshot.firstSequenceNumber && sequenceNumber <= last
+                    && messageId.equals(snapshot.messageId(sequenceNumber))) {
+                return sequenceNumber;
+            }
+
+            return -1;
+        }
+
+        private Message save(NewMessage message, Instant now) {
+            writeLock.lock();
+
+            try {
+                var saved = append(message, lastSequenceNumber + 1, now);
+                lastSequenceNumber = saved.getSequenceNumber();
+                evictExpiredSegments(now);
+                return saved;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private List<Message> saveAll(List<NewMessage> messages, Instant now) {
+            var saved = new Message[messages.size()];
+            writeLock.lock();
 
             try {
-                int indexOfLastSeen = Objects.isNull(lastSeenMessageId) ? -1 : indexOfMessage(lastSeenMessageId);
+                long first = lastSequenceNumber + 1;
+                for (int i = 0; i < saved.length; i++) {
+                    saved[i] = append(messages.get(i), first + i, now);
+                }
+                lastSequenceNumber = first + saved.length - 1;
+                evictExpiredSegments(now);
+            } finally {
+                writeLock.unlock();
+            }
+
+            return Arrays.asList(saved);
+        }
 
-                if (messages.size() - fetchMax > indexOfLastSeen) {
-                    return List.copyOf(messages.subList(messages.size() - fetchMax, messages.size()));
-                } else {
-                    return List.copyOf(messages.subList(indexOfLastSeen + 1, messages.size()));
+        /**
+         * Adds the messages saved since the last call to the search index, in batches that are tokenized before taking
+         * the index's lock. Saving never indexes, so posters don't pay for it: searches call this first, which keeps
+         * every saved message searchable, and the repository's background indexer calls it so searches rarely have
+         * much to catch up on. Messages are indexed with their current text, and deleted ones not at all.
+         */
+        private void index() {
+            if (indexedSequenceNumber >= lastSequenceNumber) {
+                return;
+            }
+            indexLock.lock();
+
+            try {
+                var snapshot = directory;
+                long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+                long from = Math.max(indexedSequenceNumber + 1, snapshot.firstSequenceNumber);
+                while (from <= last) {
+                    var tokens = new String[(int) Math.min(INDEX_BATCH_SIZE, last - from + 1)][];
+                    for (int i = 0; i < tokens.length; i++) {
+                        var segment = snapshot.segmentOf(from + i);
+                        int offset = (int) (from + i - segment.firstSequenceNumber);
+                        var head = segment.revision(offset);
+                        tokens[i] = head == null ? tokenize(segment.body(offset)) : head.deleted ? NO_TOKENS : tokenize(head.body);
+                    }
+                    searchIndex.addAll(from, tokens);
+                    from += tokens.length;
                 }
+                indexedSequenceNumber = Math.max(indexedSequenceNumber, last);
+                searchIndex.dropBefore(directory.firstSequenceNumber);
+            } finally {
+                indexLock.unlock();
+            }
+        }
+
+        private Message edit(long sequenceNumber, String text, Instant now) {
+            var tokens = SearchIndex.tokenize(text);
+            var body = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+            Message edited;
+            writeLock.lock();
+
+            try {
+                edited = revise(sequenceNumber, current -> new Revision(current, now, body, false));
+                markUncompacted(sequenceNumber);
             } finally {
-                lock.readLock().unlock();
+                writeLock.unlock();
             }
+
+            searchIndex.add(sequenceNumber, tokens);
+            return edited;
         }
 
-        private int indexOfMessage(String messageId) {
-            for (int i = messages.size() - 1; i >= 0; i--) {
-                if (messages.get(i).getMessageId().equals(messageId)) {
-                    return i;
+        private Message delete(long sequenceNumber, Instant now) {
+            writeLock.lock();
+
+            try {
+                var deleted = revise(sequenceNumber, current -> new Revision(current, now, null, true));
+                markUncompacted(sequenceNumber);
+                return deleted;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * Appends the new messages of another node under their own sequence numbers and ids, and publishes the newer
+         * revisions of stored messages like {@link #edit} and {@link #delete} do. A new message that is already revised
+         * is appended without its original text, which the other node may no longer have, and with its revision.
+         */
+        private List<Message> replicate(List<Message> messages, Instant now) {
+            var stored = new ArrayList<Message>(messages.size());
+            var revised = new ArrayList<Message>();
+            writeLock.lock();
+
+            try {
+                for (var message : messages) {
+                    long sequenceNumber = message.getSequenceNumber();
+                    if (sequenceNumber > lastSequenceNumber) {
+                        if (lastSequenceNumber > 0 && sequenceNumber != lastSequenceNumber + 1) {
+                            throw new IllegalStateException("Message %d of channel %s does not follow message %d"
+                                    .formatted(sequenceNumber, channelId, lastSequenceNumber));
+                        }
+                        appendReplica(message);
+                        if (message.isUpdate()) {
+                            reviseReplica(message);
+                        }
+                        lastSequenceNumber = sequenceNumber;
+                        stored.add(message);
+                    } else if (message.isUpdate() && reviseReplica(message)) {
+                        stored.add(message);
+                        revised.add(message);
+                    }
                 }
+                evictExpiredSegments(now);
+            } finally {
+                writeLock.unlock();
             }
 
-            return -1;
+            for (var message : revised) {
+                searchIndex.add(message.getSequenceNumber(), SearchIndex.tokenize(message.getMessage()));
+            }
+            return stored;
+        }
+
+        private void appendReplica(Message message) {
+            long sequenceNumber = message.getSequenceNumber();
+            var messageId = message.getMessageId();
+            var timestamp = message.getTimestamp();
+            long idMillis = TimeOrderedIds.sequenceNumber(messageId, channelId) == sequenceNumber ? TimeOrderedIds.epochMillis(messageId)
+                    : timestamp == null ? lastIdMillis : timestamp.toEpochMilli();
+            lastIdMillis = Math.max(lastIdMillis, idMillis);
+            var body = message.isUpdate() || message.getMessage() == null ? null : message.getMessage().getBytes(StandardCharsets.UTF_8);
+            append(sequenceNumber, idMillis, timestamp, authors.intern(message.getAuthor()), body);
+        }
+
+        private boolean reviseReplica(Message message) {
+            long sequenceNumber = message.getSequenceNumber();
+            var snapshot = directory;
+            if (sequenceNumber < snapshot.firstSequenceNumber) {
+                return false;
+            }
+            var segment = snapshot.segmentOf(sequenceNumber);
+            int offset = (int) (sequenceNumber - segment.firstSequenceNumber);
+            var current = segment.revision(offset);
+            if (current != null && current.number >= message.getRevision()) {
+                return false;
+            }
+
+            var body = message.getMessage() == null ? null : message.getMessage().getBytes(StandardCharsets.UTF_8);
+            var revision = new Revision(message.getRevision(), message.getEditedAt(), body, message.isDeleted(), current);
+            segment.revise(offset, revision, revision.bytes());
+            retainedBytes += revision.bytes();
+            revisionCount++;
+            markUncompacted(sequenceNumber);
+            return true;
+        }
+
+        private void markUncompacted(long sequenceNumber) {
+            if (uncompactedCount == uncompacted.length) {
+                uncompacted = Arrays.copyOf(uncompacted, Math.max(16, uncompactedCount * 2));
+            }
+            uncompacted[uncompactedCount++] = sequenceNumber;
         }
 
-        private Message save(NewMessage message) {
-            lock.writeLock().lock();
+        private Message revise(long sequenceNumber, UnaryOperator<Revision> next) {
+            var snapshot = directory;
+            if (sequenceNumber < snapshot.firstSequenceNumber || sequenceNumber > lastSequenceNumber) {
+                throw notFound(channelId, sequenceNumber);
+            }
+            var segment = snapshot.segmentOf(sequenceNumber);
+            int offset = (int) (sequenceNumber - segment.firstSequenceNumber);
+            var current = segment.revision(offset);
+            if (current != null && current.deleted) {
+                throw notFound(channelId, sequenceNumber);
+            }
+
+            var revision = next.apply(current);
+            segment.revise(offset, revision, revision.bytes());
+            retainedBytes += revision.bytes();
+            revisionCount++;
+            return segment.message(offset);
+        }
+
+        static MessageNotFoundException notFound(String channelId, long sequenceNumber) {
+            return new MessageNotFoundException("Message %d of channel %s does not exist".formatted(sequenceNumber, channelId));
+        }
+
+        /**
+         * Replaces the revision history of every message deleted since the last compaction with a bare tombstone and
+         * clears its original text. Readers are not blocked: the tombstone was published before, so any reader that sees
+         * the cleared text also sees the tombstone and ignores the text anyway. Edited messages keep their history, but
+         * terms that only occur in their superseded texts are removed from the search index. The index is updated after
+         * the lock is released, so the terms of the current text are added again in case an edit meanwhile brought back
+         * one of the removed terms.
+         */
+        private long compact() {
+            var dropped = new ArrayList<DroppedText>();
+            var superseded = new ArrayList<SupersededText>();
+            long reclaimed = 0;
+            writeLock.lock();
 
             try {
-                var saved = new Message();
-                saved.setMessageId(UUID.randomUUID().toString());
-                saved.setMessage(message.getMessage());
-                saved.setAuthor(message.getAuthor());
-                saved.setChannelId(message.getChannelId());
-                saved.setTimestamp(message.getTimestamp());
-                saved.setSequenceNumber(sequentialNumber.getAndIncrement());
+                var snapshot = directory;
+                var revised = Arrays.copyOf(uncompacted, uncompactedCount);
+                Arrays.sort(revised);
+                for (int i = 0; i < revised.length; i++) {
+                    long sequenceNumber = revised[i];
+                    if (sequenceNumber < snapshot.firstSequenceNumber || (i > 0 && revised[i - 1] == sequenceNumber)) {
+                        continue;
+                    }
+                    var segment = snapshot.segmentOf(sequenceNumber);
+                    int offset = (int) (sequenceNumber - segment.firstSequenceNumber);
+                    var head = segment.revision(offset);
+                    var body = segment.body(offset);
+                    if (!head.deleted) {
+                        var bodies = new ArrayList<byte[]>(head.number);
+                        for (var revision = head.previous; revision != null; revision = revision.previous) {
+                            bodies.add(revision.body);
+                        }
+                        bodies.add(body);
+                        superseded.add(new SupersededText(sequenceNumber, bodies, head.body));
+                        continue;
+                    }
 
-                messages.add(saved);
+                    long freed = 0;
+                    if (body != null) {
+                        dropped.add(new DroppedText(sequenceNumber, body));
+                        freed += body.length;
+                    }
+                    for (var revision = head.previous; revision != null; revision = revision.previous) {
+                        if (revision.body != null) {
+                            dropped.add(new DroppedText(sequenceNumber, revision.body));
+                        }
+                        freed += revision.bytes();
+                    }
+                    segment.compact(offset, head.withoutHistory(), freed);
+                    retainedBytes -= freed;
+                    reclaimed += freed;
+                }
+                uncompactedCount = 0;
+                uncompacted = new long[0];
+            } finally {
+                writeLock.unlock();
+            }
 
-                return saved;
+            indexLock.lock();
+
+            try {
+                updateIndex(dropped, superseded);
             } finally {
-                lock.writeLock().unlock();
+                indexLock.unlock();
+            }
+            return reclaimed;
+        }
+
+        private void updateIndex(List<DroppedText> dropped, List<SupersededText> superseded) {
+            for (var text : dropped) {
+                searchIndex.remove(text.sequenceNumber, tokenize(text.body));
+            }
+            for (var text : superseded) {
+                var current = Arrays.asList(tokenize(text.current));
+                var stale = new LinkedHashSet<String>();
+                for (var body : text.bodies) {
+                    for (var token : tokenize(body)) {
+                        if (!current.contains(token)) {
+                            stale.add(token);
+                        }
+                    }
+                }
+                if (!stale.isEmpty()) {
+                    searchIndex.remove(text.sequenceNumber, stale.toArray(String[]::new));
+                    searchIndex.add(text.sequenceNumber, tokenize(currentBody(text.sequenceNumber)));
+                }
+            }
+        }
+
+        private static String[] tokenize(@Nullable byte[] body) {
+            return SearchIndex.tokenize(body == null ? null : new String(body, StandardCharsets.UTF_8));
+        }
+
+        @Nullable
+        private byte[] currentBody(long sequenceNumber) {
+            var snapshot = directory;
+            if (sequenceNumber < snapshot.firstSequenceNumber) {
+                return null;
+            }
+            var segment = snapshot.segmentOf(sequenceNumber);
+            int offset = (int) (sequenceNumber - segment.firstSequenceNumber);
+            var body = segment.body(offset);
+            var head = segment.revision(offset);
+            return head == null ? body : head.body;
+        }
+
+        private void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+            this.retentionPolicy = retentionPolicy;
+        }
+
+        private Message append(NewMessage message, long sequenceNumber, Instant now) {
+            var timestamp = message.getTimestamp() == null ? now : message.getTimestamp();
+            lastIdMillis = Math.max(lastIdMillis, timestamp.toEpochMilli());
+            var body = message.getMessage() == null ? null : message.getMessage().getBytes(StandardCharsets.UTF_8);
+            var segment = append(sequenceNumber, lastIdMillis, message.getTimestamp(), authors.intern(message.getAuthor()), body);
+
+            return segment.message(segment.size - 1);
+        }
+
+        private Segment append(long sequenceNumber, long idMillis, @Nullable Instant timestamp, int authorRef, @Nullable byte[] body) {
+            var segments = directory.segments;
+            if (segments.length == 0 || segments[segments.length - 1].isFull()) {
+                directory = directory.append(new Segment(sequenceNumber, segmentSize, channelId, authors));
+                segments = directory.segments;
+            }
+
+            long bytes = MESSAGE_OVERHEAD_BYTES + (body == null ? 0 : body.length);
+            var segment = segments[segments.length - 1];
+            segment.add(idMillis, timestamp, authorRef, body, bytes);
+            retainedBytes += bytes;
+            return segment;
+        }
+
+        /**
+         * Writes the retained messages column by column, with authors replaced by indexes into a table at the start of
+         * the file, followed by the revisions of edited messages. Deleted messages are written compacted.
+         */
+        private void writeSnapshot(Path file) throws IOException {
+            long revisions = revisionCount;
+            var snapshot = directory;
+            long last = Math.min(lastSequenceNumber, snapshot.capacityEnd());
+            if (last == snapshotSequenceNumber && revisions == snapshotRevisionCount) {
+                return;
+            }
+
+            long first = Math.min(snapshot.firstSequenceNumber, last + 1);
+            var authorIndexes = new LinkedHashMap<Integer, Integer>();
+            for (long sequenceNumber = first; sequenceNumber <= last; sequenceNumber++) {
+                var segment = snapshot.segmentOf(sequenceNumber);
+                int authorRef = segment.authorRefs[(int) (sequenceNumber - segment.firstSequenceNumber)];
+                if (authorRef != AuthorTable.NO_AUTHOR) {
+                    authorIndexes.putIfAbsent(authorRef, authorIndexes.size());
+                }
+            }
+
+            SnapshotFiles.write(file, out -> {
+                SnapshotFiles.writeString(out, channelId);
+                out.writeLong(first);
+                out.writeLong(last);
+                out.writeInt(authorIndexes.size());
+                for (int authorRef : authorIndexes.keySet()) {
+                    SnapshotFiles.writeString(out, authors.get(authorRef));
+                }
+                var revised = new ArrayList<RevisedMessage>();
+                for (long sequenceNumber = first; sequenceNumber <= last; sequenceNumber++) {
+                    var segment = snapshot.segmentOf(sequenceNumber);
+                    int offset = (int) (sequenceNumber - segment.firstSequenceNumber);
+                    var body = segment.body(offset);
+                    var revision = segment.revision(offset);
+                    if (revision != null) {
+                        revised.add(new RevisedMessage(sequenceNumber, revision.deleted ? revision.withoutHistory() : revision));
+                    }
+                    out.writeLong(segment.idMillis[offset]);
+                    out.writeLong(segment.epochSeconds[offset]);
+                    out.writeInt(segment.nanos[offset]);
+                    out.writeInt(authorIndexes.getOrDefault(segment.authorRefs[offset], AuthorTable.NO_AUTHOR));
+                    SnapshotFiles.writeBytes(out, revision != null && revision.deleted ? null : body);
+                }
+                out.writeInt(revised.size());
+                for (var message : revised) {
+                    out.writeLong(message.sequenceNumber());
+                    var chain = new ArrayList<Revision>(message.head().number);
+                    for (var revision = message.head(); revision != null; revision = revision.previous) {
+                        chain.add(revision);
+                    }
+                    out.writeInt(chain.size());
+                    for (int i = chain.size() - 1; i >= 0; i--) {
+                        var revision = chain.get(i);
+                        out.writeInt(revision.number);
+                        out.writeLong(revision.editedAt.getEpochSecond());
+                        out.writeInt(revision.editedAt.getNano());
+                        out.writeBoolean(revision.deleted);
+                        SnapshotFiles.writeBytes(out, revision.body);
+                    }
+                }
+            });
+            snapshotSequenceNumber = last;
+            snapshotRevisionCount = revisions;
+        }
+
+        private void restore(DataInputStream in, int version, Instant now) throws IOException {
+            var storedChannelId = SnapshotFiles.readString(in);
+            if (!channelId.equals(storedChannelId)) {
+                throw new IOException("Snapshot of channel %s found for channel %s".formatted(storedChannelId, channelId));
+            }
+            long first = in.readLong();
+            long last = in.readLong();
+            var authorRefs = new int[in.readInt()];
+            for (int i = 0; i < authorRefs.length; i++) {
+                authorRefs[i] = authors.intern(SnapshotFiles.readString(in));
+            }
+
+            for (long sequenceNumber = first; sequenceNumber <= last; sequenceNumber++) {
+                long idMillis = in.readLong();
+                long epochSecond = in.readLong();
+                int nano = in.readInt();
+                int authorIndex = in.readInt();
+                var body = SnapshotFiles.readBytes(in);
+                var timestamp = nano == Segment.NO_TIMESTAMP ? null : Instant.ofEpochSecond(epochSecond, nano);
+                append(sequenceNumber, idMillis, timestamp, authorIndex == AuthorTable.NO_AUTHOR ? AuthorTable.NO_AUTHOR : authorRefs[authorIndex], body);
+                lastIdMillis = idMillis;
+            }
+            if (version >= REVISIONS_VERSION) {
+                restoreRevisions(in);
+            }
+            lastSequenceNumber = last;
+            snapshotSequenceNumber = last;
+            evictExpiredSegments(now);
+        }
+
+        private void restoreRevisions(DataInputStream in) throws IOException {
+            int revised = in.readInt();
+            for (int i = 0; i < revised; i++) {
+                long sequenceNumber = in.readLong();
+                Revision head = null;
+                long bytes = 0;
+                for (int revisions = in.readInt(); revisions > 0; revisions--) {
+                    int number = in.readInt();
+                    var editedAt = Instant.ofEpochSecond(in.readLong(), in.readInt());
+                    boolean deleted = in.readBoolean();
+                    head = new Revision(number, editedAt, SnapshotFiles.readBytes(in), deleted, head);
+                    bytes += head.bytes();
+                }
+                var segment = directory.segmentOf(sequenceNumber);
+                segment.revise((int) (sequenceNumber - segment.firstSequenceNumber), head, bytes);
+                retainedBytes += bytes;
+                if (!head.deleted) {
+                    markUncompacted(sequenceNumber);
+                }
+            }
+        }
+
+        private void evictExpiredSegments(Instant now) {
+            var segments = directory.segments;
+            int expired = 0;
+            while (expired < segments.length - 1 && isExpired(segments[expired], segments[expired].firstSequenceNumber, now)) {
+                retainedBytes -= segments[expired++].bytes;
+            }
+
+            if (expired > 0) {
+                directory = directory.dropFirst(expired);
+            }
+        }
+
+        private boolean isExpired(Segment segment, long firstSequenceNumber, Instant now) {
+            var policy = retentionPolicy;
+            long retainedMessages = lastSequenceNumber - firstSequenceNumber + 1;
+            long maxMessages = policy.getMaxMessages();
+            long maxBytes = policy.getMaxBytes();
+            var maxAge = policy.getMaxAge();
+
+            return (maxMessages > 0 && retainedMessages - segment.size >= maxMessages)
+                    || (maxBytes > 0 && retainedBytes - segment.bytes >= maxBytes)
+                    || (maxAge != null && segment.newestTimestamp != null && segment.newestTimestamp.isBefore(now.minus(maxAge)));
+        }
+
+    }
+
+    private static class Directory {
+        private final Segment[] segments;
+        private final long firstSequenceNumber;
+        private final int segmentSize;
+
+        private Directory(Segment[] segments, long firstSequenceNumber, int segmentSize) {
+            this.segments = segments;
+            this.firstSequenceNumber = firstSequenceNumber;
+            this.segmentSize = segmentSize;
+        }
+
+        private long capacityEnd() {
+            return firstSequenceNumber + (long) segments.length * segmentSize - 1;
+        }
+
+        private Directory append(Segment segment) {
+            var appended = Arrays.copyOf(segments, segments.length + 1);
+            appended[segments.length] = segment;
+            return new Directory(appended, segments.length == 0 ? segment.firstSequenceNumber : firstSequenceNumber, segmentSize);
+        }
+
+        private Directory dropFirst(int count) {
+            return new Directory(Arrays.copyOfRange(segments, count, segments.length), segments[count].firstSequenceNumber, segmentSize);
+        }
+
+        private Message get(long sequenceNumber) {
+            var segment = segmentOf(sequenceNumber);
+            return segment.message((int) (sequenceNumber - segment.firstSequenceNumber));
+        }
+
+        private String messageId(long sequenceNumber) {
+            var segment = segmentOf(sequenceNumber);
+            return segment.messageId((int) (sequenceNumber - segment.firstSequenceNumber));
+        }
+
+        private Segment segmentOf(long sequenceNumber) {
+            return segments[(int) ((sequenceNumber - firstSequenceNumber) / segmentSize)];
+        }
+
+        /**
+         * Materializes every message of the range once, so the result holds no reference to the segments and can be
+         * iterated any number of times at no further cost. Slots are revised in place by edits, deletions and
+         * compaction, so the result is the state at the time of the read and does not follow later revisions.
+         */
+        private List<Message> range(long from, long to) {
+            if (from > to) {
+                return Collections.emptyList();
+            }
+
+            var messages = new Message[(int) (to - from + 1)];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = get(from + i);
+            }
+            return Collections.unmodifiableList(Arrays.asList(messages));
+        }
+    }
+
+    private static class Segment {
+        private static final int NO_TIMESTAMP = -1;
+        private static final VarHandle BODIES = MethodHandles.arrayElementVarHandle(byte[][].class);
+        private final long firstSequenceNumber;
+        private final String channelId;
+        private final AuthorTable authors;
+        private final long[] idMillis;
+        private final long[] epochSeconds;
+        private final int[] nanos;
+        private final int[] authorRefs;
+        private final byte[][] bodies;
+        private int size;
+        private long bytes;
+        private Instant newestTimestamp;
+        private volatile AtomicReferenceArray<Revision> revisions;
+
+        private Segment(long firstSequenceNumber, int capacity, String channelId, AuthorTable authors) {
+            this.firstSequenceNumber = firstSequenceNumber;
+            this.channelId = channelId;
+            this.authors = authors;
+            this.idMillis = new long[capacity];
+            this.epochSeconds = new long[capacity];
+            this.nanos = new int[capacity];
+            this.authorRefs = new int[capacity];
+            this.bodies = new byte[capacity][];
+        }
+
+        private boolean isFull() {
+            return size == idMillis.length;
+        }
+
+        private void add(long messageIdMillis, @Nullable Instant timestamp, int authorRef, @Nullable byte[] body, long messageBytes) {
+            idMillis[size] = messageIdMillis;
+            epochSeconds[size] = timestamp == null ? 0 : timestamp.getEpochSecond();
+            nanos[size] = timestamp == null ? NO_TIMESTAMP : timestamp.getNano();
+            authorRefs[size] = authorRef;
+            bodies[size] = body;
+            size++;
+            bytes += messageBytes;
+            if (timestamp != null && (newestTimestamp == null || timestamp.isAfter(newestTimestamp))) {
+                newestTimestamp = timestamp;
             }
         }
+
+        @Nullable
+        private Revision revision(int offset) {
+            var revisions = this.revisions;
+            return revisions == null ? null : revisions.get(offset);
+        }
+
+        /**
+         * The original text. It is cleared with release semantics only after a tombstone was published, so it is read
+         * before the revision: whoever reads a cleared text also sees the tombstone.
+         */
+        @Nullable
+        private byte[] body(int offset) {
+            return (byte[]) BODIES.getAcquire(bodies, offset);
+        }
+
+        private void revise(int offset, Revision revision, long revisionBytes) {
+            if (revisions == null) {
+                revisions = new AtomicReferenceArray<>(idMillis.length);
+            }
+            revisions.set(offset, revision);
+            bytes += revisionBytes;
+        }
+
+        private void compact(int offset, Revision tombstone, long freedBytes) {
+            revisions.set(offset, tombstone);
+            BODIES.setRelease(bodies, offset, (byte[]) null);
+            bytes -= freedBytes;
+        }
+
+        private String messageId(int offset) {
+            return TimeOrderedIds.messageId(idMillis[offset], channelId, firstSequenceNumber + offset);
+        }
+
+        private Message message(int offset) {
+            var body = body(offset);
+            return message(offset, revision(offset), body);
+        }
+
+        private Message message(int offset, @Nullable Revision revision, @Nullable byte[] originalBody) {
+            var message = new Message();
+            message.setMessageId(messageId(offset));
+            message.setChannelId(channelId);
+            message.setSequenceNumber(firstSequenceNumber + offset);
+            message.setAuthor(authors.get(authorRefs[offset]));
+            message.setTimestamp(nanos[offset] == NO_TIMESTAMP ? null : Instant.ofEpochSecond(epochSeconds[offset], nanos[offset]));
+            var body = originalBody;
+            if (revision != null) {
+                body = revision.body;
+                message.setRevision(revision.number);
+                message.setEditedAt(revision.editedAt);
+                message.setDeleted(revision.deleted);
+            }
+            message.setMessage(body == null ? null : new String(body, StandardCharsets.UTF_8));
+            return message;
+        }
+    }
+
+    /**
+     * A later version of a message: an edit with its new text or a tombstone without any. Revisions are immutable
+     * and link to the one they replaced, so the current state is always the head and history is only walked on request.
+     */
+    private static final class Revision {
+        private final int number;
+        private final Instant editedAt;
+        @Nullable
+        private final byte[] body;
+        private final boolean deleted;
+        @Nullable
+        private final Revision previous;
+
+        private Revision(@Nullable Revision previous, Instant editedAt, @Nullable byte[] body, boolean deleted) {
+            this(previous == null ? 1 : previous.number + 1, editedAt, body, deleted, previous);
+        }
+
+        private Revision(int number, Instant editedAt, @Nullable byte[] body, boolean deleted, @Nullable Revision previous) {
+            this.number = number;
+            this.editedAt = editedAt;
+            this.body = body;
+            this.deleted = deleted;
+            this.previous = previous;
+        }
+
+        private long bytes() {
+            return MessageArchive.REVISION_OVERHEAD_BYTES + (body == null ? 0 : body.length);
+        }
+
+        private Revision withoutHistory() {
+            return previous == null ? this : new Revision(number, editedAt, body, deleted, null);
+        }
+    }
+
+    private record RevisedMessage(long sequenceNumber, Revision head) {
+    }
+
+    private record DroppedText(long sequenceNumber, byte[] body) {
+    }
+
+    private record SupersededText(long sequenceNumber, List<byte[]> bodies, @Nullable byte[] current) {
+    }
+
+    /**
+     * Authors shared by all archives, stored once and referenced by index. Names are written to their slot before
+     * the index is handed out, so any reader that sees the index also sees the name.
+     */
+    private static class AuthorTable {
+        private static final int NO_AUTHOR = -1;
+        private static final int CHUNK_SIZE = 1024;
+        private final ConcurrentMap<String, Integer> refs = new ConcurrentHashMap<>();
+        private volatile String[][] chunks = new String[0][];
+        private int size;
+
+        private int intern(@Nullable String author) {
+            if (author == null) {
+                return NO_AUTHOR;
+            }
+
+            var ref = refs.get(author);
+            return ref != null ? ref : add(author);
+        }
+
+        private synchronized int add(String author) {
+            var ref = refs.get(author);
+            if (ref != null) {
+                return ref;
+            }
+
+            if (size == chunks.length * CHUNK_SIZE) {
+                var grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = new String[CHUNK_SIZE];
+                chunks = grown;
+            }
+            chunks[size / CHUNK_SIZE][size % CHUNK_SIZE] = author;
+            refs.put(author, size);
+            return size++;
+        }
+
+        @Nullable
+        private String get(int ref) {
+            return ref == NO_AUTHOR ? null : chunks[ref / CHUNK_SIZE][ref % CHUNK_SIZE];
+        }
     }
 }
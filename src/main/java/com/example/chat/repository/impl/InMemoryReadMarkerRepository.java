@@ -0,0 +1,104 @@
+package com.example.chat.repository.impl;
+
+import com.example.chat.configuration.StorageProperties;
+import com.example.chat.model.ReadMarker;
+import com.example.chat.repository.ReadMarkerRepository;
+import com.example.chat.repository.Snapshottable;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+@Order(1)
+public class InMemoryReadMarkerRepository implements ReadMarkerRepository, Snapshottable {
+
+    private static final String SNAPSHOT_FILE = "read-markers" + SnapshotFiles.SUFFIX;
+
+    private ConcurrentMap<String, ConcurrentMap<String, Long>> storage = new ConcurrentHashMap<>();
+    @Nullable
+    private Path snapshotFile;
+
+    public InMemoryReadMarkerRepository() {
+        this((Path) null);
+    }
+
+    @Autowired
+    public InMemoryReadMarkerRepository(StorageProperties storageProperties) {
+        this(storageProperties.getSnapshotDirectory());
+    }
+
+    public InMemoryReadMarkerRepository(@Nullable Path snapshotDirectory) {
+        this.snapshotFile = snapshotDirectory == null ? null : snapshotDirectory.resolve(SNAPSHOT_FILE);
+        restoreSnapshot();
+    }
+
+    @Override
+    public long findSequenceNumber(String userId, String channelId) {
+        var markers = storage.get(userId);
+        if (markers == null) {
+            return 0;
+        }
+        return markers.getOrDefault(channelId, 0L);
+    }
+
+    @Override
+    public void saveAll(Collection<ReadMarker> markers) {
+        for (var marker : markers) {
+            storage.computeIfAbsent(marker.getUserId(), userId -> new ConcurrentHashMap<>())
+                    .merge(marker.getChannelId(), marker.getSequenceNumber(), Math::max);
+        }
+    }
+
+    @Override
+    public void writeSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        SnapshotFiles.write(snapshotFile, out -> {
+            out.writeInt(storage.size());
+            for (var user : storage.entrySet()) {
+                var markers = Map.copyOf(user.getValue());
+                SnapshotFiles.writeString(out, user.getKey());
+                out.writeInt(markers.size());
+                for (var marker : markers.entrySet()) {
+                    SnapshotFiles.writeString(out, marker.getKey());
+                    out.writeLong(marker.getValue());
+                }
+            }
+        });
+    }
+
+    private void restoreSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+
+        try {
+            SnapshotFiles.read(snapshotFile, (in, version) -> {
+                int users = in.readInt();
+                for (int i = 0; i < users; i++) {
+                    var markers = new ConcurrentHashMap<String, Long>();
+                    storage.put(SnapshotFiles.readString(in), markers);
+                    int count = in.readInt();
+                    for (int j = 0; j < count; j++) {
+                        markers.put(SnapshotFiles.readString(in), in.readLong());
+                    }
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot " + snapshotFile, e);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.chat.repository.impl;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index of one channel. Every term maps to the ascending sequence numbers of the messages containing it,
+ * kept in a growable {@code long[]}. Messages are tokenized by the caller before taking the index's lock and added in
+ * batches behind the archive's writer, so the index has its own lock and tolerates out-of-order additions.
+ */
+class SearchIndex {
+
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final long TERM_OVERHEAD_BYTES = 112;
+    private static final long[] NO_RESULTS = new long[0];
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long droppedBefore;
+    private volatile long estimatedBytes;
+
+    static String[] tokenize(@Nullable String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_TOKENS;
+        }
+
+        var tokens = new String[8];
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            boolean lowerCase = true;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c < 128) {
+                    if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                        i++;
+                        continue;
+                    }
+                    if (c >= 'A' && c <= 'Z') {
+                        lowerCase = false;
+                        i++;
+                        continue;
+                    }
+                    break;
+                }
+                int codePoint = text.codePointAt(i);
+                if (!Character.isLetterOrDigit(codePoint)) {
+                    break;
+                }
+                lowerCase &= Character.toLowerCase(codePoint) == codePoint;
+                i += Character.charCount(codePoint);
+            }
+
+            if (i == start) {
+                i += Character.charCount(text.codePointAt(i));
+                continue;
+            }
+
+            var token = text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH));
+            if (!lowerCase) {
+                token = token.toLowerCase(Locale.ROOT);
+            }
+            if (!contains(tokens, count, token)) {
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = token;
+            }
+        }
+
+        return count == tokens.length ? tokens : Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * Whether {@code text} contains all {@code terms}, for checking a hit against the current text of a revised message.
+     */
+    static boolean matches(@Nullable String text, String[] terms) {
+        var tokens = Arrays.asList(tokenize(text));
+        for (var term : terms) {
+            if (!tokens.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(long sequenceNumber, String[] tokens) {
+        if (tokens.length == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            estimatedBytes += insert(sequenceNumber, tokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds consecutive messages starting at {@code firstSequenceNumber} under a single acquisition of the lock.
+     */
+    void addAll(long firstSequenceNumber, String[][] tokens) {
+        lock.writeLock().lock();
+
+        try {
+            long bytes = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                bytes += insert(firstSequenceNumber + i, tokens[i]);
+            }
+            estimatedBytes += bytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long insert(long sequenceNumber, String[] tokens) {
+        long bytes = 0;
+        for (var token : tokens) {
+            var postings = postingsByTerm.get(token);
+            if (postings == null) {
+                postings = new Postings();
+                postingsByTerm.put(token, postings);
+                bytes += TERM_OVERHEAD_BYTES + 2L * token.length() + 8L * postings.sequenceNumbers.length;
+            }
+            bytes += postings.insert(sequenceNumber);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns up to {@code limit} sequence numbers below {@code beforeSequenceNumber} of messages containing all
+     * {@code terms}, newest first.
+     */
+    long[] search(String[] terms, long beforeSequenceNumber, int limit) {
+        if (terms.length == 0) {
+            return NO_RESULTS;
+        }
+
+        lock.readLock().lock();
+
+        try {
+            var matching = new Postings[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                matching[i] = postingsByTerm.get(terms[i]);
+                if (matching[i] == null) {
+                    return NO_RESULTS;
+                }
+            }
+            Arrays.sort(matching, Comparator.comparingInt(postings -> postings.size));
+
+            var driver = matching[0];
+            var results = new long[Math.min(limit, driver.size)];
+            int found = 0;
+            for (int i = driver.lowerBound(beforeSequenceNumber) - 1; i >= 0 && found < results.length; i--) {
+                long sequenceNumber = driver.sequenceNumbers[i];
+                if (containsAll(matching, sequenceNumber)) {
+                    results[found++] = sequenceNumber;
+                }
+            }
+
+            return found == results.length ? results : Arrays.copyOf(results, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets the postings of one message for the given terms, once its text has been deleted.
+     */
+    void remove(long sequenceNumber, String[] tokens) {
+        if (tokens.length == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            long bytes = estimatedBytes;
+            for (var token : tokens) {
+                var postings = postingsByTerm.get(token);
+                if (postings != null && postings.remove(sequenceNumber) && postings.size == 0) {
+                    postingsByTerm.remove(token);
+                    bytes -= TERM_OVERHEAD_BYTES + 2L * token.length() + 8L * postings.sequenceNumbers.length;
+                }
+            }
+            estimatedBytes = bytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets all postings below {@code sequenceNumber}, once messages have been evicted from the archive.
+     */
+    void dropBefore(long sequenceNumber) {
+        lock.writeLock().lock();
+
+        try {
+            if (sequenceNumber <= droppedBefore) {
+                return;
+            }
+            droppedBefore = sequenceNumber;
+
+            long bytes = estimatedBytes;
+            Iterator<Map.Entry<String, Postings>> entries = postingsByTerm.entrySet().iterator();
+            while (entries.hasNext()) {
+                var entry = entries.next();
+                var postings = entry.getValue();
+                long capacityBefore = postings.sequenceNumbers.length;
+                postings.removeBelow(sequenceNumber);
+                if (postings.size == 0) {
+                    entries.remove();
+                    bytes -= TERM_OVERHEAD_BYTES + 2L * entry.getKey().length() + 8L * capacityBefore;
+                } else {
+                    bytes -= 8L * (capacityBefore - postings.sequenceNumbers.length);
+                }
+            }
+            estimatedBytes = bytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private static boolean containsAll(Postings[] matching, long sequenceNumber) {
+        for (int i = 1; i < matching.length; i++) {
+            if (!matching[i].contains(sequenceNumber)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(String[] tokens, int count, String token) {
+        for (int i = 0; i < count; i++) {
+            if (tokens[i].equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Postings {
+        private long[] sequenceNumbers = new long[2];
+        private int size;
+
+        private long insert(long sequenceNumber) {
+            long grownBytes = 0;
+            if (size == sequenceNumbers.length) {
+                grownBytes = 8L * sequenceNumbers.length;
+                sequenceNumbers = Arrays.copyOf(sequenceNumbers, sequenceNumbers.length * 2);
+            }
+
+            int position = size;
+            while (position > 0 && sequenceNumbers[position - 1] > sequenceNumber) {
+                position--;
+            }
+            if (position > 0 && sequenceNumbers[position - 1] == sequenceNumber) {
+                return grownBytes;
+            }
+            System.arraycopy(sequenceNumbers, position, sequenceNumbers, position + 1, size - position);
+            sequenceNumbers[position] = sequenceNumber;
+            size++;
+            return grownBytes;
+        }
+
+        private int lowerBound(long sequenceNumber) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sequenceNumbers[middle] < sequenceNumber) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private boolean contains(long sequenceNumber) {
+            int position = lowerBound(sequenceNumber);
+            return position < size && sequenceNumbers[position] == sequenceNumber;
+        }
+
+        private boolean remove(long sequenceNumber) {
+            int position = lowerBound(sequenceNumber);
+            if (position == size || sequenceNumbers[position] != sequenceNumber) {
+                return false;
+            }
+            System.arraycopy(sequenceNumbers, position + 1, sequenceNumbers, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        private void removeBelow(long sequenceNumber) {
+            int removed = lowerBound(sequenceNumber);
+            if (removed == 0) {
+                return;
+            }
+            size -= removed;
+            sequenceNumbers = Arrays.copyOfRange(sequenceNumbers, removed, removed + Math.max(2, size));
+        }
+    }
+}
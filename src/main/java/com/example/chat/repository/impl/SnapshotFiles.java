@@ -0,0 +1,142 @@
+package com.example.chat.repository.impl;
+
+import com.example.chat.model.Message;
+import jakarta.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+/**
+ * Binary snapshot files of the in-memory repositories. Every file starts with a magic number and a format version,
+ * is written to a temporary file first and atomically moved into place, so readers only ever see complete snapshots.
+ * Files are always written in the current version, and readers are handed the version of the file to read older ones.
+ * Version 2 added the revisions of edited and deleted messages to message archives, version 3 the revision of every
+ * message written by {@link #writeMessage}.
+ */
+final class SnapshotFiles {
+
+    static final String SUFFIX = ".snapshot";
+    private static final int MAGIC = 0x43485353;
+    private static final int VERSION = 3;
+    private static final int OLDEST_VERSION = 1;
+    private static final int MESSAGE_REVISION_VERSION = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SnapshotFiles() {
+    }
+
+    interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface Reader<T> {
+        T read(DataInputStream in, int version) throws IOException;
+    }
+
+    static void write(Path file, Writer writer) throws IOException {
+        Files.createDirectories(file.getParent());
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writer.write(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static <T> T read(Path file, Reader<T> reader) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version < OLDEST_VERSION || version > VERSION) {
+                throw new IOException("Unsupported snapshot format in " + file);
+            }
+            return reader.read(in, version);
+        }
+    }
+
+    static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nullable
+    static String readString(DataInputStream in) throws IOException {
+        var bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, @Nullable byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeMessage(DataOutputStream out, Message message) throws IOException {
+        var timestamp = message.getTimestamp();
+        writeString(out, message.getMessageId());
+        writeString(out, message.getChannelId());
+        out.writeLong(message.getSequenceNumber());
+        writeString(out, message.getAuthor());
+        writeString(out, message.getMessage());
+        out.writeBoolean(timestamp != null);
+        out.writeLong(timestamp == null ? 0 : timestamp.getEpochSecond());
+        out.writeInt(timestamp == null ? 0 : timestamp.getNano());
+        out.writeInt(message.getRevision());
+        writeInstant(out, message.getEditedAt());
+        out.writeBoolean(message.isDeleted());
+    }
+
+    static Message readMessage(DataInputStream in, int version) throws IOException {
+        var message = new Message();
+        message.setMessageId(readString(in));
+        message.setChannelId(readString(in));
+        message.setSequenceNumber(in.readLong());
+        message.setAuthor(readString(in));
+        message.setMessage(readString(in));
+        boolean hasTimestamp = in.readBoolean();
+        long epochSecond = in.readLong();
+        int nano = in.readInt();
+        message.setTimestamp(hasTimestamp ? Instant.ofEpochSecond(epochSecond, nano) : null);
+        if (version >= MESSAGE_REVISION_VERSION) {
+            message.setRevision(in.readInt());
+            message.setEditedAt(readInstant(in));
+            message.setDeleted(in.readBoolean());
+        }
+        return message;
+    }
+
+    private static void writeInstant(DataOutputStream out, @Nullable Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        out.writeLong(instant == null ? 0 : instant.getEpochSecond());
+        out.writeInt(instant == null ? 0 : instant.getNano());
+    }
+
+    @Nullable
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        boolean present = in.readBoolean();
+        long epochSecond = in.readLong();
+        int nano = in.readInt();
+        return present ? Instant.ofEpochSecond(epochSecond, nano) : null;
+    }
+}
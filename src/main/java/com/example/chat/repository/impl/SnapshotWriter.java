@@ -0,0 +1,69 @@
+package com.example.chat.repository.impl;
+
+import com.example.chat.configuration.StorageProperties;
+import com.example.chat.repository.Snapshottable;
+import com.example.chat.service.ReadMarkerTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshots the in-memory repositories every {@code chat.storage.snapshot-interval} and once more on shutdown.
+ * <p>
+ * Repositories are written in their {@link org.springframework.core.annotation.Order}: read markers, then channels,
+ * then message archives. Each one is written before the repository its positions refer to, so after a restart no read
+ * marker is past its channel's last message and no last message is past its archive. On shutdown the pending read
+ * markers of the {@link ReadMarkerTracker} are flushed before the final snapshot.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.storage.snapshot-directory")
+public class SnapshotWriter implements DisposableBean {
+
+    private List<Snapshottable> repositories;
+    private ReadMarkerTracker readMarkerTracker;
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotWriter(List<Snapshottable> repositories, ReadMarkerTracker readMarkerTracker,
+                          StorageProperties storageProperties) {
+        this.repositories = repositories;
+        this.readMarkerTracker = readMarkerTracker;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, storageProperties.getSnapshotInterval().toMillis());
+        scheduler.scheduleWithFixedDelay(this::writeSnapshots, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void writeSnapshots() {
+        for (var repository : repositories) {
+            long start = System.nanoTime();
+            try {
+                repository.writeSnapshot();
+                log.debug("Wrote snapshot of {} in {} ms", repository.getClass().getSimpleName(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Failed to write snapshot of {}", repository.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        // the tracker is destroyed after this bean, which depends on it
+        readMarkerTracker.flush();
+        writeSnapshots();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.chat.repository.impl;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 128-bit identifiers written as 26 Crockford base32 characters, so that they sort chronologically as strings.
+ * The high half holds a 48-bit millisecond timestamp and a 16-bit tag, the low half the channel-local sequence
+ * number for messages or random bits for channels.
+ */
+public final class TimeOrderedIds {
+
+    public static final int LENGTH = 26;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+    private static final long TIMESTAMP_MASK = (1L << 48) - 1;
+    private static final long TAG_MASK = 0xFFFF;
+    private static final int TIMESTAMP_LENGTH = 10;
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+            VALUES[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private TimeOrderedIds() {
+    }
+
+    public static String messageId(long epochMillis, String channelId, long sequenceNumber) {
+        return format(high(epochMillis, channelTag(channelId)), sequenceNumber);
+    }
+
+    public static String randomId(long epochMillis) {
+        var random = ThreadLocalRandom.current();
+        return format(high(epochMillis, random.nextInt() & TAG_MASK), random.nextLong());
+    }
+
+    /**
+     * Returns the sequence number encoded in a message id of the given channel, or -1 if {@code id} is not a
+     * time-ordered id of that channel (for instance a UUID issued before these ids were introduced).
+     */
+    public static long sequenceNumber(@Nullable String id, String channelId) {
+        if (id == null || id.length() != LENGTH) {
+            return -1;
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0 || (i == 0 && value > 7)) {
+                return -1;
+            }
+            high = (high << 5) | (low >>> 59);
+            low = (low << 5) | value;
+        }
+
+        return (high & TAG_MASK) == channelTag(channelId) && low > 0 ? low : -1;
+    }
+
+    /**
+     * Returns the millisecond timestamp of an id that {@link #sequenceNumber} accepts, which the first 10 characters
+     * hold on their own.
+     */
+    public static long epochMillis(String id) {
+        long epochMillis = 0;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            epochMillis = (epochMillis << 5) | VALUES[id.charAt(i)];
+        }
+        return epochMillis;
+    }
+
+    private static long high(long epochMillis, long tag) {
+        return (epochMillis & TIMESTAMP_MASK) << 16 | tag;
+    }
+
+    private static long channelTag(String channelId) {
+        int hash = channelId.hashCode();
+        return (hash ^ (hash >>> 16)) & TAG_MASK;
+    }
+
+    private static String format(long high, long low) {
+        var chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+}
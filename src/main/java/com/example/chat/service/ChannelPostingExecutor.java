@@ -0,0 +1,138 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.PostingProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs posting work off the caller's thread. Tasks of one channel run one at a time in submission order, tasks of
+ * different channels run in parallel on a shared pool. A channel that keeps its queue busy hands its worker back to
+ * the pool after {@value #DRAIN_BUDGET} tasks so other channels are not starved. A queue that drains empty closes
+ * and leaves the map, so only channels with pending work hold one.
+ */
+@Component
+public class ChannelPostingExecutor implements DisposableBean {
+
+    private static final int DRAIN_BUDGET = 64;
+
+    private ExecutorService workers;
+    private ConcurrentMap<String, ChannelQueue> queues = new ConcurrentHashMap<>();
+
+    public ChannelPostingExecutor() {
+        this(new PostingProperties());
+    }
+
+    @Autowired
+    public ChannelPostingExecutor(PostingProperties properties) {
+        if (properties.getMode() == PostingProperties.Mode.CHANNEL_SERIAL) {
+            this.workers = Executors.newFixedThreadPool(properties.getThreads(), workerThreads());
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(String channelId, Supplier<T> task) {
+        var result = new CompletableFuture<T>();
+        Runnable run = () -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        };
+
+        if (workers == null) {
+            run.run();
+        } else {
+            var queue = queues.computeIfAbsent(channelId, ChannelQueue::new);
+            while (!queue.execute(run)) {
+                queues.remove(channelId, queue);
+                queue = queues.computeIfAbsent(channelId, ChannelQueue::new);
+            }
+        }
+        return result;
+    }
+
+    public int queueCount() {
+        return queues.size();
+    }
+
+    @Override
+    public void destroy() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    private static ThreadFactory workerThreads() {
+        var count = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "chat-posting-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private class ChannelQueue {
+        private static final int CLOSED = Integer.MIN_VALUE;
+
+        private final String channelId;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private ChannelQueue(String channelId) {
+            this.channelId = channelId;
+        }
+
+        /**
+         * Returns false if the queue has closed, in which case the caller must replace it.
+         */
+        private boolean execute(Runnable task) {
+            int pending;
+            do {
+                pending = wip.get();
+                if (pending == CLOSED) {
+                    return false;
+                }
+            } while (!wip.compareAndSet(pending, pending + 1));
+
+            tasks.offer(task);
+            if (pending == 0) {
+                workers.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            int budget = DRAIN_BUDGET;
+            while (true) {
+                Runnable task;
+                // a submitter counts itself in before it offers its task
+                while ((task = tasks.poll()) == null) {
+                    Thread.onSpinWait();
+                }
+                task.run();
+                if (wip.decrementAndGet() == 0) {
+                    if (wip.compareAndSet(0, CLOSED)) {
+                        queues.remove(channelId, this);
+                    }
+                    return;
+                }
+                if (--budget == 0) {
+                    workers.execute(this::drain);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.DeliveryProperties;
+import com.example.chat.exception.MessagesMissedException;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class ChannelSinkRegistry {
+
+    private DeliveryProperties properties;
+    private Scheduler scheduler;
+    private ConcurrentMap<String, ChannelSink> sinks = new ConcurrentHashMap<>();
+
+    public ChannelSinkRegistry() {
+        this(new DeliveryProperties());
+    }
+
+    @Autowired
+    public ChannelSinkRegistry(DeliveryProperties properties) {
+        this(properties, Schedulers.parallel());
+    }
+
+    public ChannelSinkRegistry(DeliveryProperties properties, Scheduler scheduler) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+    }
+
+    public Flux<MessageBatch> subscribe(String channelId) {
+        return subscribe(channelId, Flux.empty());
+    }
+
+    /**
+     * Subscribes to the channel right away but emits {@code catchUp} first. Messages emitted to the channel meanwhile
+     * are queued and follow once {@code catchUp} completes, so nothing posted in between is missed.
+     */
+    public Flux<MessageBatch> subscribe(String channelId, Publisher<MessageBatch> catchUp) {
+        return Flux.defer(() -> {
+            var subscriber = new LiveSubscriber(channelId);
+            acquire(channelId, subscriber);
+            return Flux.concat(catchUp, Flux.<MessageBatch>create(subscriber::attach))
+                    .doFinally(signal -> {
+                        subscriber.dispose();
+                        release(channelId, subscriber);
+                    });
+        });
+    }
+
+    public Emission emit(String channelId, List<Message> messages) {
+        var channelSink = sinks.get(channelId);
+        if (channelSink == null) {
+            return Emission.NONE;
+        }
+
+        int dropped = 0;
+        int disconnected = 0;
+        for (var subscriber : channelSink.subscribers) {
+            int overflow = subscriber.offer(messages);
+            if (overflow > 0) {
+                dropped += overflow;
+                if (properties.getOverflow() == DeliveryProperties.OverflowStrategy.DISCONNECT) {
+                    disconnected++;
+                }
+            }
+            subscriber.drain();
+        }
+
+        return dropped == 0 ? Emission.NONE : new Emission(dropped, disconnected);
+    }
+
+    public int subscriberCount(String channelId) {
+        var channelSink = sinks.get(channelId);
+        return channelSink == null ? 0 : channelSink.subscribers.size();
+    }
+
+    public boolean isActive(String channelId) {
+        return sinks.containsKey(channelId);
+    }
+
+    private void acquire(String channelId, LiveSubscriber subscriber) {
+        sinks.compute(channelId, (id, channelSink) -> {
+            var acquired = channelSink == null ? new ChannelSink() : channelSink;
+            acquired.subscribers.add(subscriber);
+            return acquired;
+        });
+    }
+
+    private void release(String channelId, LiveSubscriber subscriber) {
+        sinks.computeIfPresent(channelId, (id, channelSink) -> {
+            channelSink.subscribers.remove(subscriber);
+            return channelSink.subscribers.isEmpty() ? null : channelSink;
+        });
+    }
+
+    public record Emission(int dropped, int disconnected) {
+        public static final Emission NONE = new Emission(0, 0);
+    }
+
+    private static class ChannelSink {
+        private final List<LiveSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    }
+
+    private class LiveSubscriber {
+        private final String channelId;
+        private volatile FluxSink<MessageBatch> sink;
+        private final ArrayDeque<Message> queue = new ArrayDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final long maxBatchDelayNanos = properties.getMaxBatchDelay().toNanos();
+        private long lastDelivery = System.nanoTime() - maxBatchDelayNanos;
+        private long missed;
+        private boolean overflowed;
+        private Disposable scheduledDrain;
+        private volatile boolean disposed;
+
+        private LiveSubscriber(String channelId) {
+            this.channelId = channelId;
+        }
+
+        private void attach(FluxSink<MessageBatch> sink) {
+            this.sink = sink;
+            sink.onRequest(requested -> drain());
+        }
+
+        private synchronized int offer(List<Message> messages) {
+            if (overflowed || disposed) {
+                return 0;
+            }
+
+            int overflow = queue.size() + messages.size() - properties.getQueueSize();
+            if (overflow <= 0) {
+                queue.addAll(messages);
+                return 0;
+            }
+
+            if (properties.getOverflow() == DeliveryProperties.OverflowStrategy.DISCONNECT) {
+                int dropped = queue.size() + messages.size();
+                missed += dropped;
+                overflowed = true;
+                queue.clear();
+                return dropped;
+            }
+
+            int fromQueue = Math.min(overflow, queue.size());
+            for (int i = 0; i < fromQueue; i++) {
+                queue.pollFirst();
+            }
+            for (int i = overflow - fromQueue; i < messages.size(); i++) {
+                queue.addLast(messages.get(i));
+            }
+            missed += overflow;
+            return overflow;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            do {
+                if (disposed) {
+                    return;
+                }
+                var sink = this.sink;
+                if (sink == null) {
+                    continue;
+                }
+                if (isOverflowed()) {
+                    sink.error(new MessagesMissedException("Subscriber of channel %s fell behind and missed %d messages"
+                            .formatted(channelId, missed)));
+                    return;
+                }
+
+                MessageBatch batch;
+                while ((batch = nextBatch(sink)) != null) {
+                    sink.next(batch);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private synchronized boolean isOverflowed() {
+            return overflowed;
+        }
+
+        private synchronized MessageBatch nextBatch(FluxSink<MessageBatch> sink) {
+            if (queue.isEmpty() || sink.requestedFromDownstream() == 0 || disposed) {
+                return null;
+            }
+
+            long now = System.nanoTime();
+            long wait = lastDelivery + maxBatchDelayNanos - now;
+            if (wait > 0 && queue.size() < properties.getMaxBatchSize()) {
+                scheduleDrain(wait);
+                return null;
+            }
+
+            int size = Math.min(queue.size(), properties.getMaxBatchSize());
+            var messages = new ArrayList<Message>(size);
+            List<Message> updates = List.of();
+            for (int i = 0; i < size; i++) {
+                var message = queue.pollFirst();
+                if (!message.isUpdate()) {
+                    messages.add(message);
+                } else {
+                    if (updates.isEmpty()) {
+                        updates = new ArrayList<>();
+                    }
+                    updates.add(message);
+                }
+            }
+            var batch = new MessageBatch(messages, updates, missed);
+            missed = 0;
+            lastDelivery = now;
+            return batch;
+        }
+
+        private void scheduleDrain(long delayNanos) {
+            if (scheduledDrain == null) {
+                scheduledDrain = scheduler.schedule(() -> {
+                    synchronized (this) {
+                        scheduledDrain = null;
+                    }
+                    drain();
+                }, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void dispose() {
+            disposed = true;
+            queue.clear();
+            if (scheduledDrain != null) {
+                scheduledDrain.dispose();
+                scheduledDrain = null;
+            }
+        }
+    }
+}
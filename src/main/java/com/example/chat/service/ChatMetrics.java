@@ -0,0 +1,156 @@
+package com.example.chat.service;
+
+import com.example.chat.exception.RateLimitExceededException;
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post path meters are shared by all channels. Per-channel meters exist only while a channel has live subscribers, so
+ * the number of meters follows the active channels rather than every channel ever created. Messages can only be
+ * dropped on a channel with live subscribers, so the delivery counters are among them.
+ */
+@Component
+public class ChatMetrics {
+
+    private MeterRegistry meterRegistry;
+    private MessageRepository messageRepository;
+    private ChannelSinkRegistry sinkRegistry;
+    private Clock clock;
+    private Timer saveTimer;
+    private Timer deliveryLagTimer;
+    private Map<RateLimitExceededException.Limit, Counter> rejectedCounters = new EnumMap<>(RateLimitExceededException.Limit.class);
+    private ConcurrentMap<String, ChannelMeters> channelMeters = new ConcurrentHashMap<>();
+
+    public ChatMetrics(MeterRegistry meterRegistry, MessageRepository messageRepository,
+                       ChannelSinkRegistry sinkRegistry, Clock clock) {
+        this.meterRegistry = meterRegistry;
+        this.messageRepository = messageRepository;
+        this.sinkRegistry = sinkRegistry;
+        this.clock = clock;
+        this.saveTimer = Timer.builder("chat.message.save")
+                .description("Time spent storing a posted message")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.deliveryLagTimer = Timer.builder("chat.delivery.lag")
+                .description("Time from posting the oldest message of a batch to its emission to live subscribers")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (var limit : RateLimitExceededException.Limit.values()) {
+            rejectedCounters.put(limit, Counter.builder("chat.posting.rejected")
+                    .description("Messages rejected because their author or channel exceeded its rate limit")
+                    .tag("limit", limit.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    public void recordSave(long nanos) {
+        saveTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the lag of a batch emitted to live subscribers once, measured from its oldest message.
+     */
+    public void recordDelivery(List<Message> messages) {
+        for (var message : messages) {
+            var timestamp = message.getTimestamp();
+            if (timestamp != null) {
+                var now = clock.instant();
+                long lagNanos = (now.getEpochSecond() - timestamp.getEpochSecond()) * 1_000_000_000L + now.getNano() - timestamp.getNano();
+                deliveryLagTimer.record(Math.max(0, lagNanos), TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+    }
+
+    public void recordRejected(RateLimitExceededException.Limit limit, int messages) {
+        rejectedCounters.get(limit).increment(messages);
+    }
+
+    public void recordDisconnected(String channelId, int subscribers) {
+        var meters = channelMeters.get(channelId);
+        if (meters != null) {
+            meters.disconnectedSubscribers.increment(subscribers);
+        }
+    }
+
+    public void recordDropped(String channelId, int messages) {
+        var meters = channelMeters.get(channelId);
+        if (meters != null) {
+            meters.droppedMessages.increment(messages);
+        }
+    }
+
+    /**
+     * Registers the meters of a channel with its first live subscriber.
+     */
+    public void subscribed(String channelId) {
+        channelMeters.compute(channelId, (id, meters) -> {
+            var active = meters == null ? new ChannelMeters(id) : meters;
+            active.subscribers++;
+            return active;
+        });
+    }
+
+    /**
+     * Removes the meters of a channel when its last live subscriber leaves.
+     */
+    public void unsubscribed(String channelId) {
+        channelMeters.computeIfPresent(channelId, (id, meters) -> {
+            if (--meters.subscribers > 0) {
+                return meters;
+            }
+            meters.meters.forEach(meterRegistry::remove);
+            return null;
+        });
+    }
+
+    private class ChannelMeters {
+        private final Counter disconnectedSubscribers;
+        private final Counter droppedMessages;
+        private final List<Meter> meters;
+        private int subscribers;
+
+        private ChannelMeters(String channelId) {
+            disconnectedSubscribers = Counter.builder("chat.delivery.disconnected")
+                    .description("Live subscribers of a channel disconnected because their queue overflowed")
+                    .tag("channel", channelId)
+                    .register(meterRegistry);
+            droppedMessages = Counter.builder("chat.delivery.dropped")
+                    .description("Messages dropped from the queues of live subscribers of a channel that could not keep up")
+                    .tag("channel", channelId)
+                    .register(meterRegistry);
+            meters = List.of(
+                    disconnectedSubscribers,
+                    droppedMessages,
+                    Gauge.builder("chat.subscribers.active", sinkRegistry, registry -> registry.subscriberCount(channelId))
+                            .description("Live subscribers of a channel")
+                            .tag("channel", channelId)
+                            .register(meterRegistry),
+                    Gauge.builder("chat.archive.messages", messageRepository, repository -> repository.count(channelId))
+                            .description("Messages retained for a channel")
+                            .tag("channel", channelId)
+                            .register(meterRegistry),
+                    Gauge.builder("chat.search.index.size", messageRepository, repository -> repository.searchIndexBytes(channelId))
+                            .description("Estimated heap used by the search index of a channel")
+                            .baseUnit(BaseUnits.BYTES)
+                            .tag("channel", channelId)
+                            .register(meterRegistry));
+        }
+    }
+}
@@ -1,77 +1,132 @@
 package com.example.chat.service;
 
+import com.example.chat.bus.MessageBus;
+import com.example.chat.bus.Sequencer;
 import com.example.chat.exception.InvalidChannelException;
+import com.example.chat.exception.RateLimitExceededException;
 import com.example.chat.model.Channel;
+import com.example.chat.model.ChannelSummary;
 import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
 import com.example.chat.model.NewChannel;
 import com.example.chat.model.NewMessage;
 import com.example.chat.repository.ChannelRepository;
 import com.example.chat.repository.MessageRepository;
 import jakarta.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Mono;
 
 import java.time.Clock;
-import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 @Slf4j
-public class ChatService {
+public class ChatService implements InitializingBean {
+
+    private static final String AUTHOR = "John Doe";
 
     private MessageRepository messageRepository;
     private ChannelRepository channelRepository;
+    private ChannelSinkRegistry sinkRegistry;
+    private MessageBus messageBus;
+    private ChatMetrics metrics;
+    private ChannelPostingExecutor postingExecutor;
+    private ReadMarkerTracker readMarkerTracker;
+    private PostRateLimiter rateLimiter;
     private Clock clock;
-    private Sinks.Many<Message> messageSink = Sinks.many().multicast().directBestEffort();
-    private static final Duration BUFFER_DURATION = Duration.ofMillis(300);
+    private Sequencer sequencer;
 
-    public ChatService(MessageRepository messageRepository, ChannelRepository channelRepository, Clock clock) {
+    public ChatService(MessageRepository messageRepository, ChannelRepository channelRepository,
+                       ChannelSinkRegistry sinkRegistry, MessageBus messageBus, ChatMetrics metrics,
+                       ChannelPostingExecutor postingExecutor, ReadMarkerTracker readMarkerTracker,
+                       PostRateLimiter rateLimiter, Clock clock) {
         this.messageRepository = messageRepository;
         this.channelRepository = channelRepository;
+        this.sinkRegistry = sinkRegistry;
+        this.messageBus = messageBus;
+        this.metrics = metrics;
+        this.postingExecutor = postingExecutor;
+        this.readMarkerTracker = readMarkerTracker;
+        this.rateLimiter = rateLimiter;
         this.clock = clock;
-        generateTestData();
-    }
-
-    private void generateTestData() {
-        String[] chatChannels = {
-                "TechTalks Central",
-                "Mindful Mornings",
-                "Global Gourmet Guild",
-                "Fitness Frontiers",
-                "Bookworm Bungalow",
-                "Creative Corner",
-                "Eco Enthusiasts",
-                "History Huddle",
-                "Music Mavens",
-                "Travel Trekkers",
-                "Gamer's Grind",
-                "Pet Parade",
-                "Fashion Forward",
-                "Science Sphere",
-                "Artists' Alley",
-                "Movie Maniacs",
-                "Entrepreneur Exchange",
-                "Health Hub",
-                "DIY Den",
-                "Language Labyrinth"
-        };
-        for (String channelName : chatChannels) {
-            var channel = createChannel(channelName);
-            log.info("Created channel: {} (http://localhost:8080/channel/{})", channel.getName(), channel.getId());
-        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        messageBus.addListener(this::deliver);
+        sequencer = messageBus.sequencer(new LocalSequencer());
     }
 
     public Channel createChannel(String name) {
-        return channelRepository.save(new NewChannel(name));
+        return sequencer.createChannel(new NewChannel(name));
     }
 
     public List<Channel> getAllChannels() {
         return channelRepository.findAll();
     }
 
+    /**
+     * Returns the next page of the channel directory in case-insensitive name order. Pass the name and id of the last
+     * channel of the previous page, or a null name for the first page.
+     */
+    public List<Channel> getChannels(@Nullable String afterName, @Nullable String afterId, int limit) {
+        return channelRepository.findPage(afterName, afterId, limit);
+    }
+
+    public List<Channel> getChannels(@Nullable String afterName, int limit) {
+        return getChannels(afterName, null, limit);
+    }
+
+    /**
+     * Finds channels whose name starts with {@code prefix}, ignoring case, for a channel switcher that searches as the
+     * user types.
+     */
+    public List<Channel> searchChannels(String prefix, int limit) {
+        return channelRepository.findByNamePrefix(prefix, limit);
+    }
+
+    /**
+     * Lists all channels with the number of messages posted after the user's read marker. The count is the difference
+     * of two sequence numbers, so it costs the same however far behind the user is.
+     */
+    public List<ChannelSummary> getAllChannels(String userId) {
+        var channels = channelRepository.findAll();
+        var summaries = new ArrayList<ChannelSummary>(channels.size());
+        for (var channel : channels) {
+            summaries.add(new ChannelSummary(channel, unreadCount(userId, channel)));
+        }
+        return summaries;
+    }
+
+    public long getUnreadCount(String userId, String channelId) {
+        return channelRepository.findById(channelId)
+                .map(channel -> unreadCount(userId, channel))
+                .orElseThrow(() -> new InvalidChannelException("Cannot read channel %s".formatted(channelId)));
+    }
+
+    /**
+     * Moves the user's read marker in the channel forward to {@code sequenceNumber}, never past the latest message.
+     * Markers are stored in batches, so calling this for every message scrolled past is cheap.
+     */
+    public void markRead(String userId, String channelId, long sequenceNumber) {
+        var channel = channelRepository.findById(channelId)
+                .orElseThrow(() -> new InvalidChannelException("Cannot read channel %s".formatted(channelId)));
+        readMarkerTracker.markRead(userId, channelId, Math.min(sequenceNumber, latestSequenceNumber(channel)));
+    }
+
+    private long unreadCount(String userId, Channel channel) {
+        return Math.max(0, latestSequenceNumber(channel) - readMarkerTracker.readMarker(userId, channel.getId()));
+    }
+
+    private static long latestSequenceNumber(Channel channel) {
+        return channel.getLastMessage() == null ? 0 : channel.getLastMessage().getSequenceNumber();
+    }
+
     public Optional<Channel> getChannelById(String channelId) {
         return channelRepository.findById(channelId);
     }
@@ -80,25 +135,245 @@ public class ChatService {
         return messageRepository.findLatest(channelId, fetchMax, lastSeenMessageId);
     }
 
-    public Flux<List<Message>> liveMessages(String channelId) {
+    public List<Message> getMessagesBefore(String channelId, long beforeSequenceNumber, int limit) {
+        return messageRepository.findBefore(channelId, beforeSequenceNumber, limit);
+    }
+
+    public Flux<Message> streamMessages(String channelId, long afterSequenceNumber) {
+        return messageRepository.streamFrom(channelId, afterSequenceNumber);
+    }
+
+    public List<Message> getMessagesAround(String channelId, String messageId, int radius) {
+        return messageRepository.findAround(channelId, messageId, radius);
+    }
+
+    public List<Message> search(String channelId, String query, int limit) {
+        return messageRepository.search(channelId, query, limit);
+    }
+
+    public List<Message> search(String channelId, String query, int limit, long beforeSequenceNumber) {
+        return messageRepository.search(channelId, query, limit, beforeSequenceNumber);
+    }
+
+    public Flux<MessageBatch> liveMessages(String channelId) {
         if (!channelRepository.exists(channelId)) {
             throw new InvalidChannelException("Cannot post to channel %s".formatted(channelId));
         }
 
-        return messageSink.asFlux().filter(message -> message.getChannelId().equals(channelId)).buffer(BUFFER_DURATION);
+        return measured(channelId, sinkRegistry.subscribe(channelId));
+    }
+
+    /**
+     * Replays the messages stored after {@code afterSequenceNumber} and continues with live batches, without a gap or a
+     * duplicate at the switch-over, so a client that reconnects only receives what it missed. The live subscription is
+     * taken before the replay starts and live messages already replayed are skipped. Like {@link #liveMessages}, the
+     * live part reports messages missed by a subscriber that fell behind in {@link MessageBatch#getMissed()}.
+     *
+     * @throws com.example.chat.exception.ExpiredCursorException through the returned {@link Flux} if messages after
+     *                                                           {@code afterSequenceNumber} are no longer retained
+     */
+    public Flux<MessageBatch> liveMessagesFrom(String channelId, long afterSequenceNumber) {
+        if (!channelRepository.exists(channelId)) {
+            throw new InvalidChannelException("Cannot post to channel %s".formatted(channelId));
+        }
+
+        return Flux.defer(() -> {
+            var cursor = new ResumeCursor(afterSequenceNumber);
+            var replay = messageRepository.streamFrom(channelId, afterSequenceNumber)
+                    .buffer(MessageRepository.STREAM_CHUNK_SIZE)
+                    .map(messages -> new MessageBatch(messages, 0))
+                    .doOnComplete(cursor::replayed);
+            return measured(channelId, sinkRegistry.subscribe(channelId, replay))
+                    .handle((batch, sink) -> {
+                        var resumed = cursor.resume(batch);
+                        if (resumed != null) {
+                            sink.next(resumed);
+                        }
+                    });
+        });
+    }
+
+    private Flux<MessageBatch> measured(String channelId, Flux<MessageBatch> batches) {
+        return batches.doOnSubscribe(subscription -> metrics.subscribed(channelId))
+                .doFinally(signal -> metrics.unsubscribed(channelId));
     }
 
     public void postMessage(String channelId, String message) {
+        admit(channelId, 1);
+        post(channelId, message);
+    }
+
+    /**
+     * Posts on the channel's posting executor instead of the calling thread. Messages posted asynchronously to the same
+     * channel are stored in the order of subscription. Nothing is posted until the returned {@link Mono} is subscribed,
+     * and cancelling it does not withdraw the message. Posts over the rate limit fail before they are queued.
+     */
+    public Mono<Message> postMessageAsync(String channelId, String message) {
+        return Mono.fromFuture(() -> {
+            admit(channelId, 1);
+            return postingExecutor.submit(channelId, () -> post(channelId, message));
+        }, true);
+    }
+
+    private Message post(String channelId, String message) {
+        return sequencer.save(new NewMessage(message, channelId, AUTHOR, clock.instant()));
+    }
+
+    public void postMessages(String channelId, List<String> messages) {
+        admit(channelId, messages.size());
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        var timestamp = clock.instant();
+        var posted = messages.stream()
+                .map(message -> new NewMessage(message, channelId, AUTHOR, timestamp))
+                .toList();
+        sequencer.saveAll(channelId, posted);
+    }
+
+    /**
+     * Replaces the text of a message and pushes the new revision to live subscribers as an update. Edits count
+     * against the rate limit like posts.
+     */
+    public Message editMessage(String channelId, long sequenceNumber, String message) {
+        admit(channelId, 1);
+        return sequencer.edit(channelId, sequenceNumber, message);
+    }
+
+    /**
+     * Replaces a message with a tombstone and pushes it to live subscribers as an update.
+     */
+    public Message deleteMessage(String channelId, long sequenceNumber) {
         if (!channelRepository.exists(channelId)) {
             throw new InvalidChannelException("Cannot post to channel %s".formatted(channelId));
         }
+        return sequencer.delete(channelId, sequenceNumber);
+    }
+
+    public List<Message> getRevisions(String channelId, long sequenceNumber) {
+        return messageRepository.findRevisions(channelId, sequenceNumber);
+    }
+
+    private void admit(String channelId, int messages) {
+        if (!channelRepository.exists(channelId)) {
+            throw new InvalidChannelException("Cannot post to channel %s".formatted(channelId));
+        }
+        try {
+            rateLimiter.acquire(AUTHOR, channelId, messages);
+        } catch (RateLimitExceededException e) {
+            metrics.recordRejected(e.getLimit(), messages);
+            throw e;
+        }
+    }
+
+    private void deliver(String channelId, List<Message> messages) {
+        if (!sinkRegistry.isActive(channelId)) {
+            return;
+        }
+
+        var emission = sinkRegistry.emit(channelId, messages);
+        metrics.recordDelivery(messages);
+        if (emission.dropped() > 0) {
+            metrics.recordDropped(channelId, emission.dropped());
+        }
+        if (emission.disconnected() > 0) {
+            metrics.recordDisconnected(channelId, emission.disconnected());
+            log.warn("Disconnected {} slow subscribers of channelId {}", emission.disconnected(), channelId);
+        }
+    }
+
+    /**
+     * Runs writes on this node's repositories, which only the sequencer does. Every other node forwards its writes to
+     * the sequencer after checking them against its own channels and rate limits.
+     */
+    private class LocalSequencer implements Sequencer {
+
+        @Override
+        public Channel createChannel(NewChannel newChannel) {
+            var channel = channelRepository.save(newChannel);
+            messageBus.publishChannel(channel);
+            return channel;
+        }
+
+        @Override
+        public Message save(NewMessage newMessage) {
+            long start = System.nanoTime();
+            var saved = messageRepository.save(newMessage);
+            metrics.recordSave(System.nanoTime() - start);
+            messageBus.publish(newMessage.getChannelId(), List.of(saved));
+            return saved;
+        }
+
+        @Override
+        public List<Message> saveAll(String channelId, List<NewMessage> newMessages) {
+            long start = System.nanoTime();
+            var saved = messageRepository.saveAll(newMessages);
+            metrics.recordSave(System.nanoTime() - start);
+            messageBus.publish(channelId, saved);
+            return saved;
+        }
+
+        @Override
+        public Message edit(String channelId, long sequenceNumber, String message) {
+            var edited = messageRepository.edit(channelId, sequenceNumber, message);
+            messageBus.publish(channelId, List.of(edited));
+            return edited;
+        }
+
+        @Override
+        public Message delete(String channelId, long sequenceNumber) {
+            var deleted = messageRepository.delete(channelId, sequenceNumber);
+            messageBus.publish(channelId, List.of(deleted));
+            return deleted;
+        }
+    }
+
+    /**
+     * Tracks the switch from replayed to live batches of {@link #liveMessagesFrom}. Batches pass through
+     * {@link #resume} in order: replayed ones advance the replayed sequence number, live ones are stripped of the
+     * messages that were already replayed. Updates always pass, a client keeps the highest revision of a message anyway.
+     */
+    private static class ResumeCursor {
+        private long replayedSequenceNumber;
+        private boolean live;
+
+        private ResumeCursor(long afterSequenceNumber) {
+            this.replayedSequenceNumber = afterSequenceNumber;
+        }
+
+        @Nullable
+        private MessageBatch resume(MessageBatch batch) {
+            var messages = batch.getMessages();
+            if (!live) {
+                replayedSequenceNumber = messages.get(messages.size() - 1).getSequenceNumber();
+                return batch;
+            }
+
+            int seen = 0;
+            for (var message : messages) {
+                if (message.getSequenceNumber() <= replayedSequenceNumber) {
+                    seen++;
+                }
+            }
+            if (seen == 0) {
+                return batch;
+            }
+            if (seen == messages.size() && batch.getUpdates().isEmpty() && !batch.hasGap()) {
+                return null;
+            }
+
+            var unseen = new ArrayList<Message>(messages.size() - seen);
+            for (var message : messages) {
+                if (message.getSequenceNumber() > replayedSequenceNumber) {
+                    unseen.add(message);
+                }
+            }
+            return new MessageBatch(unseen, batch.getUpdates(), batch.getMissed());
+        }
 
-        String author = "John Doe";
-        var posted = new NewMessage(message, channelId, author, clock.instant());
-        var saved = messageRepository.save(posted);
-        var result = messageSink.tryEmitNext(saved);
-        if (result.isFailure()) {
-            log.error("Failed to post message to channelId {} [ Message : {} ]", message, channelId);
+        private void replayed() {
+            live = true;
         }
     }
 }
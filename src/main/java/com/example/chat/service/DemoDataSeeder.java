@@ -0,0 +1,49 @@
+package com.example.chat.service;
+
+import com.example.chat.bus.MessageBus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the demo channels on a fresh start of the sequencer, which replicates them to the other instances. Active
+ * by default through {@code spring.profiles.default=demo}; running with any explicit profile turns it off.
+ */
+@Slf4j
+@Component
+@Profile("demo")
+public class DemoDataSeeder {
+
+    public DemoDataSeeder(ChatService chatService, MessageBus messageBus) {
+        if (!messageBus.isSequencer() || !chatService.getAllChannels().isEmpty()) {
+            return;
+        }
+
+        String[] chatChannels = {
+                "TechTalks Central",
+                "Mindful Mornings",
+                "Global Gourmet Guild",
+                "Fitness Frontiers",
+                "Bookworm Bungalow",
+                "Creative Corner",
+                "Eco Enthusiasts",
+                "History Huddle",
+                "Music Mavens",
+                "Travel Trekkers",
+                "Gamer's Grind",
+                "Pet Parade",
+                "Fashion Forward",
+                "Science Sphere",
+                "Artists' Alley",
+                "Movie Maniacs",
+                "Entrepreneur Exchange",
+                "Health Hub",
+                "DIY Den",
+                "Language Labyrinth"
+        };
+        for (String channelName : chatChannels) {
+            var channel = chatService.createChannel(channelName);
+            log.info("Created channel: {} (http://localhost:8080/channel/{})", channel.getName(), channel.getId());
+        }
+    }
+}
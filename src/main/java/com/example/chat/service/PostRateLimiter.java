@@ -0,0 +1,190 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.RateLimitProperties;
+import com.example.chat.exception.RateLimitExceededException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Flood control for posting: a token bucket per channel and, if configured, one per author, each refilling at a steady
+ * rate up to its burst size. A batch larger than a burst is never admitted. Buckets that have refilled completely hold no information and are evicted in the background, so only
+ * authors and channels that posted recently take up memory.
+ */
+@Component
+public class PostRateLimiter implements DisposableBean {
+
+    private LongSupplier nanoClock;
+    private TokenBuckets authors;
+    private TokenBuckets channels;
+    private ScheduledExecutorService evictor;
+
+    /**
+     * A limiter that admits every post.
+     */
+    public PostRateLimiter() {
+        this.nanoClock = System::nanoTime;
+    }
+
+    @Autowired
+    public PostRateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+        if (channels != null) {
+            long intervalMillis = Math.max(1, properties.getEvictionInterval().toMillis());
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "rate-limit-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evictIdle, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    PostRateLimiter(RateLimitProperties properties, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        if (properties.isEnabled()) {
+            this.authors = properties.getAuthor() == null ? null : new TokenBuckets(properties.getAuthor());
+            this.channels = new TokenBuckets(properties.getChannel());
+        }
+    }
+
+    /**
+     * Takes {@code messages} tokens from the author's and the channel's bucket, or neither.
+     *
+     * @throws RateLimitExceededException if either bucket does not hold enough tokens, or {@code messages} exceeds
+     * either burst size
+     */
+    public void acquire(String author, String channelId, int messages) {
+        if (channels == null) {
+            return;
+        }
+        if (authors != null && messages > authors.burst) {
+            throw new RateLimitExceededException(RateLimitExceededException.Limit.AUTHOR, author, messages, authors.burst);
+        }
+        if (messages > channels.burst) {
+            throw new RateLimitExceededException(RateLimitExceededException.Limit.CHANNEL, channelId, messages, channels.burst);
+        }
+
+        long now = nanoClock.getAsLong();
+        if (authors != null) {
+            long authorWait = authors.tryAcquire(author, messages, now);
+            if (authorWait > 0) {
+                throw new RateLimitExceededException(RateLimitExceededException.Limit.AUTHOR, author, Duration.ofNanos(authorWait));
+            }
+        }
+        long channelWait = channels.tryAcquire(channelId, messages, now);
+        if (channelWait > 0) {
+            if (authors != null) {
+                authors.release(author, messages);
+            }
+            throw new RateLimitExceededException(RateLimitExceededException.Limit.CHANNEL, channelId, Duration.ofNanos(channelWait));
+        }
+    }
+
+    public int bucketCount() {
+        return channels == null ? 0 : (authors == null ? 0 : authors.size()) + channels.size();
+    }
+
+    void evictIdle() {
+        long now = nanoClock.getAsLong();
+        if (authors != null) {
+            authors.evictIdle(now);
+        }
+        channels.evictIdle(now);
+    }
+
+    @Override
+    public void destroy() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    /**
+     * Token buckets in the form of the generic cell rate algorithm: a bucket is a single {@link AtomicLong} holding the
+     * time at which it will be full again. Taking {@code n} tokens pushes that time {@code n} emission intervals into
+     * the future, which is allowed as long as it stays within {@code burst} intervals from now. Updates are a
+     * compare-and-set on an existing bucket, without locks or allocation.
+     */
+    static final class TokenBuckets {
+
+        private static final long FULL = Long.MIN_VALUE + 1;
+        private static final long EVICTED = Long.MIN_VALUE;
+
+        private final int burst;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        TokenBuckets(RateLimitProperties.Limit limit) {
+            this.burst = Math.max(1, limit.getBurst());
+            this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / limit.getMessagesPerSecond()));
+            this.toleranceNanos = intervalNanos * burst;
+        }
+
+        /**
+         * Returns 0 if the tokens were taken, otherwise the nanoseconds until they will be available. The caller
+         * rejects requests for more tokens than the burst size, which would never be available.
+         */
+        long tryAcquire(String key, int permits, long now) {
+            long cost = intervalNanos * permits;
+            var bucket = bucket(key);
+            while (true) {
+                long fullAt = bucket.get();
+                if (fullAt == EVICTED) {
+                    buckets.remove(key, bucket);
+                    bucket = bucket(key);
+                    continue;
+                }
+                long next = Math.max(fullAt, now) + cost;
+                if (next - now > toleranceNanos) {
+                    return next - now - toleranceNanos;
+                }
+                if (bucket.compareAndSet(fullAt, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        void release(String key, int permits) {
+            long cost = intervalNanos * permits;
+            var bucket = buckets.get(key);
+            if (bucket == null) {
+                return;
+            }
+            while (true) {
+                long fullAt = bucket.get();
+                if (fullAt == EVICTED || bucket.compareAndSet(fullAt, fullAt - cost)) {
+                    return;
+                }
+            }
+        }
+
+        void evictIdle(long now) {
+            buckets.forEach((key, bucket) -> {
+                long fullAt = bucket.get();
+                if (fullAt != EVICTED && fullAt <= now && bucket.compareAndSet(fullAt, EVICTED)) {
+                    buckets.remove(key, bucket);
+                }
+            });
+        }
+
+        int size() {
+            return buckets.size();
+        }
+
+        private AtomicLong bucket(String key) {
+            var bucket = buckets.get(key);
+            return bucket != null ? bucket : buckets.computeIfAbsent(key, missing -> new AtomicLong(FULL));
+        }
+    }
+}
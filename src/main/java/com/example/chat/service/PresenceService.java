@@ -0,0 +1,206 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.PresenceProperties;
+import com.example.chat.exception.InvalidChannelException;
+import com.example.chat.model.PresenceUpdate;
+import com.example.chat.repository.ChannelRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Who is online and who is typing in each channel. Nothing here is persisted: a user is online for
+ * {@code chat.presence.ttl} after their last heartbeat and typing for {@code chat.presence.typing-ttl} after their last
+ * keystroke notification. Heartbeats and typing notifications only update a map entry; a single ticker expires entries
+ * and publishes at most one {@link PresenceUpdate} per changed channel every {@code chat.presence.update-interval}, so
+ * the cost of fan-out depends on the number of channels and subscribers, not on how fast users type.
+ */
+@Slf4j
+@Component
+public class PresenceService implements DisposableBean {
+
+    private ChannelRepository channelRepository;
+    private LongSupplier nanoClock;
+    private long ttlNanos;
+    private long typingTtlNanos;
+    private ConcurrentMap<String, ChannelPresence> channels = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+
+    @Autowired
+    public PresenceService(ChannelRepository channelRepository, PresenceProperties properties) {
+        this(channelRepository, properties, System::nanoTime);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "presence-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, properties.getUpdateInterval().toMillis());
+        ticker.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    PresenceService(ChannelRepository channelRepository, PresenceProperties properties, LongSupplier nanoClock) {
+        this.channelRepository = channelRepository;
+        this.nanoClock = nanoClock;
+        this.ttlNanos = properties.getTtl().toNanos();
+        this.typingTtlNanos = properties.getTypingTtl().toNanos();
+    }
+
+    public void heartbeat(String userId, String channelId) {
+        checkChannel(channelId);
+        long expiresAt = nanoClock.getAsLong() + ttlNanos;
+        channels.compute(channelId, (id, presence) -> {
+            presence = presence == null ? new ChannelPresence(id) : presence;
+            presence.online(userId, expiresAt);
+            return presence;
+        });
+    }
+
+    /**
+     * Marks the user as typing, and online, in the channel. Clients are expected to call this repeatedly while the
+     * user keeps typing; repeated calls only extend the deadline and never cause an update by themselves.
+     */
+    public void typing(String userId, String channelId) {
+        checkChannel(channelId);
+        long now = nanoClock.getAsLong();
+        channels.compute(channelId, (id, presence) -> {
+            presence = presence == null ? new ChannelPresence(id) : presence;
+            presence.online(userId, now + ttlNanos);
+            if (presence.typing.put(userId, now + typingTtlNanos) == null) {
+                presence.changed.set(true);
+            }
+            return presence;
+        });
+    }
+
+    public void stoppedTyping(String userId, String channelId) {
+        channels.computeIfPresent(channelId, (id, presence) -> {
+            if (presence.typing.remove(userId) != null) {
+                presence.changed.set(true);
+            }
+            return presence;
+        });
+    }
+
+    public void leave(String userId, String channelId) {
+        channels.computeIfPresent(channelId, (id, presence) -> {
+            if (presence.online.remove(userId) != null | presence.typing.remove(userId) != null) {
+                presence.changed.set(true);
+            }
+            return presence;
+        });
+    }
+
+    public Set<String> getOnlineUsers(String channelId) {
+        var presence = channels.get(channelId);
+        return presence == null ? Set.of() : Set.copyOf(presence.online.keySet());
+    }
+
+    /**
+     * The presence of a channel as it changes, starting with its current state. Every update is complete, so a
+     * subscriber that cannot keep up skips to the latest one instead of buffering.
+     */
+    public Flux<PresenceUpdate> presenceUpdates(String channelId) {
+        checkChannel(channelId);
+        return Flux.defer(() -> {
+            var subscribed = channels.compute(channelId, (id, presence) -> {
+                presence = presence == null ? new ChannelPresence(id) : presence;
+                presence.subscribers++;
+                return presence;
+            });
+            return subscribed.updates.asFlux()
+                    .onBackpressureLatest()
+                    .doFinally(signal -> channels.computeIfPresent(channelId, (id, presence) -> {
+                        presence.subscribers--;
+                        return presence;
+                    }));
+        });
+    }
+
+    public int channelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Expires heartbeats and typing notifications, publishes the channels that changed since the last tick and drops
+     * channels nobody is in or watching. Removal happens under the map's lock for the channel, the same one every
+     * update takes, so an update never lands in a channel that has just been dropped.
+     */
+    void tick() {
+        long now = nanoClock.getAsLong();
+        for (var presence : channels.values()) {
+            try {
+                if (presence.online.values().removeIf(expiresAt -> expiresAt - now <= 0)
+                        | presence.typing.values().removeIf(expiresAt -> expiresAt - now <= 0)) {
+                    presence.changed.set(true);
+                }
+                if (presence.changed.getAndSet(false)) {
+                    presence.updates.tryEmitNext(presence.snapshot());
+                }
+                if (presence.online.isEmpty() && presence.typing.isEmpty() && presence.subscribers == 0) {
+                    channels.computeIfPresent(presence.channelId, (id, current) -> current.isIdle() ? null : current);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to update presence of channel {}", presence.channelId, e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        channels.values().forEach(presence -> presence.updates.tryEmitComplete());
+    }
+
+    private void checkChannel(String channelId) {
+        if (!channelRepository.exists(channelId)) {
+            throw new InvalidChannelException("Cannot read channel %s".formatted(channelId));
+        }
+    }
+
+    /**
+     * The state of one channel. The subscriber count is only read and written inside {@code compute} calls on the
+     * channel's entry, which serializes it with the eviction check.
+     */
+    private static final class ChannelPresence {
+
+        private final String channelId;
+        private final ConcurrentMap<String, Long> online = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Long> typing = new ConcurrentHashMap<>();
+        private final AtomicBoolean changed = new AtomicBoolean();
+        private final Sinks.Many<PresenceUpdate> updates = Sinks.many().replay().latest();
+        private int subscribers;
+
+        private ChannelPresence(String channelId) {
+            this.channelId = channelId;
+            updates.tryEmitNext(new PresenceUpdate(channelId, Set.of(), Set.of()));
+        }
+
+        private void online(String userId, long expiresAt) {
+            if (online.put(userId, expiresAt) == null) {
+                changed.set(true);
+            }
+        }
+
+        private boolean isIdle() {
+            return online.isEmpty() && typing.isEmpty() && subscribers == 0;
+        }
+
+        private PresenceUpdate snapshot() {
+            return new PresenceUpdate(channelId, Set.copyOf(online.keySet()), Set.copyOf(typing.keySet()));
+        }
+    }
+}
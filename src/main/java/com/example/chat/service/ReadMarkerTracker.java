@@ -0,0 +1,82 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.model.ReadMarker;
+import com.example.chat.repository.ReadMarkerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces read marker updates in memory and writes only the furthest position of every (user, channel) pair to the
+ * {@link ReadMarkerRepository} every {@code chat.read-markers.flush-interval}, so a user scrolling through a channel
+ * costs one write per interval instead of one per message. Lookups see pending markers immediately.
+ */
+@Slf4j
+@Component
+public class ReadMarkerTracker implements DisposableBean {
+
+    private ReadMarkerRepository repository;
+    private ConcurrentMap<Key, Long> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public ReadMarkerTracker(ReadMarkerRepository repository, ReadMarkerProperties properties) {
+        this.repository = repository;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "read-marker-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, properties.getFlushInterval().toMillis());
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void markRead(String userId, String channelId, long sequenceNumber) {
+        pending.merge(new Key(userId, channelId), sequenceNumber, Math::max);
+    }
+
+    public long readMarker(String userId, String channelId) {
+        var stored = repository.findSequenceNumber(userId, channelId);
+        var unflushed = pending.get(new Key(userId, channelId));
+        return unflushed == null ? stored : Math.max(stored, unflushed);
+    }
+
+    /**
+     * Writes the pending markers. A marker is only removed from the pending set after it has been stored, and only if
+     * it has not moved on in the meantime, so lookups never see a marker go backwards.
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        var flushed = new ArrayList<ReadMarker>(pending.size());
+        pending.forEach((key, sequenceNumber) -> flushed.add(new ReadMarker(key.userId, key.channelId, sequenceNumber)));
+        try {
+            repository.saveAll(flushed);
+        } catch (RuntimeException e) {
+            log.error("Failed to store {} read markers", flushed.size(), e);
+            return;
+        }
+        for (var marker : flushed) {
+            pending.remove(new Key(marker.getUserId(), marker.getChannelId()), marker.getSequenceNumber());
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        flush();
+    }
+
+    private record Key(String userId, String channelId) {
+    }
+}
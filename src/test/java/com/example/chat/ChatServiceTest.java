@@ -1,17 +1,24 @@
 package com.example.chat;
 
 import com.example.chat.exception.InvalidChannelException;
+import com.example.chat.model.ChannelSummary;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
 import com.example.chat.model.NewChannel;
 import com.example.chat.repository.ChannelRepository;
 import com.example.chat.service.ChatService;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -27,6 +34,9 @@ public class ChatServiceTest {
     @Autowired
     ChannelRepository channelRepository;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @PostConstruct
     public void setUpAll() {
         knownChannelId = channelRepository.save(new NewChannel("General")).getId();
@@ -53,7 +63,8 @@ public class ChatServiceTest {
         var liveMessages = chatService.liveMessages(knownChannelId);
         var verifier = StepVerifier
                 .create(liveMessages)
-                .expectNextMatches(messages -> {
+                .expectNextMatches(batch -> {
+                    var messages = batch.getMessages();
                     if (messages.isEmpty()) {
                         return false;
                     }
@@ -74,14 +85,46 @@ public class ChatServiceTest {
         var liveMessages = chatService.liveMessages(knownChannelId);
         var verifier = StepVerifier
                 .create(liveMessages)
-                .expectNextMatches(messages -> messages.size() == 2)
+                .expectNextMatches(batch -> batch.getMessages().size() == 1)
+                .expectNextMatches(batch -> batch.getMessages().size() == 2)
                 .thenCancel()
                 .verifyLater();
         chatService.postMessage(knownChannelId, "message1");
         chatService.postMessage(knownChannelId, "message2");
+        chatService.postMessage(knownChannelId, "message3");
+        verifier.verify();
+    }
+
+    @Test
+    @DisplayName("Messages posted as a batch are delivered together")
+    public void messages_posted_as_a_batch_are_delivered_together() {
+        var liveMessages = chatService.liveMessages(knownChannelId);
+        var verifier = StepVerifier
+                .create(liveMessages)
+                .expectNextMatches(batch -> batch.getMessages().size() == 3
+                        && batch.getMessages().get(2).getSequenceNumber() == batch.getMessages().get(0).getSequenceNumber() + 2)
+                .thenCancel()
+                .verifyLater();
+        chatService.postMessages(knownChannelId, List.of("batch1", "batch2", "batch3"));
         verifier.verify();
     }
 
+    @Test
+    @DisplayName("Messages posted asynchronously keep their order")
+    public void messages_posted_asynchronously_keep_their_order() {
+        var channel = chatService.createChannel("Async");
+        var posted = Flux.range(1, 100)
+                .flatMap(i -> chatService.postMessageAsync(channel.getId(), "message" + i), 1)
+                .collectList()
+                .block();
+
+        assertThat(posted).extracting(Message::getSequenceNumber).isSorted().doesNotHaveDuplicates();
+        assertThat(chatService.getLatestMessages(channel.getId(), 1, null)).extracting(Message::getMessage).containsExactly("message100");
+        StepVerifier.create(chatService.postMessageAsync("nonexistent", "will never get published"))
+                .expectError(InvalidChannelException.class)
+                .verify();
+    }
+
     @Test
     @DisplayName("Users can fetch message history")
     public void users_can_fetch_message_history() {
@@ -98,6 +141,130 @@ public class ChatServiceTest {
         });
     }
 
+    @Test
+    @DisplayName("Users can scroll back through message history")
+    public void users_can_scroll_back_through_message_history() {
+        var channel = chatService.createChannel("Scroll back");
+        chatService.postMessages(channel.getId(), List.of("message1", "message2", "message3", "message4", "message5"));
+
+        var page = chatService.getMessagesBefore(channel.getId(), 4, 2);
+        assertThat(page).extracting(Message::getMessage).containsExactly("message2", "message3");
+        assertThat(chatService.getMessagesAround(channel.getId(), page.get(0).getMessageId(), 1))
+                .extracting(Message::getMessage).containsExactly("message1", "message2", "message3");
+    }
+
+    @Test
+    @DisplayName("Users can catch up on history as a stream")
+    public void users_can_catch_up_on_history_as_a_stream() {
+        var channel = chatService.createChannel("Catch up");
+        chatService.postMessages(channel.getId(), List.of("message1", "message2", "message3", "message4"));
+
+        StepVerifier.create(chatService.streamMessages(channel.getId(), 1), 2)
+                .expectNextMatches(message -> message.getMessage().equals("message2"))
+                .expectNextMatches(message -> message.getMessage().equals("message3"))
+                .thenRequest(1)
+                .expectNextMatches(message -> message.getMessage().equals("message4"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Reconnecting users receive only what they missed and then live messages")
+    public void reconnecting_users_receive_only_what_they_missed_and_then_live_messages() {
+        var channel = chatService.createChannel("Resume");
+        chatService.postMessages(channel.getId(), List.of("message1", "message2", "message3"));
+        long lastSeen = chatService.getLatestMessages(channel.getId(), 3, null).get(0).getSequenceNumber();
+
+        StepVerifier.create(chatService.liveMessagesFrom(channel.getId(), lastSeen).flatMapIterable(MessageBatch::getMessages))
+                .expectNextMatches(message -> message.getMessage().equals("message2"))
+                .expectNextMatches(message -> message.getMessage().equals("message3"))
+                .then(() -> chatService.postMessage(channel.getId(), "message4"))
+                .expectNextMatches(message -> message.getMessage().equals("message4"))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Users can search message history")
+    public void users_can_search_message_history() {
+        var channel = chatService.createChannel("Search");
+        chatService.postMessages(channel.getId(), List.of("Deploy finished", "Coffee?", "deploy failed", "Rolling back the deploy"));
+
+        var page = chatService.search(channel.getId(), "deploy", 2);
+        assertThat(page).extracting(Message::getMessage).containsExactly("Rolling back the deploy", "deploy failed");
+        assertThat(chatService.search(channel.getId(), "deploy", 2, page.get(1).getSequenceNumber()))
+                .extracting(Message::getMessage).containsExactly("Deploy finished");
+    }
+
+    @Test
+    @DisplayName("Users see how many messages they have not read in every channel")
+    public void users_see_how_many_messages_they_have_not_read_in_every_channel() {
+        var channel = chatService.createChannel("Unread");
+        chatService.postMessages(channel.getId(), List.of("message1", "message2", "message3", "message4", "message5"));
+        var messages = chatService.getLatestMessages(channel.getId(), 5, null);
+
+        assertThat(chatService.getUnreadCount("alice", channel.getId())).isEqualTo(5);
+        chatService.markRead("alice", channel.getId(), messages.get(1).getSequenceNumber());
+        chatService.markRead("alice", channel.getId(), messages.get(0).getSequenceNumber());
+        assertThat(chatService.getAllChannels("alice"))
+                .filteredOn(summary -> summary.getChannel().getId().equals(channel.getId()))
+                .extracting(ChannelSummary::getUnreadCount).containsExactly(3L);
+        assertThat(chatService.getUnreadCount("bob", channel.getId())).isEqualTo(5);
+
+        chatService.markRead("alice", channel.getId(), Long.MAX_VALUE);
+        chatService.postMessage(channel.getId(), "message6");
+        assertThat(chatService.getUnreadCount("alice", channel.getId())).isEqualTo(1);
+        assertThatThrownBy(() -> chatService.markRead("alice", "nonexistent", 1)).isInstanceOf(InvalidChannelException.class);
+    }
+
+    @Test
+    @DisplayName("Posting and live delivery are measured")
+    public void posting_and_live_delivery_are_measured() {
+        var channel = chatService.createChannel("Measured");
+        long saves = meterRegistry.get("chat.message.save").timer().count();
+        long deliveries = meterRegistry.get("chat.delivery.lag").timer().count();
+        StepVerifier
+                .create(chatService.liveMessages(channel.getId()))
+                .then(() -> assertThat(meterRegistry.get("chat.subscribers.active").tag("channel", channel.getId()).gauge().value()).isEqualTo(1.0))
+                .then(() -> chatService.postMessage(channel.getId(), "Hello, metrics!"))
+                .expectNextCount(1)
+                .then(() -> assertThat(meterRegistry.get("chat.archive.messages").tag("channel", channel.getId()).gauge().value()).isEqualTo(1.0))
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.get("chat.message.save").timer().count()).isEqualTo(saves + 1);
+        assertThat(meterRegistry.get("chat.delivery.lag").timer().count()).isGreaterThan(deliveries);
+        assertThat(meterRegistry.find("chat.subscribers.active").tag("channel", channel.getId()).gauge()).isNull();
+        assertThat(meterRegistry.find("chat.archive.messages").tag("channel", channel.getId()).gauge()).isNull();
+    }
+
+    @Test
+    @DisplayName("Edits and deletions are pushed to live subscribers as updates")
+    public void edits_and_deletions_are_pushed_to_live_subscribers_as_updates() {
+        var channel = chatService.createChannel("Edits");
+        chatService.postMessage(channel.getId(), "original");
+        chatService.postMessage(channel.getId(), "unchanged");
+        long sequenceNumber = chatService.getLatestMessages(channel.getId(), 2, null).get(0).getSequenceNumber();
+        var verifier = StepVerifier
+                .create(chatService.liveMessagesFrom(channel.getId(), 0))
+                .expectNextMatches(batch -> batch.getMessages().size() == 2 && batch.getUpdates().isEmpty())
+                .expectNextMatches(batch -> batch.getMessages().isEmpty()
+                        && batch.getUpdates().get(0).getMessage().equals("edited"))
+                .expectNextMatches(batch -> batch.getUpdates().get(batch.getUpdates().size() - 1).isDeleted())
+                .thenCancel()
+                .verifyLater();
+
+        chatService.editMessage(channel.getId(), sequenceNumber, "edited");
+        chatService.deleteMessage(channel.getId(), sequenceNumber + 1);
+        verifier.verify();
+
+        assertThat(chatService.getLatestMessages(channel.getId(), 2, null))
+                .extracting(Message::getMessage, Message::isDeleted)
+                .containsExactly(Assertions.tuple("edited", false), Assertions.tuple(null, true));
+        assertThat(chatService.getRevisions(channel.getId(), sequenceNumber)).extracting(Message::getMessage)
+                .containsExactly("original", "edited");
+        assertThat(chatService.getChannelById(channel.getId()).orElseThrow().getLastMessage().isDeleted()).isTrue();
+    }
+
     @Test
     @DisplayName("Posting to a nonexistent channel throws an exception")
     public void posting_to_nonexistent_channel_throws_exception() {
@@ -0,0 +1,67 @@
+package com.example.chat;
+
+import com.example.chat.model.Message;
+import com.example.chat.repository.ChannelRepository;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.impl.FileChannelRepository;
+import com.example.chat.repository.impl.FileMessageRepository;
+import com.example.chat.service.ChatService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, properties = "chat.storage.type=file")
+public class FileStorageTest {
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    ChatService chatService;
+
+    @Autowired
+    MessageRepository messageRepository;
+
+    @Autowired
+    ChannelRepository channelRepository;
+
+    @DynamicPropertySource
+    static void storageDirectory(DynamicPropertyRegistry registry) {
+        registry.add("chat.storage.directory", () -> directory.toString());
+    }
+
+    @Test
+    void file_storage_can_be_selected_by_property() {
+        assertThat(messageRepository).isInstanceOf(FileMessageRepository.class);
+        assertThat(channelRepository).isInstanceOf(FileChannelRepository.class);
+
+        var channel = chatService.createChannel("Persistent");
+        chatService.postMessage(channel.getId(), "Hello, disk!");
+
+        assertThat(chatService.getLatestMessages(channel.getId(), 1, null))
+                .singleElement()
+                .satisfies(message -> assertThat(message.getMessage()).isEqualTo("Hello, disk!"));
+    }
+
+    @Test
+    void messages_in_file_storage_can_be_edited_and_deleted() {
+        var channel = chatService.createChannel("Revised");
+        chatService.postMessage(channel.getId(), "Hello, dsik!");
+
+        chatService.editMessage(channel.getId(), 1, "Hello, disk!");
+        assertThat(chatService.getRevisions(channel.getId(), 1))
+                .extracting(Message::getMessage).containsExactly("Hello, dsik!", "Hello, disk!");
+
+        chatService.deleteMessage(channel.getId(), 1);
+        assertThat(chatService.getLatestMessages(channel.getId(), 1, null))
+                .singleElement()
+                .satisfies(message -> assertThat(message.isDeleted()).isTrue());
+    }
+}
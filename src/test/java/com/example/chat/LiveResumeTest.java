@@ -0,0 +1,113 @@
+package com.example.chat;
+
+import com.example.chat.bus.impl.LocalMessageBus;
+import com.example.chat.configuration.DeliveryProperties;
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import com.example.chat.service.ChannelPostingExecutor;
+import com.example.chat.service.ChannelSinkRegistry;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.PostRateLimiter;
+import com.example.chat.service.ReadMarkerTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Clients resuming with {@link ChatService#liveMessagesFrom} while two posters keep posting must end up with every
+ * message after their resume point exactly once.
+ */
+public class LiveResumeTest {
+
+    private static final int POSTS_PER_POSTER = 5000;
+
+    private final ChannelPostingExecutor postingExecutor = new ChannelPostingExecutor();
+    private final ReadMarkerTracker readMarkerTracker = new ReadMarkerTracker(new InMemoryReadMarkerRepository(), new ReadMarkerProperties());
+    private final PostRateLimiter rateLimiter = new PostRateLimiter();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        postingExecutor.destroy();
+        readMarkerTracker.destroy();
+        rateLimiter.destroy();
+    }
+
+    @Test
+    void clients_resuming_during_posting_receive_every_later_message_exactly_once() throws InterruptedException {
+        var messageRepository = new InMemoryMessageRepository();
+        var channelRepository = new InMemoryChannelRepository(messageRepository);
+        var deliveryProperties = new DeliveryProperties();
+        deliveryProperties.setMaxBatchDelay(Duration.ZERO);
+        deliveryProperties.setQueueSize(100_000);
+        var sinkRegistry = new ChannelSinkRegistry(deliveryProperties);
+        var clock = Clock.systemUTC();
+        var metrics = new ChatMetrics(new SimpleMeterRegistry(), messageRepository, sinkRegistry, clock);
+        var chatService = new ChatService(messageRepository, channelRepository, sinkRegistry, new LocalMessageBus(), metrics,
+                postingExecutor, readMarkerTracker, rateLimiter, clock);
+        chatService.afterPropertiesSet();
+        var channelId = chatService.createChannel("Resume").getId();
+
+        var posters = List.of(new Thread(() -> post(chatService, channelId)), new Thread(() -> post(chatService, channelId)));
+        posters.forEach(Thread::start);
+        var clients = new ArrayList<Client>();
+        for (int i = 0; i < 20; i++) {
+            var latest = chatService.getLatestMessages(channelId, 1, null);
+            long after = latest.isEmpty() ? 0 : Math.max(0, latest.get(0).getSequenceNumber() - ThreadLocalRandom.current().nextInt(500));
+            clients.add(new Client(after, chatService.liveMessagesFrom(channelId, after)
+                    .flatMapIterable(MessageBatch::getMessages)));
+            Thread.sleep(20);
+        }
+        for (var poster : posters) {
+            poster.join();
+        }
+
+        long last = 2L * POSTS_PER_POSTER;
+        for (var client : clients) {
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (client.received.size() < last - client.after && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            client.subscription.dispose();
+            assertThat(client.received).extracting(Message::getSequenceNumber)
+                    .containsExactlyInAnyOrderElementsOf(LongStream.rangeClosed(client.after + 1, last).boxed().toList());
+        }
+    }
+
+    private static void post(ChatService chatService, String channelId) {
+        for (int i = 0; i < POSTS_PER_POSTER; i++) {
+            chatService.postMessage(channelId, "message" + i);
+            if (i % 10 == 0) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private static class Client {
+        private final long after;
+        private final ConcurrentLinkedQueue<Message> received = new ConcurrentLinkedQueue<>();
+        private final Disposable subscription;
+
+        private Client(long after, Flux<Message> messages) {
+            this.after = after;
+            this.subscription = messages.subscribe(received::add);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.chat;
+
+import com.example.chat.bus.impl.TcpMessageBus;
+import com.example.chat.configuration.BusProperties;
+import com.example.chat.configuration.DeliveryProperties;
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.exception.InvalidChannelException;
+import com.example.chat.exception.MessageNotFoundException;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import com.example.chat.service.ChannelPostingExecutor;
+import com.example.chat.service.ChannelSinkRegistry;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.PostRateLimiter;
+import com.example.chat.service.ReadMarkerTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Application instances in one JVM, each with its own repositories, replicated by {@link TcpMessageBus} over loopback
+ * sockets. Node A is the sequencer, node B a replica.
+ */
+public class MultiNodeDeliveryTest {
+
+    private final List<Node> nodes = new ArrayList<>();
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new Node(null);
+        nodeB = new Node(nodeA.bus.getPort());
+        awaitTrue(nodeB.bus::isConnected);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (var node : nodes) {
+            node.close();
+        }
+    }
+
+    @Test
+    void messages_posted_on_one_node_are_delivered_live_on_the_other() throws InterruptedException {
+        var channelId = nodeA.chatService.createChannel("Shared").getId();
+        awaitTrue(() -> nodeB.chatService.getChannelById(channelId).isPresent());
+        int count = 2000;
+        var postedAt = new long[count];
+        var latencies = new long[count];
+        var received = new ConcurrentLinkedQueue<Message>();
+        var done = new CountDownLatch(count);
+        var subscription = nodeB.chatService.liveMessages(channelId)
+                .flatMapIterable(MessageBatch::getMessages)
+                .subscribe(message -> {
+                    int index = Integer.parseInt(message.getMessage().substring("message".length()));
+                    latencies[index] = System.nanoTime() - postedAt[index];
+                    received.add(message);
+                    done.countDown();
+                });
+
+        for (int i = 0; i < count; i++) {
+            postedAt[i] = System.nanoTime();
+            nodeA.chatService.postMessage(channelId, "message" + i);
+            LockSupport.parkNanos(50_000);
+        }
+
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        subscription.dispose();
+        assertThat(received).extracting(Message::getSequenceNumber).isSorted().doesNotHaveDuplicates().hasSize(count);
+        assertThat(nodeA.bus.droppedPublications()).isZero();
+        assertThat(history(nodeB, channelId)).isEqualTo(history(nodeA, channelId));
+
+        Arrays.sort(latencies);
+        assertThat(latencies[count * 99 / 100]).isLessThan(Duration.ofSeconds(1).toNanos());
+    }
+
+    @Test
+    void both_nodes_store_the_posts_of_both_nodes_under_one_sequence() throws InterruptedException {
+        var channelId = nodeB.chatService.createChannel("Both ways").getId();
+        assertThat(nodeA.chatService.getChannelById(channelId)).isPresent();
+        var receivedOnA = new ConcurrentLinkedQueue<Message>();
+        var receivedOnB = new ConcurrentLinkedQueue<Message>();
+        var done = new CountDownLatch(2 * 2 * 500);
+        var subscriptions = List.of(subscribe(nodeA, channelId, receivedOnA, done), subscribe(nodeB, channelId, receivedOnB, done));
+
+        var posterB = new Thread(() -> post(nodeB, channelId, "b"));
+        posterB.start();
+        post(nodeA, channelId, "a");
+        posterB.join();
+
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        subscriptions.forEach(Disposable::dispose);
+        for (var received : List.of(receivedOnA, receivedOnB)) {
+            assertThat(received).extracting(Message::getSequenceNumber)
+                    .containsExactlyElementsOf(LongStream.rangeClosed(1, 1000).boxed().toList());
+        }
+        assertThat(history(nodeB, channelId)).hasSize(1000).isEqualTo(history(nodeA, channelId));
+        assertThat(nodeB.chatService.liveMessagesFrom(channelId, 995).flatMapIterable(MessageBatch::getMessages).take(5).collectList().block())
+                .extracting(Message::getSequenceNumber).containsExactly(996L, 997L, 998L, 999L, 1000L);
+    }
+
+    @Test
+    void writes_on_a_replica_are_stored_there_when_they_return() {
+        var channelId = nodeA.chatService.createChannel("Read your writes").getId();
+        awaitTrue(() -> nodeB.chatService.getChannelById(channelId).isPresent());
+
+        nodeB.chatService.postMessages(channelId, List.of("first", "second"));
+        assertThat(nodeB.chatService.getLatestMessages(channelId, 10, null)).extracting(Message::getMessage)
+                .containsExactly("first", "second");
+        var edited = nodeB.chatService.editMessage(channelId, 1, "edited");
+        assertThat(nodeB.chatService.getRevisions(channelId, 1)).last().isEqualTo(edited);
+        var deleted = nodeB.chatService.deleteMessage(channelId, 2);
+        assertThat(nodeB.chatService.getLatestMessages(channelId, 10, null)).last().isEqualTo(deleted);
+
+        assertThat(history(nodeB, channelId)).isEqualTo(history(nodeA, channelId));
+        assertThat(nodeB.chatService.getRevisions(channelId, 1)).isEqualTo(nodeA.chatService.getRevisions(channelId, 1));
+        assertThatThrownBy(() -> nodeB.chatService.editMessage(channelId, 3, "missing"))
+                .isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> nodeB.chatService.postMessage("unknown", "lost"))
+                .isInstanceOf(InvalidChannelException.class);
+    }
+
+    @Test
+    void a_replica_catches_up_on_what_it_missed_when_it_connects() throws InterruptedException {
+        var channelId = nodeA.chatService.createChannel("Catch up").getId();
+        awaitTrue(() -> nodeB.chatService.getChannelById(channelId).isPresent());
+        nodeA.chatService.postMessages(channelId, List.of("one", "two", "three"));
+        awaitTrue(() -> history(nodeB, channelId).size() == 3);
+        nodes.remove(nodeB);
+        nodeB.close();
+
+        nodeA.chatService.postMessages(channelId, List.of("four", "five"));
+        nodeA.chatService.editMessage(channelId, 2, "two, edited");
+        nodeA.chatService.deleteMessage(channelId, 3);
+        var otherChannelId = nodeA.chatService.createChannel("Created while away").getId();
+        nodeA.chatService.postMessage(otherChannelId, "hello");
+
+        var restarted = new Node(nodeA.bus.getPort(), nodeB.messageRepository, nodeB.channelRepository);
+        awaitTrue(() -> history(restarted, otherChannelId).size() == 1);
+        awaitTrue(() -> history(restarted, channelId).equals(history(nodeA, channelId)));
+        assertThat(restarted.chatService.getRevisions(channelId, 2)).isEqualTo(nodeA.chatService.getRevisions(channelId, 2));
+        assertThat(restarted.chatService.getAllChannels()).isEqualTo(nodeA.chatService.getAllChannels());
+    }
+
+    @Test
+    void the_sequencer_rejects_connections_of_another_protocol_version() throws IOException {
+        nodeA.chatService.createChannel("Versioned");
+        assertThat(handshake(TcpMessageBus.VERSION, 0)).isTrue();
+        assertThat(handshake(TcpMessageBus.VERSION + 1, 0)).isFalse();
+    }
+
+    @Test
+    void the_sequencer_rejects_counts_it_would_not_allocate() throws IOException {
+        nodeA.chatService.createChannel("Bounded");
+        assertThat(handshake(TcpMessageBus.VERSION, Integer.MAX_VALUE)).isFalse();
+        assertThat(handshake(TcpMessageBus.VERSION, -1)).isFalse();
+        assertThat(handshake(TcpMessageBus.VERSION, 0)).isTrue();
+    }
+
+    /**
+     * Connects like a replica with the given version and number of synced channels, and returns whether the sequencer
+     * went on to send its channels.
+     */
+    private boolean handshake(int version, int channels) throws IOException {
+        try (var socket = new Socket("127.0.0.1", nodeA.bus.getPort())) {
+            socket.setSoTimeout(1000);
+            var out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(0x43484154);
+            out.writeInt(version);
+            out.writeByte(1);
+            out.writeInt(channels);
+            out.flush();
+            var in = new DataInputStream(socket.getInputStream());
+            try {
+                in.readInt();
+                in.readInt();
+                in.readByte();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private static Disposable subscribe(Node node, String channelId, ConcurrentLinkedQueue<Message> received, CountDownLatch done) {
+        return node.chatService.liveMessages(channelId)
+                .flatMapIterable(MessageBatch::getMessages)
+                .subscribe(message -> {
+                    received.add(message);
+                    done.countDown();
+                });
+    }
+
+    private static void post(Node node, String channelId, String prefix) {
+        for (int i = 0; i < 500; i++) {
+            node.chatService.postMessage(channelId, prefix + i);
+        }
+    }
+
+    private static List<Message> history(Node node, String channelId) {
+        return node.chatService.streamMessages(channelId, 0).collectList().block();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private class Node {
+        private final InMemoryMessageRepository messageRepository;
+        private final InMemoryChannelRepository channelRepository;
+        private final TcpMessageBus bus;
+        private final ChannelPostingExecutor postingExecutor = new ChannelPostingExecutor();
+        private final ReadMarkerTracker readMarkerTracker = new ReadMarkerTracker(new InMemoryReadMarkerRepository(), new ReadMarkerProperties());
+        private final ChatService chatService;
+
+        private Node(@Nullable Integer sequencerPort) {
+            this(sequencerPort, new InMemoryMessageRepository(), null);
+        }
+
+        private Node(@Nullable Integer sequencerPort, InMemoryMessageRepository messageRepository,
+                     @Nullable InMemoryChannelRepository channelRepository) {
+            this.messageRepository = messageRepository;
+            this.channelRepository = channelRepository != null ? channelRepository : new InMemoryChannelRepository(messageRepository);
+            var busProperties = new BusProperties();
+            busProperties.setType(BusProperties.BusType.TCP);
+            busProperties.setPort(0);
+            busProperties.setReconnectDelay(Duration.ofMillis(50));
+            if (sequencerPort != null) {
+                busProperties.setSequencer("127.0.0.1:" + sequencerPort);
+            }
+            bus = new TcpMessageBus(busProperties, messageRepository, this.channelRepository);
+
+            var deliveryProperties = new DeliveryProperties();
+            deliveryProperties.setMaxBatchDelay(Duration.ZERO);
+            deliveryProperties.setQueueSize(100_000);
+            var sinkRegistry = new ChannelSinkRegistry(deliveryProperties);
+            var clock = Clock.systemUTC();
+            var metrics = new ChatMetrics(new SimpleMeterRegistry(), messageRepository, sinkRegistry, clock);
+            chatService = new ChatService(messageRepository, this.channelRepository, sinkRegistry, bus, metrics, postingExecutor,
+                    readMarkerTracker, new PostRateLimiter(), clock);
+            chatService.afterPropertiesSet();
+            nodes.add(this);
+        }
+
+        private void close() throws InterruptedException {
+            bus.destroy();
+            postingExecutor.destroy();
+            readMarkerTracker.destroy();
+        }
+    }
+}
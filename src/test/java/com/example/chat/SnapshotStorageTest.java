@@ -0,0 +1,56 @@
+package com.example.chat;
+
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import com.example.chat.repository.impl.SnapshotWriter;
+import com.example.chat.service.ChatService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+public class SnapshotStorageTest {
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    ChatService chatService;
+
+    @Autowired
+    SnapshotWriter snapshotWriter;
+
+    @DynamicPropertySource
+    static void snapshotDirectory(DynamicPropertyRegistry registry) {
+        registry.add("chat.storage.snapshot-directory", () -> directory.toString());
+    }
+
+    @Test
+    void snapshots_are_written_when_a_snapshot_directory_is_configured() {
+        var channel = chatService.createChannel("Snapshotted");
+        chatService.postMessage(channel.getId(), "Hello, snapshot!");
+
+        snapshotWriter.writeSnapshots();
+
+        assertThat(directory.resolve("channels.snapshot")).exists();
+        assertThat(directory.resolve("messages").resolve(channel.getId() + ".snapshot")).exists();
+    }
+
+    @Test
+    void pending_read_markers_are_flushed_into_the_final_snapshot() throws InterruptedException {
+        var channel = chatService.createChannel("Read");
+        var message = chatService.postMessageAsync(channel.getId(), "Hello, reader!").block();
+        chatService.markRead("user1", channel.getId(), message.getSequenceNumber());
+
+        snapshotWriter.destroy();
+
+        var restored = new InMemoryReadMarkerRepository(directory);
+        assertThat(restored.findSequenceNumber("user1", channel.getId())).isEqualTo(message.getSequenceNumber());
+    }
+}
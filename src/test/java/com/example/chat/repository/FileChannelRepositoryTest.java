@@ -0,0 +1,70 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.Channel;
+import com.example.chat.model.NewChannel;
+import com.example.chat.repository.impl.AppendOnlyLog;
+import com.example.chat.repository.impl.FileChannelRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileChannelRepositoryTest {
+
+    @TempDir
+    Path directory;
+    private MessageRepository messageRepoMock;
+    private FileChannelRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        messageRepoMock = Mockito.mock(MessageRepository.class);
+        repo = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    @Test
+    void channels_are_restored_after_restart() {
+        var channel1 = repo.save(new NewChannel("channel1"));
+        var channel2 = repo.save(new NewChannel("channel2"));
+        repo.close();
+
+        repo = open();
+
+        assertThat(repo.findAll()).containsExactly(channel1, channel2);
+        assertThat(repo.exists(channel1.getId())).isTrue();
+    }
+
+    @Test
+    void a_replicated_channel_is_logged_once() {
+        var channel = new Channel("channel-id", "replicated");
+        repo.replicate(channel);
+        repo.replicate(channel);
+        repo.close();
+
+        var log = new AppendOnlyLog(directory, 4096, 1, Duration.ofMillis(100));
+        var records = new AtomicInteger();
+        log.replay((position, record) -> records.incrementAndGet());
+        log.close();
+        assertThat(records).hasValue(1);
+
+        repo = open();
+        repo.replicate(channel);
+        assertThat(repo.findAll()).containsExactly(channel);
+    }
+
+    private FileChannelRepository open() {
+        return new FileChannelRepository(messageRepoMock, new AppendOnlyLog(directory, 4096, 1, Duration.ofMillis(100)));
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.chat.repository;
+
+import com.example.chat.exception.MessageNotFoundException;
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.AppendOnlyLog;
+import com.example.chat.repository.impl.FileMessageRepository;
+import com.example.chat.repository.impl.TimeOrderedIds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FileMessageRepositoryTest {
+
+    private static final String CHANNEL1 = "channel1";
+    private static final String CHANNEL2 = "channel2";
+    private static final Instant TIMESTAMP = Instant.ofEpochSecond(1707380158L, 462_123_456);
+
+    @TempDir
+    Path directory;
+    private FileMessageRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        repo = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    @Test
+    void repository_is_empty_at_first() {
+        assertThat(repo.findLatest(CHANNEL1, 10)).isEmpty();
+    }
+
+    @Test
+    void repository_can_save_and_retrieve_messages() {
+        var message1 = repo.save(new NewMessage("message1", CHANNEL1, "user1", TIMESTAMP));
+        var message2 = repo.save(new NewMessage("message2", CHANNEL1, "user2", TIMESTAMP));
+        var message3 = repo.save(new NewMessage("message3", CHANNEL2, "user3", TIMESTAMP));
+
+        assertThat(message1.getSequenceNumber()).isEqualTo(1L);
+        assertThat(message2.getSequenceNumber()).isEqualTo(2L);
+        assertThat(message3.getSequenceNumber()).isEqualTo(1L);
+        assertThat(repo.findLatest(CHANNEL1, 10)).usingRecursiveFieldByFieldElementComparator().containsExactly(message1, message2);
+        assertThat(repo.findLatest(CHANNEL2, 10)).usingRecursiveFieldByFieldElementComparator().containsExactly(message3);
+    }
+
+    @Test
+    void repository_can_retrieve_limited_number_of_messages_after_a_certain_message() {
+        var saved = saveMessages(CHANNEL1, 300);
+
+        assertThat(repo.findLatest(CHANNEL1, 5)).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(saved.subList(295, 300));
+        assertThat(repo.findLatest(CHANNEL1, 1000, saved.get(99).getMessageId())).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(saved.subList(100, 300));
+        assertThat(repo.findLatest(CHANNEL1, 1000, saved.get(299).getMessageId())).isEmpty();
+    }
+
+    @Test
+    void history_and_sequence_numbers_are_restored_after_restart() {
+        var saved = saveMessages(CHANNEL1, 150);
+        saveMessages(CHANNEL2, 3);
+        repo.close();
+
+        repo = open();
+        var next = repo.save(new NewMessage("after restart", CHANNEL1, "user1", TIMESTAMP));
+
+        assertThat(next.getSequenceNumber()).isEqualTo(151L);
+        assertThat(repo.findLatest(CHANNEL1, 1000, saved.get(10).getMessageId())).hasSize(140);
+        assertThat(repo.findLatest(CHANNEL2, 10)).hasSize(3);
+    }
+
+    @Test
+    void torn_tail_is_truncated_on_startup() throws IOException {
+        var saved = saveMessages(CHANNEL1, 3);
+        repo.close();
+        try (var files = Files.list(directory)) {
+            var segment = files.sorted().reduce((first, second) -> second).orElseThrow();
+            Files.write(segment, new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+        }
+
+        repo = open();
+
+        assertThat(repo.findLatest(CHANNEL1, 10)).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(saved);
+        assertThat(repo.save(new NewMessage("message", CHANNEL1, "user1", TIMESTAMP)).getSequenceNumber()).isEqualTo(4L);
+    }
+
+    @Test
+    void batches_are_linked_into_the_channel_history() {
+        var before = saveMessages(CHANNEL1, 70);
+        var batch = repo.saveAll(List.of(
+                new NewMessage("batch1", CHANNEL1, "user1", TIMESTAMP),
+                new NewMessage("other", CHANNEL2, "user1", TIMESTAMP),
+                new NewMessage("batch2", CHANNEL1, "user1", TIMESTAMP)));
+        var after = repo.save(new NewMessage("after", CHANNEL1, "user1", TIMESTAMP));
+        repo.close();
+
+        repo = open();
+
+        assertThat(repo.findLatest(CHANNEL1, 4)).extracting(Message::getMessage).containsExactly("message69", "batch1", "batch2", "after");
+        assertThat(repo.findLatest(CHANNEL1, 100, before.get(68).getMessageId())).extracting(Message::getSequenceNumber).containsExactly(70L, 71L, 72L, 73L);
+        assertThat(repo.findLatest(CHANNEL2, 10)).usingRecursiveFieldByFieldElementComparator().containsExactly(batch.get(2));
+        assertThat(after.getSequenceNumber()).isEqualTo(73L);
+    }
+
+    @Test
+    void cursors_issued_before_time_ordered_ids_are_still_accepted() {
+        var legacyId = UUID.randomUUID().toString();
+        try (var log = new AppendOnlyLog(directory.resolve("legacy"), 4096, 16, Duration.ofMillis(100))) {
+            long position = log.append(legacyRecord(-1, 1, legacyId, "legacy1"));
+            log.append(legacyRecord(position, 2, UUID.randomUUID().toString(), "legacy2"));
+        }
+        repo.close();
+        repo = open(directory.resolve("legacy"));
+
+        var message3 = repo.save(new NewMessage("message3", CHANNEL1, "user1", TIMESTAMP));
+
+        assertThat(repo.findLatest(CHANNEL1, 10, legacyId)).extracting(Message::getMessage).containsExactly("legacy2", "message3");
+        assertThat(repo.findLatest(CHANNEL1, 10, message3.getMessageId())).isEmpty();
+        assertThat(message3.getMessageId()).hasSize(TimeOrderedIds.LENGTH);
+    }
+
+    @Test
+    void cursor_of_another_channel_with_a_colliding_tag_is_not_accepted() {
+        var message1 = repo.save(new NewMessage("message1", CHANNEL1, "user1", TIMESTAMP));
+        repo.save(new NewMessage("message2", CHANNEL1, "user1", TIMESTAMP));
+        var colliding = collidingChannel(message1.getMessageId());
+        var later = TIMESTAMP.plusSeconds(60);
+        repo.save(new NewMessage("other1", colliding, "user2", later));
+        repo.save(new NewMessage("other2", colliding, "user2", later));
+
+        assertThat(TimeOrderedIds.sequenceNumber(message1.getMessageId(), colliding)).isEqualTo(1);
+        assertThat(repo.findLatest(colliding, 10, message1.getMessageId())).extracting(Message::getMessage).containsExactly("other1", "other2");
+        assertThat(repo.findAround(colliding, message1.getMessageId(), 1)).isEmpty();
+    }
+
+    private static String collidingChannel(String messageId) {
+        for (int i = 0; ; i++) {
+            var channelId = "channel-" + i;
+            if (!channelId.equals(CHANNEL1) && TimeOrderedIds.sequenceNumber(messageId, channelId) > 0) {
+                return channelId;
+            }
+        }
+    }
+
+    @Test
+    void history_can_be_paged_backwards_and_around_a_message() {
+        var saved = saveMessages(CHANNEL1, 200);
+
+        assertThat(repo.findBefore(CHANNEL1, 130, 3)).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(saved.subList(126, 129));
+        assertThat(repo.findBefore(CHANNEL1, 3, 10)).extracting(Message::getSequenceNumber).containsExactly(1L, 2L);
+        assertThat(repo.findBefore(CHANNEL1, 1, 10)).isEmpty();
+        assertThat(repo.findAround(CHANNEL1, saved.get(63).getMessageId(), 1)).extracting(Message::getSequenceNumber).containsExactly(63L, 64L, 65L);
+        assertThat(repo.findAround(CHANNEL1, saved.get(199).getMessageId(), 1)).extracting(Message::getSequenceNumber).containsExactly(199L, 200L);
+        assertThat(repo.findAround(CHANNEL1, "unknown", 1)).isEmpty();
+    }
+
+    @Test
+    void history_can_be_streamed_from_a_cursor() {
+        var saved = saveMessages(CHANNEL1, 600);
+
+        assertThat(repo.findAfter(CHANNEL1, 130, 3)).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(saved.subList(130, 133));
+        assertThat(repo.findAfter(CHANNEL1, 600, 3)).isEmpty();
+        assertThat(repo.streamFrom(CHANNEL1, 40).collectList().block())
+                .usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(saved.subList(40, 600));
+    }
+
+    @Test
+    void search_index_is_rebuilt_on_restart() {
+        var saved = saveMessages(CHANNEL1, 100);
+        repo.close();
+
+        repo = open();
+
+        assertThat(repo.search(CHANNEL1, "MESSAGE99", 10)).usingRecursiveFieldByFieldElementComparator().containsExactly(saved.get(99));
+        var first = repo.save(new NewMessage("hello world", CHANNEL1, "user1", TIMESTAMP));
+        var second = repo.save(new NewMessage("Hello again", CHANNEL1, "user1", TIMESTAMP));
+        assertThat(repo.search(CHANNEL1, "hello", 10)).usingRecursiveFieldByFieldElementComparator().containsExactly(second, first);
+        assertThat(repo.search(CHANNEL1, "hello", 10, second.getSequenceNumber())).usingRecursiveFieldByFieldElementComparator().containsExactly(first);
+    }
+
+    @Test
+    void edits_and_deletions_are_read_back_and_survive_a_restart() {
+        var saved = saveMessages(CHANNEL1, 100);
+        var edited = repo.edit(CHANNEL1, 70, "edited once");
+        var editedTwice = repo.edit(CHANNEL1, 70, "edited twice");
+        repo.edit(CHANNEL1, 5, "secret edit");
+        var deleted = repo.delete(CHANNEL1, 5);
+
+        assertThat(edited.getRevision()).isEqualTo(1);
+        assertThat(editedTwice.getRevision()).isEqualTo(2);
+        assertThat(editedTwice.getEditedAt()).isNotNull();
+        assertThat(deleted.isDeleted()).isTrue();
+        assertThat(deleted.getMessage()).isNull();
+        assertThat(deleted.getRevision()).isEqualTo(2);
+        for (int restarts = 0; restarts < 2; restarts++) {
+            assertThat(repo.findBefore(CHANNEL1, 72, 3)).extracting(Message::getMessage).containsExactly("message68", "edited twice", "message70");
+            assertThat(repo.findAfter(CHANNEL1, 3, 3)).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactly(saved.get(3), deleted, saved.get(5));
+            assertThat(repo.findRevisions(CHANNEL1, 70)).extracting(Message::getMessage).containsExactly("message69", "edited once", "edited twice");
+            assertThat(repo.findRevisions(CHANNEL1, 70)).extracting(Message::getMessageId).containsOnly(saved.get(69).getMessageId());
+            assertThat(repo.findRevisions(CHANNEL1, 5)).usingRecursiveFieldByFieldElementComparator().containsExactly(deleted);
+            assertThat(repo.findRevisions(CHANNEL1, 101)).isEmpty();
+            assertThat(repo.search(CHANNEL1, "twice", 10)).extracting(Message::getSequenceNumber).containsExactly(70L);
+            assertThat(repo.search(CHANNEL1, "once", 10)).isEmpty();
+            assertThat(repo.search(CHANNEL1, "message69", 10)).isEmpty();
+            assertThat(repo.search(CHANNEL1, "secret", 10)).isEmpty();
+            assertThat(repo.search(CHANNEL1, "message4", 10)).isEmpty();
+            repo.close();
+            repo = open();
+        }
+        assertThat(repo.save(new NewMessage("next", CHANNEL1, "user1", TIMESTAMP)).getSequenceNumber()).isEqualTo(101L);
+    }
+
+    @Test
+    void revisions_and_ids_are_stamped_by_the_clock() {
+        var now = Instant.ofEpochSecond(1707380200L, 123_000_000);
+        var clocked = new FileMessageRepository(new AppendOnlyLog(directory.resolve("clocked"), 4096, 16, Duration.ofMillis(100)),
+                Clock.fixed(now, ZoneOffset.UTC));
+        try {
+            var saved = clocked.save(new NewMessage("message", CHANNEL1, "user1", null));
+
+            assertThat(TimeOrderedIds.epochMillis(saved.getMessageId())).isEqualTo(now.toEpochMilli());
+            assertThat(clocked.edit(CHANNEL1, 1, "edited").getEditedAt()).isEqualTo(now);
+            assertThat(clocked.delete(CHANNEL1, 1).getEditedAt()).isEqualTo(now);
+        } finally {
+            clocked.close();
+        }
+    }
+
+    @Test
+    void missing_and_deleted_messages_cannot_be_revised() {
+        saveMessages(CHANNEL1, 3);
+        repo.delete(CHANNEL1, 2);
+
+        assertThatThrownBy(() -> repo.edit(CHANNEL1, 2, "again")).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.delete(CHANNEL1, 2)).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.edit(CHANNEL1, 4, "missing")).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.edit(CHANNEL1, 0, "missing")).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.delete(CHANNEL2, 1)).isInstanceOf(MessageNotFoundException.class);
+    }
+
+    @Test
+    void revisions_are_passed_to_save_listeners() {
+        var received = new ArrayList<Message>();
+        repo.addSaveListener(received::add);
+        saveMessages(CHANNEL1, 1);
+
+        var edited = repo.edit(CHANNEL1, 1, "edited");
+        var deleted = repo.delete(CHANNEL1, 1);
+
+        assertThat(received).hasSize(3);
+        assertThat(received.subList(1, 3)).containsExactly(edited, deleted);
+    }
+
+    @Test
+    void replicated_messages_keep_their_ids_and_revisions_and_survive_a_restart() {
+        var source = open(directory.resolve("source"));
+        try {
+            for (int i = 0; i < 5; i++) {
+                source.save(new NewMessage("message" + i, CHANNEL1, "user1", TIMESTAMP));
+            }
+            source.edit(CHANNEL1, 2, "edited once");
+            source.edit(CHANNEL1, 2, "edited twice");
+            source.delete(CHANNEL1, 4);
+            var received = new ArrayList<Message>();
+            repo.addSaveListener(received::add);
+
+            var revisions = new ArrayList<>(source.findAfter(CHANNEL1, 0, 1));
+            revisions.addAll(source.findRevisions(CHANNEL1, 2));
+            revisions.addAll(source.findAfter(CHANNEL1, 2, 10));
+            revisions.addAll(source.findRevisions(CHANNEL1, 4));
+            assertThat(repo.replicate(CHANNEL1, revisions)).hasSize(7);
+            assertThat(repo.replicate(CHANNEL1, source.findAfter(CHANNEL1, 0, 10))).isEmpty();
+            assertThat(received).hasSize(7);
+
+            for (int restarts = 0; restarts < 2; restarts++) {
+                assertThat(repo.findAfter(CHANNEL1, 0, 10)).usingRecursiveFieldByFieldElementComparator()
+                        .containsExactlyElementsOf(source.findAfter(CHANNEL1, 0, 10));
+                assertThat(repo.findRevisions(CHANNEL1, 2)).usingRecursiveFieldByFieldElementComparator()
+                        .containsExactlyElementsOf(source.findRevisions(CHANNEL1, 2));
+                assertThat(repo.search(CHANNEL1, "twice", 10)).extracting(Message::getSequenceNumber).containsExactly(2L);
+                assertThat(repo.search(CHANNEL1, "message3", 10)).isEmpty();
+                repo.close();
+                repo = open();
+            }
+            assertThat(repo.save(new NewMessage("next", CHANNEL1, "user1", TIMESTAMP)).getSequenceNumber()).isEqualTo(6L);
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    void replicating_past_a_gap_starts_the_channel_over_and_survives_a_restart() {
+        saveMessages(CHANNEL1, 3);
+        var messages = new ArrayList<Message>();
+        for (long sequenceNumber = 100; sequenceNumber <= 102; sequenceNumber++) {
+            var message = new Message();
+            message.setChannelId(CHANNEL1);
+            message.setSequenceNumber(sequenceNumber);
+            message.setMessageId(TimeOrderedIds.messageId(TIMESTAMP.toEpochMilli(), CHANNEL1, sequenceNumber));
+            message.setMessage("replicated" + sequenceNumber);
+            message.setTimestamp(TIMESTAMP);
+            messages.add(message);
+        }
+        var revision = new Message();
+        revision.setChannelId(CHANNEL1);
+        revision.setSequenceNumber(50L);
+        revision.setRevision(1);
+        revision.setEditedAt(TIMESTAMP);
+        revision.setMessage("evicted");
+
+        assertThat(repo.replicate(CHANNEL1, messages)).hasSize(3);
+        assertThat(repo.replicate(CHANNEL1, List.of(revision))).isEmpty();
+        for (int restarts = 0; restarts < 2; restarts++) {
+            assertThat(repo.findLatest(CHANNEL1, 10)).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(messages);
+            assertThat(repo.findBefore(CHANNEL1, 101, 10)).extracting(Message::getSequenceNumber).containsExactly(100L);
+            assertThat(repo.findAfter(CHANNEL1, 0, 1)).extracting(Message::getSequenceNumber).containsExactly(100L);
+            assertThat(repo.findAround(CHANNEL1, messages.get(0).getMessageId(), 5)).hasSize(3);
+            assertThat(repo.count(CHANNEL1)).isEqualTo(3);
+            assertThat(repo.search(CHANNEL1, "message1", 10)).isEmpty();
+            assertThat(repo.search(CHANNEL1, "replicated101", 10)).extracting(Message::getSequenceNumber).containsExactly(101L);
+            assertThatThrownBy(() -> repo.edit(CHANNEL1, 2, "evicted")).isInstanceOf(MessageNotFoundException.class);
+            repo.close();
+            repo = open();
+        }
+        assertThat(repo.save(new NewMessage("next", CHANNEL1, "user1", TIMESTAMP)).getSequenceNumber()).isEqualTo(103L);
+    }
+
+    @Test
+    void fetch_max_must_not_be_less_than_one() {
+        assertThatThrownBy(() -> repo.findLatest(CHANNEL1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private FileMessageRepository open() {
+        return open(directory);
+    }
+
+    private FileMessageRepository open(Path directory) {
+        return new FileMessageRepository(new AppendOnlyLog(directory, 4096, 16, Duration.ofMillis(100)));
+    }
+
+    private static ByteBuffer legacyRecord(long previousPosition, long sequenceNumber, String messageId, String body) {
+        var fields = List.of(CHANNEL1, messageId, "user1", body);
+        var record = ByteBuffer.allocate(1024)
+                .putLong(previousPosition)
+                .putLong(sequenceNumber)
+                .put((byte) 1)
+                .putLong(TIMESTAMP.getEpochSecond())
+                .putInt(TIMESTAMP.getNano());
+        for (var field : fields) {
+            var bytes = field.getBytes(StandardCharsets.UTF_8);
+            record.putInt(bytes.length).put(bytes);
+        }
+        return record.flip();
+    }
+
+    private List<Message> saveMessages(String channelId, int count) {
+        var saved = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            saved.add(repo.save(new NewMessage("message" + i, channelId, "user1", TIMESTAMP)));
+        }
+        return saved;
+    }
+}
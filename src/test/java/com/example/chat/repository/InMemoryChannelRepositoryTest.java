@@ -6,23 +6,43 @@ import com.example.chat.model.NewChannel;
 import com.example.chat.repository.impl.InMemoryChannelRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class InMemoryChannelRepositoryTest {
 
     private ChannelRepository repo;
     private MessageRepository messageRepoMock;
+    private Consumer<Message> saveListener;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     public void setUp() {
         messageRepoMock = Mockito.mock(MessageRepository.class);
         repo = new InMemoryChannelRepository(messageRepoMock);
+        ArgumentCaptor<Consumer<Message>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(messageRepoMock).addSaveListener(listenerCaptor.capture());
+        saveListener = listenerCaptor.getValue();
     }
 
     @Test
@@ -52,18 +72,226 @@ public class InMemoryChannelRepositoryTest {
         assertThat(repo.findAll()).containsExactly(channel1, channel2);
     }
 
+    @Test
+    void channels_are_sorted_by_name_regardless_of_creation_order() {
+        var channelB = repo.save(new NewChannel("b"));
+        var channelC = repo.save(new NewChannel("c"));
+        var channelA = repo.save(new NewChannel("a"));
+
+        assertThat(repo.findAll()).containsExactly(channelA, channelB, channelC);
+    }
+
     @Test
     void latest_message_is_included_when_retrieving_channels() {
         var channel1 = repo.save(new NewChannel("channel1"));
+        var message = message(channel1.getId(), 1L);
+
+        saveListener.accept(message);
+
+        assertThat(repo.findById(channel1.getId())).contains(new Channel(channel1.getId(), channel1.getName(), message));
+        assertThat(repo.findAll()).containsExactly(new Channel(channel1.getId(), channel1.getName(), message));
+    }
+
+    @Test
+    void latest_message_is_not_replaced_by_an_older_one() {
+        var channel1 = repo.save(new NewChannel("channel1"));
+        var newer = message(channel1.getId(), 2L);
+
+        saveListener.accept(newer);
+        saveListener.accept(message(channel1.getId(), 1L));
+
+        assertThat(repo.findById(channel1.getId()).map(Channel::getLastMessage)).contains(newer);
+    }
+
+    @Test
+    void existing_latest_message_is_looked_up_once_when_a_channel_is_stored() {
+        var message = message("channel1", 5L);
+        when(messageRepoMock.findLatest(anyString(), eq(1))).thenReturn(List.of(message));
+
+        var channel1 = repo.save(new NewChannel("channel1"));
+        repo.findAll();
+        repo.findAll();
+
+        assertThat(repo.findAll()).containsExactly(new Channel(channel1.getId(), channel1.getName(), message));
+        verify(messageRepoMock).findLatest(channel1.getId(), 1);
+    }
+
+    @Test
+    void retrieving_channels_does_not_query_messages() {
+        repo.save(new NewChannel("channel1"));
+        Mockito.clearInvocations(messageRepoMock);
+
+        repo.findAll();
+
+        verify(messageRepoMock, never()).findLatest(anyString(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void channel_directory_is_restored_from_a_snapshot_without_reading_messages(@TempDir Path directory) throws IOException {
+        repo = new InMemoryChannelRepository(messageRepoMock, directory);
+        ArgumentCaptor<Consumer<Message>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(messageRepoMock, Mockito.times(2)).addSaveListener(listenerCaptor.capture());
+        var channelB = repo.save(new NewChannel("b"));
+        var channelA = repo.save(new NewChannel("a"));
+        var message = message(channelB.getId(), 7L);
+        listenerCaptor.getValue().accept(message);
+        ((Snapshottable) repo).writeSnapshot();
+        Mockito.clearInvocations(messageRepoMock);
+
+        var restored = new InMemoryChannelRepository(messageRepoMock, directory);
+
+        assertThat(restored.findAll()).containsExactly(channelA, new Channel(channelB.getId(), "b", message));
+        assertThat(restored.exists(channelA.getId())).isTrue();
+        verify(messageRepoMock, never()).findLatest(anyString(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void restored_latest_message_gives_way_to_the_first_post_after_the_restart(@TempDir Path directory) throws IOException {
+        repo = new InMemoryChannelRepository(messageRepoMock, directory);
+        var channel = repo.save(new NewChannel("channel1"));
+        ArgumentCaptor<Consumer<Message>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(messageRepoMock, Mockito.times(2)).addSaveListener(listenerCaptor.capture());
+        listenerCaptor.getValue().accept(message(channel.getId(), 10L));
+        ((Snapshottable) repo).writeSnapshot();
+
+        var restored = new InMemoryChannelRepository(messageRepoMock, directory);
+        verify(messageRepoMock, Mockito.times(3)).addSaveListener(listenerCaptor.capture());
+        var edit = message(channel.getId(), 3L);
+        edit.setRevision(1);
+        listenerCaptor.getValue().accept(edit);
+        assertThat(restored.findById(channel.getId()).map(Channel::getLastMessage).map(Message::getSequenceNumber)).contains(10L);
+
+        var firstPost = message(channel.getId(), 8L);
+        listenerCaptor.getValue().accept(firstPost);
+        listenerCaptor.getValue().accept(message(channel.getId(), 7L));
+
+        assertThat(restored.findById(channel.getId()).map(Channel::getLastMessage)).contains(firstPost);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void a_deleted_last_message_is_restored_as_deleted(@TempDir Path directory) throws IOException {
+        repo = new InMemoryChannelRepository(messageRepoMock, directory);
+        var channel = repo.save(new NewChannel("channel1"));
+        ArgumentCaptor<Consumer<Message>> listenerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(messageRepoMock, Mockito.times(2)).addSaveListener(listenerCaptor.capture());
+        listenerCaptor.getValue().accept(message(channel.getId(), 7L));
+        var deleted = message(channel.getId(), 7L);
+        deleted.setMessage(null);
+        deleted.setRevision(2);
+        deleted.setEditedAt(Instant.ofEpochSecond(1707380158L, 462_123_456));
+        deleted.setDeleted(true);
+        listenerCaptor.getValue().accept(deleted);
+        ((Snapshottable) repo).writeSnapshot();
+
+        var restored = new InMemoryChannelRepository(messageRepoMock, directory);
+
+        assertThat(restored.findById(channel.getId()).map(Channel::getLastMessage)).contains(deleted);
+    }
+
+    @Test
+    void channel_snapshots_of_version_2_are_restored(@TempDir Path directory) throws IOException {
+        var timestamp = Instant.ofEpochSecond(1707380158L, 462_123_456);
+        try (var out = new DataOutputStream(Files.newOutputStream(directory.resolve("channels.snapshot")))) {
+            out.writeInt(0x43485353);
+            out.writeInt(2);
+            out.writeInt(1);
+            writeString(out, "channel-id");
+            writeString(out, "channel1");
+            out.writeBoolean(true);
+            writeString(out, "messageId7");
+            writeString(out, "channel-id");
+            out.writeLong(7);
+            writeString(out, "user");
+            writeString(out, "message");
+            out.writeBoolean(true);
+            out.writeLong(timestamp.getEpochSecond());
+            out.writeInt(timestamp.getNano());
+        }
+        var expected = message("channel-id", 7L);
+        expected.setTimestamp(timestamp);
+
+        var restored = new InMemoryChannelRepository(messageRepoMock, directory);
+
+        assertThat(restored.findAll()).containsExactly(new Channel("channel-id", "channel1", expected));
+    }
+
+    @Test
+    void channels_are_sorted_by_name_ignoring_case() {
+        var channelB = repo.save(new NewChannel("b"));
+        var channelUpperA = repo.save(new NewChannel("A"));
+        var channelC = repo.save(new NewChannel("C"));
+
+        assertThat(repo.findAll()).containsExactly(channelUpperA, channelB, channelC);
+    }
+
+    @Test
+    void pages_cover_every_channel_once_even_with_duplicate_names() {
+        var saved = new ArrayList<Channel>();
+        for (int i = 0; i < 25; i++) {
+            saved.add(repo.save(new NewChannel(i % 2 == 0 ? "Team " + (i / 5) : "team " + (i / 5))));
+        }
+
+        var paged = new ArrayList<Channel>();
+        List<Channel> page = repo.findPage(null, null, 4);
+        while (!page.isEmpty()) {
+            assertThat(page).hasSizeLessThanOrEqualTo(4);
+            paged.addAll(page);
+            var last = page.get(page.size() - 1);
+            page = repo.findPage(last.getName(), last.getId(), 4);
+        }
+
+        assertThat(paged).containsExactlyElementsOf(repo.findAll());
+        assertThat(paged).containsExactlyInAnyOrderElementsOf(saved);
+    }
+
+    @Test
+    void page_without_id_starts_after_every_channel_of_that_name() {
+        repo.save(new NewChannel("alpha"));
+        repo.save(new NewChannel("beta"));
+        repo.save(new NewChannel("Beta"));
+        var gamma = repo.save(new NewChannel("gamma"));
+
+        assertThat(repo.findPage("BETA", null, 10)).containsExactly(gamma);
+        assertThat(repo.findPage("zeta", null, 10)).isEmpty();
+    }
+
+    @Test
+    void channels_are_found_by_name_prefix_ignoring_case() {
+        var general = repo.save(new NewChannel("General"));
+        var generalHelp = repo.save(new NewChannel("general-help"));
+        repo.save(new NewChannel("gen"));
+        repo.save(new NewChannel("random"));
+        var genesis = repo.save(new NewChannel("GENESIS"));
+
+        assertThat(repo.findByNamePrefix("GENE", 10)).containsExactly(general, generalHelp, genesis);
+        assertThat(repo.findByNamePrefix("gene", 2)).containsExactly(general, generalHelp);
+        assertThat(repo.findByNamePrefix("x", 10)).isEmpty();
+        assertThat(repo.findByNamePrefix("", 10)).hasSize(5);
+    }
+
+    @Test
+    void paging_rejects_a_limit_below_one() {
+        assertThatThrownBy(() -> repo.findPage(null, null, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repo.findByNamePrefix("a", 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Message message(String channelId, long sequenceNumber) {
         var message = new Message();
-        message.setMessageId("messageId");
-        message.setChannelId(channel1.getId());
-        message.setSequenceNumber(1L);
+        message.setMessageId("messageId" + sequenceNumber);
+        message.setChannelId(channelId);
+        message.setSequenceNumber(sequenceNumber);
         message.setAuthor("user");
         message.setTimestamp(Instant.now());
         message.setMessage("message");
-
-        when(messageRepoMock.findLatest(channel1.getId(), 1)).thenReturn(List.of(message));
-        assertThat(repo.findById(channel1.getId())).contains(new Channel(channel1.getId(), channel1.getName(), message));
+        return message;
     }
 }
\ No newline at end of file
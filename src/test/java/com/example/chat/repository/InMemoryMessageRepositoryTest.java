@@ -1,15 +1,37 @@
 package com.example.chat.repository;
 
+import com.example.chat.exception.ExpiredCursorException;
+import com.example.chat.exception.MessageNotFoundException;
+import com.example.chat.model.Message;
 import com.example.chat.model.NewMessage;
 import com.example.chat.repository.impl.InMemoryMessageRepository;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 public class InMemoryMessageRepositoryTest {
 
@@ -54,6 +76,16 @@ public class InMemoryMessageRepositoryTest {
         Assertions.assertThat(repo.findLatest(CHANNEL1, 10, message1.getMessageId())).containsExactly(message2, message3);
     }
 
+    @Test
+    void message_ids_sort_chronologically_and_only_resolve_in_their_channel() {
+        var saved = saveMessages(CHANNEL1, 100, TIMESTAMP1);
+        var other = repo.save(new NewMessage("other", CHANNEL2, "user1", TIMESTAMP1));
+
+        Assertions.assertThat(saved).extracting(Message::getMessageId).isSorted();
+        Assertions.assertThat(repo.findLatest(CHANNEL1, 10, saved.get(97).getMessageId())).containsExactlyElementsOf(saved.subList(98, 100));
+        Assertions.assertThat(repo.findLatest(CHANNEL1, 2, other.getMessageId())).containsExactlyElementsOf(saved.subList(98, 100));
+    }
+
     @Test
     void repository_can_retrieve_limited_number_of_messages() {
         var message1 = repo.save(new NewMessage("message1", CHANNEL1, "user1", TIMESTAMP1));
@@ -72,8 +104,638 @@ public class InMemoryMessageRepositoryTest {
         Assertions.assertThat(repo.findLatest(CHANNEL1, 1, message1.getMessageId())).containsExactly(message3);
     }
 
+    @Test
+    void repository_can_save_a_batch_with_contiguous_sequence_numbers() {
+        var single = repo.save(new NewMessage("message0", CHANNEL1, "user1", TIMESTAMP1));
+        var batch = repo.saveAll(List.of(
+                new NewMessage("message1", CHANNEL1, "user1", TIMESTAMP2),
+                new NewMessage("message2", CHANNEL2, "user2", TIMESTAMP2),
+                new NewMessage("message3", CHANNEL1, "user1", TIMESTAMP3)));
+
+        assertThat(batch).extracting(Message::getSequenceNumber).containsExactly(2L, 3L, 1L);
+        assertThat(repo.findLatest(CHANNEL1, 10)).containsExactly(single, batch.get(0), batch.get(1));
+        assertThat(repo.findLatest(CHANNEL2, 10)).containsExactly(batch.get(2));
+    }
+
     @Test
     void fetch_max_must_not_be_less_than_one() {
         assertThatThrownBy(() -> repo.findLatest(CHANNEL1, 0)).isInstanceOf(IllegalArgumentException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void cursor_lookup_does_not_scan_the_archive() {
+        var oldest = repo.save(new NewMessage("message0", CHANNEL1, "user1", TIMESTAMP1));
+        for (int i = 1; i < 1_000_000; i++) {
+            repo.save(new NewMessage("message" + i, CHANNEL1, "user1", TIMESTAMP1));
+        }
+        var newest = repo.save(new NewMessage("message1000000", CHANNEL1, "user1", TIMESTAMP1));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 10_000; i++) {
+                assertThat(repo.findLatest(CHANNEL1, 1, oldest.getMessageId())).containsExactly(newest);
+            }
+        });
+        assertThat(repo.findLatest(CHANNEL1, 2, newest.getMessageId())).isEmpty();
+    }
+
+    @Test
+    void history_can_be_paged_backwards_in_a_channel_with_millions_of_messages() {
+        var batch = new ArrayList<NewMessage>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new NewMessage("message", CHANNEL1, "user1", TIMESTAMP1));
+        }
+        for (int i = 0; i < 2000; i++) {
+            repo.saveAll(batch);
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            long before = 2_000_001;
+            int pages = 0;
+            while (before > 1) {
+                var page = repo.findBefore(CHANNEL1, before, 500);
+                assertThat(page.get(page.size() - 1).getSequenceNumber()).isEqualTo(before - 1);
+                before = page.get(0).getSequenceNumber();
+                pages++;
+            }
+            assertThat(pages).isEqualTo(4000);
+        });
+        assertThat(repo.findBefore(CHANNEL1, 1_000_000, 3)).extracting(Message::getSequenceNumber).containsExactly(999_997L, 999_998L, 999_999L);
+        assertThat(repo.findBefore(CHANNEL1, 3, 10)).extracting(Message::getSequenceNumber).containsExactly(1L, 2L);
+        assertThat(repo.findBefore(CHANNEL1, Long.MAX_VALUE, 1)).extracting(Message::getSequenceNumber).containsExactly(2_000_000L);
+        assertThat(repo.findBefore(CHANNEL1, 1, 10)).isEmpty();
+    }
+
+    @Test
+    void messages_around_a_message_can_be_retrieved_in_a_channel_with_millions_of_messages() {
+        var batch = new ArrayList<NewMessage>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new NewMessage("message", CHANNEL1, "user1", TIMESTAMP1));
+        }
+        Message target = null;
+        for (int i = 0; i < 2000; i++) {
+            var saved = repo.saveAll(batch);
+            if (i == 1000) {
+                target = saved.get(500);
+            }
+        }
+        var messageId = target.getMessageId();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 100_000; i++) {
+                assertThat(repo.findAround(CHANNEL1, messageId, 2)).hasSize(5);
+            }
+        });
+        assertThat(repo.findAround(CHANNEL1, messageId, 2)).extracting(Message::getSequenceNumber).containsExactly(1_000_499L, 1_000_500L, 1_000_501L, 1_000_502L, 1_000_503L);
+        assertThat(repo.findAround(CHANNEL1, messageId, 0)).containsExactly(target);
+        assertThat(repo.findAround(CHANNEL2, messageId, 2)).isEmpty();
+        assertThat(repo.findAround(CHANNEL1, "unknown", 2)).isEmpty();
+    }
+
+    @Test
+    void history_can_be_streamed_in_order_on_demand() {
+        var saved = saveMessages(CHANNEL1, 1000, TIMESTAMP1);
+
+        assertThat(repo.findAfter(CHANNEL1, 10, 3)).containsExactlyElementsOf(saved.subList(10, 13));
+        assertThat(repo.findAfter(CHANNEL1, 998, 10)).containsExactly(saved.get(998), saved.get(999));
+        assertThat(repo.findAfter(CHANNEL1, 1000, 10)).isEmpty();
+        StepVerifier.create(repo.streamFrom(CHANNEL1, 10), 0)
+                .thenRequest(3)
+                .expectNextSequence(saved.subList(10, 13))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextSequence(saved.subList(13, 1000))
+                .verifyComplete();
+        StepVerifier.create(repo.streamFrom(CHANNEL2, 0)).verifyComplete();
+    }
+
+    @Test
+    void streaming_from_an_evicted_cursor_is_reported() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(4, null, 0), Clock.systemUTC(), 4);
+        var saved = saveMessages(CHANNEL1, 12, TIMESTAMP1);
+
+        StepVerifier.create(repo.streamFrom(CHANNEL1, 2)).verifyError(ExpiredCursorException.class);
+        StepVerifier.create(repo.streamFrom(CHANNEL1, 0)).expectNextSequence(saved.subList(8, 12)).verifyComplete();
+    }
+
+    @Test
+    void streaming_allocation_does_not_grow_with_history_size() {
+        var batch = new ArrayList<NewMessage>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new NewMessage("The quick brown fox jumps over the lazy dog", CHANNEL1, "user1", TIMESTAMP1));
+        }
+        for (int i = 0; i < 10; i++) {
+            repo.saveAll(batch);
+        }
+        largestAllocationBetweenMessages(repo.streamFrom(CHANNEL1, 0));
+        long small = largestAllocationBetweenMessages(repo.streamFrom(CHANNEL1, 0));
+
+        for (int i = 0; i < 190; i++) {
+            repo.saveAll(batch);
+        }
+        long large = largestAllocationBetweenMessages(repo.streamFrom(CHANNEL1, 0));
+
+        assertThat(large).isLessThan(small + MessageRepository.STREAM_CHUNK_SIZE * 64L);
+    }
+
+    @Test
+    void pages_are_read_only_and_materialized_once() {
+        var saved = saveMessages(CHANNEL1, 10, TIMESTAMP1);
+
+        var page = repo.findBefore(CHANNEL1, 8, 3);
+
+        assertThat(page).containsExactlyElementsOf(saved.subList(4, 7));
+        assertThat(page.get(0)).isSameAs(page.get(0));
+        assertThatThrownBy(() -> page.set(0, saved.get(0))).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> page.get(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void messages_around_an_evicted_message_are_reported() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(4, null, 0), Clock.fixed(TIMESTAMP1, ZoneOffset.UTC), 4);
+        var saved = saveMessages(CHANNEL1, 12, TIMESTAMP1);
+
+        assertThatThrownBy(() -> repo.findAround(CHANNEL1, saved.get(0).getMessageId(), 1)).isInstanceOf(ExpiredCursorException.class);
+        assertThat(repo.findAround(CHANNEL1, saved.get(11).getMessageId(), 2)).containsExactlyElementsOf(saved.subList(9, 12));
+        assertThat(repo.findBefore(CHANNEL1, 10, 100)).containsExactlyElementsOf(saved.subList(8, 9));
+    }
+
+    @Test
+    void messages_can_be_searched_newest_first() {
+        var message1 = repo.save(new NewMessage("Lunch at noon?", CHANNEL1, "user1", TIMESTAMP1));
+        var message2 = repo.save(new NewMessage("NOON works, see you at lunch", CHANNEL1, "user2", TIMESTAMP2));
+        var message3 = repo.save(new NewMessage("Lunch was great", CHANNEL1, "user1", TIMESTAMP3));
+        repo.save(new NewMessage("lunch", CHANNEL2, "user3", TIMESTAMP3));
+
+        assertThat(repo.search(CHANNEL1, "lunch", 10)).containsExactly(message3, message2, message1);
+        assertThat(repo.search(CHANNEL1, "Noon lunch", 10)).containsExactly(message2, message1);
+        assertThat(repo.search(CHANNEL1, "lunch dinner", 10)).isEmpty();
+        assertThat(repo.search(CHANNEL1, "!?", 10)).isEmpty();
+        assertThat(repo.search("unknown", "lunch", 10)).isEmpty();
+    }
+
+    @Test
+    void search_results_can_be_paged_with_a_cursor() {
+        var saved = new ArrayList<Message>();
+        for (int i = 0; i < 100; i++) {
+            saved.add(repo.save(new NewMessage("message " + i, CHANNEL1, "user1", TIMESTAMP1)));
+        }
+
+        var page1 = repo.search(CHANNEL1, "message", 30);
+        var page2 = repo.search(CHANNEL1, "message", 30, page1.get(page1.size() - 1).getSequenceNumber());
+
+        assertThat(page1).extracting(Message::getSequenceNumber).startsWith(100L, 99L).endsWith(71L);
+        assertThat(page2).extracting(Message::getSequenceNumber).startsWith(70L).endsWith(41L);
+        assertThat(repo.search(CHANNEL1, "42 message", 10)).containsExactly(saved.get(42));
+    }
+
+    @Test
+    void evicted_messages_leave_the_search_index() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(4, null, 0), Clock.fixed(TIMESTAMP1, ZoneOffset.UTC), 4);
+        var saved = saveMessages(CHANNEL1, 12, TIMESTAMP1);
+
+        assertThat(repo.search(CHANNEL1, "message11", 100)).containsExactly(saved.get(11));
+        assertThat(repo.search(CHANNEL1, "message0", 100)).isEmpty();
+        assertThat(repo.searchIndexBytes(CHANNEL1)).isLessThan(8 * 200);
+    }
+
+    @Test
+    void saved_messages_are_indexed_by_the_next_search_or_the_indexer_instead_of_the_poster() {
+        var inMemoryRepo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 4);
+        repo = inMemoryRepo;
+        var saved = saveMessages(CHANNEL1, 10, TIMESTAMP1);
+        saveMessages(CHANNEL2, 10, TIMESTAMP1);
+        assertThat(repo.searchIndexBytes(CHANNEL1)).isZero();
+        repo.delete(CHANNEL1, 3);
+        repo.edit(CHANNEL1, 4, "edited before indexing");
+
+        assertThat(repo.search(CHANNEL1, "message9", 10)).containsExactly(saved.get(9));
+        assertThat(repo.search(CHANNEL1, "message2", 10)).isEmpty();
+        assertThat(repo.search(CHANNEL1, "indexing", 10)).extracting(Message::getSequenceNumber).containsExactly(4L);
+        assertThat(repo.search(CHANNEL1, "message3", 10)).isEmpty();
+        assertThat(repo.searchIndexBytes(CHANNEL1)).isPositive();
+        assertThat(repo.searchIndexBytes(CHANNEL2)).isZero();
+
+        inMemoryRepo.index();
+
+        assertThat(repo.searchIndexBytes(CHANNEL2)).isPositive();
+        var next = repo.save(new NewMessage("posted later", CHANNEL1, "user1", TIMESTAMP2));
+        assertThat(repo.search(CHANNEL1, "later", 10)).containsExactly(next);
+    }
+
+    @Test
+    void search_index_overhead_per_message_is_bounded() {
+        for (int i = 0; i < 100_000; i++) {
+            repo.save(new NewMessage("status update " + (i % 1000) + " from the build agent", CHANNEL1, "user1", TIMESTAMP1));
+        }
+        ((InMemoryMessageRepository) repo).index();
+
+        assertThat(repo.searchIndexBytes(CHANNEL1) / 100_000).isBetween(1L, 100L);
+    }
+
+    @Test
+    void messages_can_be_retrieved_across_segment_boundaries() {
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 4);
+        var saved = saveMessages(CHANNEL1, 10, TIMESTAMP1);
+
+        assertThat(repo.findLatest(CHANNEL1, 7)).containsExactlyElementsOf(saved.subList(3, 10));
+        assertThat(repo.findLatest(CHANNEL1, 10, saved.get(2).getMessageId())).containsExactlyElementsOf(saved.subList(3, 10));
+    }
+
+    @Test
+    void segments_outside_the_max_messages_window_are_dropped() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(5, null, 0), Clock.systemUTC(), 4);
+        var saved = saveMessages(CHANNEL1, 10, TIMESTAMP1);
+
+        assertThat(repo.findLatest(CHANNEL1, 100)).containsExactlyElementsOf(saved.subList(4, 10));
+    }
+
+    @Test
+    void segments_older_than_max_age_are_dropped() {
+        var clock = Clock.fixed(TIMESTAMP3.plusSeconds(30), ZoneOffset.UTC);
+        repo = new InMemoryMessageRepository(new RetentionPolicy(0, Duration.ofSeconds(60), 0), clock, 4);
+        saveMessages(CHANNEL1, 4, TIMESTAMP1.minusSeconds(60));
+        var recent = saveMessages(CHANNEL1, 2, TIMESTAMP3);
+
+        assertThat(repo.findLatest(CHANNEL1, 100)).containsExactlyElementsOf(recent);
+    }
+
+    @Test
+    void segments_outside_the_max_bytes_window_are_dropped() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(0, null, 1), Clock.systemUTC(), 4);
+        var saved = saveMessages(CHANNEL1, 10, TIMESTAMP1);
+
+        assertThat(repo.findLatest(CHANNEL1, 100)).containsExactlyElementsOf(saved.subList(8, 10));
+    }
+
+    @Test
+    void retention_can_be_configured_per_channel() {
+        var inMemoryRepo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 4);
+        inMemoryRepo.setRetentionPolicy(CHANNEL1, new RetentionPolicy(1, null, 0));
+        repo = inMemoryRepo;
+        saveMessages(CHANNEL1, 10, TIMESTAMP1);
+        saveMessages(CHANNEL2, 10, TIMESTAMP1);
+
+        assertThat(repo.findLatest(CHANNEL1, 100)).hasSize(2);
+        assertThat(repo.findLatest(CHANNEL2, 100)).hasSize(10);
+    }
+
+    @Test
+    void cursor_that_fell_off_the_retained_window_is_reported() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(4, null, 0), Clock.systemUTC(), 4);
+        var saved = saveMessages(CHANNEL1, 12, TIMESTAMP1);
+
+        assertThatThrownBy(() -> repo.findLatest(CHANNEL1, 10, saved.get(0).getMessageId())).isInstanceOf(ExpiredCursorException.class);
+        assertThat(repo.findLatest(CHANNEL1, 10, saved.get(8).getMessageId())).containsExactlyElementsOf(saved.subList(9, 12));
+    }
+
+    @Test
+    void archives_are_restored_from_snapshots_on_first_access(@TempDir Path directory) throws IOException {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(20, null, 0), Clock.systemUTC(), 8, directory);
+        var saved = saveMessages(CHANNEL1, 30, TIMESTAMP1);
+        var other = saveMessages(CHANNEL2, 3, TIMESTAMP2);
+        repo.save(new NewMessage(null, CHANNEL2, null, null));
+        ((Snapshottable) repo).writeSnapshot();
+        Files.write(directory.resolve("messages").resolve(CHANNEL2 + ".snapshot"), new byte[]{1, 2, 3});
+
+        repo = new InMemoryMessageRepository(new RetentionPolicy(20, null, 0), Clock.systemUTC(), 8, directory);
+
+        assertThat(repo.findLatest(CHANNEL1, 100)).containsExactlyElementsOf(saved.subList(8, 30));
+        assertThat(repo.findLatest(CHANNEL1, 2, saved.get(27).getMessageId())).containsExactlyElementsOf(saved.subList(28, 30));
+        assertThat(repo.search(CHANNEL1, "message29", 10)).containsExactly(saved.get(29));
+        assertThat(repo.save(new NewMessage("next", CHANNEL1, "user1", TIMESTAMP3)).getSequenceNumber()).isEqualTo(31L);
+        assertThatThrownBy(() -> repo.findLatest(CHANNEL2, 10)).isInstanceOf(UncheckedIOException.class);
+        assertThat(other).hasSize(3);
+    }
+
+    @Test
+    void concurrent_first_accesses_share_one_restored_archive(@TempDir Path directory) throws IOException {
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+        var saved = saveMessages(CHANNEL1, 30, TIMESTAMP1);
+        ((Snapshottable) repo).writeSnapshot();
+
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+        var posters = new ArrayList<CompletableFuture<Message>>();
+        for (int i = 0; i < 8; i++) {
+            var text = "after restart " + i;
+            posters.add(CompletableFuture.supplyAsync(() -> repo.save(new NewMessage(text, CHANNEL1, "user1", TIMESTAMP2))));
+        }
+
+        assertThat(posters).extracting(poster -> poster.join().getSequenceNumber())
+                .containsExactlyInAnyOrder(31L, 32L, 33L, 34L, 35L, 36L, 37L, 38L);
+        assertThat(repo.findLatest(CHANNEL1, 100).subList(0, 30)).containsExactlyElementsOf(saved);
+    }
+
+    @Test
+    void messages_without_author_body_or_timestamp_survive_a_snapshot(@TempDir Path directory) throws IOException {
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+        var saved = List.of(repo.save(new NewMessage(null, CHANNEL1, null, null)), repo.save(new NewMessage("", CHANNEL1, "", TIMESTAMP1)));
+        ((Snapshottable) repo).writeSnapshot();
+
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+
+        assertThat(repo.findLatest(CHANNEL1, 10)).containsExactlyElementsOf(saved);
+    }
+
+    @Test
+    void readers_see_a_consistent_prefix_while_messages_are_saved() {
+        repo = new InMemoryMessageRepository(new RetentionPolicy(64, null, 0), Clock.systemUTC(), 16);
+        var done = new AtomicBoolean();
+        var readers = new ArrayList<CompletableFuture<Void>>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                long lastSeen = 0;
+                while (!done.get()) {
+                    var messages = repo.findLatest(CHANNEL1, 32);
+                    for (int i = 1; i < messages.size(); i++) {
+                        assertThat(messages.get(i).getSequenceNumber()).isEqualTo(messages.get(i - 1).getSequenceNumber() + 1);
+                    }
+                    if (!messages.isEmpty()) {
+                        long last = messages.get(messages.size() - 1).getSequenceNumber();
+                        assertThat(last).isGreaterThanOrEqualTo(lastSeen);
+                        lastSeen = last;
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < 200_000; i++) {
+            var saved = repo.save(new NewMessage("message" + i, CHANNEL1, "user1", TIMESTAMP1));
+            if (i % 1000 == 0) {
+                assertThat(repo.findLatest(CHANNEL1, 1)).containsExactly(saved);
+            }
+        }
+        done.set(true);
+
+        readers.forEach(CompletableFuture::join);
+    }
+
+    @Test
+    void edits_replace_the_text_and_keep_earlier_revisions() {
+        var saved = saveMessages(CHANNEL1, 3, TIMESTAMP1);
+        repo.edit(CHANNEL1, 2, "edited once");
+        var edited = repo.edit(CHANNEL1, 2, "edited twice");
+
+        assertThat(edited.getRevision()).isEqualTo(2);
+        assertThat(edited.getMessageId()).isEqualTo(saved.get(1).getMessageId());
+        assertThat(edited.getEditedAt()).isNotNull();
+        assertThat(repo.findLatest(CHANNEL1, 10)).extracting(Message::getMessage)
+                .containsExactly("message0", "edited twice", "message2");
+        assertThat(repo.findRevisions(CHANNEL1, 2)).extracting(Message::getRevision, Message::getMessage)
+                .containsExactly(Assertions.tuple(0, "message1"), Assertions.tuple(1, "edited once"), Assertions.tuple(2, "edited twice"));
+        assertThat(repo.findRevisions(CHANNEL1, 1)).containsExactly(saved.get(0));
+        assertThat(repo.search(CHANNEL1, "twice", 10)).containsExactly(edited);
+        assertThat(repo.search(CHANNEL1, "message1", 10)).isEmpty();
+    }
+
+    @Test
+    void replicated_messages_keep_their_ids_and_revisions_and_are_stored_once() {
+        var source = new InMemoryMessageRepository();
+        var saved = new ArrayList<Message>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(source.save(new NewMessage("message" + i, CHANNEL1, "user1", TIMESTAMP1)));
+        }
+        source.edit(CHANNEL1, 2, "edited once");
+        source.edit(CHANNEL1, 2, "edited twice");
+        source.delete(CHANNEL1, 4);
+        var received = new ArrayList<Message>();
+        repo.addSaveListener(received::add);
+
+        assertThat(repo.replicate(CHANNEL1, saved.subList(0, 3))).containsExactlyElementsOf(saved.subList(0, 3));
+        var revisions = new ArrayList<>(source.findRevisions(CHANNEL1, 2));
+        revisions.addAll(source.findAfter(CHANNEL1, 2, 10));
+        assertThat(repo.replicate(CHANNEL1, revisions)).hasSize(4);
+        assertThat(repo.replicate(CHANNEL1, source.findAfter(CHANNEL1, 0, 10))).isEmpty();
+
+        assertThat(repo.findAfter(CHANNEL1, 0, 10)).isEqualTo(source.findAfter(CHANNEL1, 0, 10));
+        assertThat(repo.findRevisions(CHANNEL1, 2)).isEqualTo(source.findRevisions(CHANNEL1, 2));
+        assertThat(repo.findLatest(CHANNEL1, 10, saved.get(0).getMessageId())).hasSize(4);
+        assertThat(repo.search(CHANNEL1, "twice", 10)).extracting(Message::getSequenceNumber).containsExactly(2L);
+        assertThat(received).hasSize(7);
+        assertThat(repo.save(new NewMessage("next", CHANNEL1, "user1", TIMESTAMP2)).getSequenceNumber()).isEqualTo(6L);
+    }
+
+    @Test
+    void replicating_past_a_gap_starts_the_channel_over() {
+        var source = new InMemoryMessageRepository();
+        var saved = new ArrayList<Message>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(source.save(new NewMessage("message" + i, CHANNEL1, "user1", TIMESTAMP1)));
+        }
+        repo.replicate(CHANNEL1, saved.subList(0, 2));
+
+        repo.replicate(CHANNEL1, saved.subList(3, 5));
+
+        assertThat(repo.findLatest(CHANNEL1, 10)).containsExactlyElementsOf(saved.subList(3, 5));
+    }
+
+    @Test
+    void deleted_messages_become_tombstones_whose_text_is_compacted_away() {
+        var inMemoryRepo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 4);
+        repo = inMemoryRepo;
+        var saved = saveMessages(CHANNEL1, 10, TIMESTAMP1);
+        repo.edit(CHANNEL1, 5, "secret edited");
+        inMemoryRepo.index();
+        long indexBytes = repo.searchIndexBytes(CHANNEL1);
+        var deleted = repo.delete(CHANNEL1, 5);
+
+        assertThat(deleted.isDeleted()).isTrue();
+        assertThat(deleted.getMessage()).isNull();
+        assertThat(deleted.getRevision()).isEqualTo(2);
+        assertThat(repo.findLatest(CHANNEL1, 10).get(4)).isEqualTo(deleted);
+        assertThat(repo.findRevisions(CHANNEL1, 5)).containsExactly(deleted);
+        assertThat(repo.search(CHANNEL1, "secret", 10)).isEmpty();
+        assertThat(repo.search(CHANNEL1, "message4", 10)).isEmpty();
+        assertThat(repo.search(CHANNEL1, "message3", 10)).containsExactly(saved.get(3));
+        assertThatThrownBy(() -> repo.edit(CHANNEL1, 5, "again")).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.delete(CHANNEL1, 5)).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.edit(CHANNEL1, 11, "missing")).isInstanceOf(MessageNotFoundException.class);
+        assertThatThrownBy(() -> repo.delete(CHANNEL2, 1)).isInstanceOf(MessageNotFoundException.class);
+
+        assertThat(inMemoryRepo.compact()).isEqualTo("message4".length() + 40 + "secret edited".length());
+        assertThat(inMemoryRepo.compact()).isZero();
+        assertThat(repo.searchIndexBytes(CHANNEL1)).isLessThan(indexBytes);
+        assertThat(repo.findLatest(CHANNEL1, 10).get(4)).isEqualTo(deleted);
+        assertThat(repo.findRevisions(CHANNEL1, 5)).containsExactly(deleted);
+    }
+
+    @Test
+    void pages_read_before_an_edit_keep_the_text_they_were_read_with() {
+        var inMemoryRepo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 4);
+        repo = inMemoryRepo;
+        var saved = saveMessages(CHANNEL1, 6, TIMESTAMP1);
+        var page = repo.findLatest(CHANNEL1, 6);
+
+        repo.edit(CHANNEL1, 2, "edited");
+        repo.delete(CHANNEL1, 3);
+        inMemoryRepo.compact();
+
+        assertThat(page).containsExactlyElementsOf(saved);
+    }
+
+    @Test
+    void compaction_removes_terms_of_edited_away_text_from_the_search_index() {
+        var inMemoryRepo = new InMemoryMessageRepository();
+        repo = inMemoryRepo;
+        repo.save(new NewMessage("shared initial", CHANNEL1, "user1", TIMESTAMP1));
+        inMemoryRepo.index();
+        long originalBytes = repo.searchIndexBytes(CHANNEL1);
+        repo.edit(CHANNEL1, 1, "shared interim");
+        repo.edit(CHANNEL1, 1, "shared current");
+        long editedBytes = repo.searchIndexBytes(CHANNEL1);
+
+        inMemoryRepo.compact();
+
+        assertThat(repo.searchIndexBytes(CHANNEL1)).isLessThan(editedBytes).isEqualTo(originalBytes);
+        assertThat(repo.search(CHANNEL1, "shared current", 10)).extracting(Message::getSequenceNumber).containsExactly(1L);
+        assertThat(repo.search(CHANNEL1, "initial", 10)).isEmpty();
+        assertThat(repo.findRevisions(CHANNEL1, 1)).extracting(Message::getMessage)
+                .containsExactly("shared initial", "shared interim", "shared current");
+
+        repo.edit(CHANNEL1, 1, "initial again");
+        inMemoryRepo.compact();
+
+        assertThat(repo.search(CHANNEL1, "initial", 10)).extracting(Message::getSequenceNumber).containsExactly(1L);
+        assertThat(repo.search(CHANNEL1, "shared", 10)).isEmpty();
+    }
+
+    @Test
+    void search_looks_further_back_for_matches_lost_by_edits() {
+        for (int i = 0; i < 10; i++) {
+            repo.save(new NewMessage("common " + i, CHANNEL1, "user1", TIMESTAMP1));
+        }
+        for (long sequenceNumber = 5; sequenceNumber <= 10; sequenceNumber++) {
+            repo.edit(CHANNEL1, sequenceNumber, "rewritten " + sequenceNumber);
+        }
+
+        assertThat(repo.search(CHANNEL1, "common", 2)).extracting(Message::getSequenceNumber).containsExactly(4L, 3L);
+        assertThat(repo.search(CHANNEL1, "common", 10)).extracting(Message::getSequenceNumber).containsExactly(4L, 3L, 2L, 1L);
+        assertThat(repo.search(CHANNEL1, "rewritten", 10)).hasSize(6);
+    }
+
+    @Test
+    void edits_and_tombstones_survive_a_snapshot(@TempDir Path directory) throws IOException {
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+        saveMessages(CHANNEL1, 10, TIMESTAMP1);
+        ((Snapshottable) repo).writeSnapshot();
+        repo.edit(CHANNEL1, 3, "edited");
+        repo.edit(CHANNEL1, 4, "deleted later");
+        var deleted = repo.delete(CHANNEL1, 4);
+        ((Snapshottable) repo).writeSnapshot();
+        var latest = repo.findLatest(CHANNEL1, 10);
+        var revisions = repo.findRevisions(CHANNEL1, 3);
+
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+
+        assertThat(repo.findLatest(CHANNEL1, 10)).containsExactlyElementsOf(latest);
+        assertThat(repo.findRevisions(CHANNEL1, 3)).containsExactlyElementsOf(revisions);
+        assertThat(repo.findRevisions(CHANNEL1, 4)).containsExactly(deleted);
+        assertThat(repo.search(CHANNEL1, "edited", 10)).extracting(Message::getSequenceNumber).containsExactly(3L);
+        assertThat(repo.search(CHANNEL1, "deleted", 10)).isEmpty();
+        assertThat(repo.edit(CHANNEL1, 3, "again").getRevision()).isEqualTo(2);
+    }
+
+    @Test
+    void archives_snapshotted_before_revisions_existed_are_restored(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("messages").resolve(CHANNEL1 + ".snapshot");
+        Files.createDirectories(file.getParent());
+        try (var out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x43485353);
+            out.writeInt(1);
+            writeString(out, CHANNEL1);
+            out.writeLong(1);
+            out.writeLong(2);
+            out.writeInt(1);
+            writeString(out, "user1");
+            for (int i = 1; i <= 2; i++) {
+                out.writeLong(TIMESTAMP1.toEpochMilli());
+                out.writeLong(TIMESTAMP1.getEpochSecond());
+                out.writeInt(TIMESTAMP1.getNano());
+                out.writeInt(0);
+                writeString(out, "version one " + i);
+            }
+        }
+
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+
+        assertThat(repo.findLatest(CHANNEL1, 10)).extracting(Message::getMessage).containsExactly("version one 1", "version one 2");
+        assertThat(repo.search(CHANNEL1, "one", 10)).hasSize(2);
+        assertThat(repo.edit(CHANNEL1, 2, "edited").getRevision()).isEqualTo(1);
+    }
+
+    @Test
+    void truncated_snapshot_is_reported_instead_of_read_as_an_older_version(@TempDir Path directory) throws IOException {
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+        saveMessages(CHANNEL1, 3, TIMESTAMP1);
+        ((Snapshottable) repo).writeSnapshot();
+        var file = directory.resolve("messages").resolve(CHANNEL1 + ".snapshot");
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        repo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 8, directory);
+
+        assertThatThrownBy(() -> repo.findLatest(CHANNEL1, 10)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Test
+    void readers_never_see_deleted_text_while_messages_are_deleted_and_compacted() {
+        var inMemoryRepo = new InMemoryMessageRepository(RetentionPolicy.UNLIMITED, Clock.systemUTC(), 64);
+        repo = inMemoryRepo;
+        int count = 20_000;
+        saveMessages(CHANNEL1, count, TIMESTAMP1);
+        var done = new AtomicBoolean();
+        var readers = new ArrayList<CompletableFuture<Void>>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                while (!done.get()) {
+                    for (var message : repo.findLatest(CHANNEL1, 256)) {
+                        if (message.isDeleted()) {
+                            assertThat(message.getMessage()).isNull();
+                        } else {
+                            assertThat(message.getMessage()).isEqualTo("message" + (message.getSequenceNumber() - 1));
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (long sequenceNumber = count; sequenceNumber > count - 256; sequenceNumber--) {
+            repo.delete(CHANNEL1, sequenceNumber);
+            if (sequenceNumber % 8 == 0) {
+                inMemoryRepo.compact();
+            }
+        }
+        done.set(true);
+
+        readers.forEach(CompletableFuture::join);
+        assertThat(repo.findLatest(CHANNEL1, 256)).allMatch(Message::isDeleted);
+    }
+
+    private static long largestAllocationBetweenMessages(Flux<Message> stream) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        var allocated = new long[]{threads.getThreadAllocatedBytes(threadId), 0};
+        long count = stream
+                .doOnNext(message -> {
+                    long now = threads.getThreadAllocatedBytes(threadId);
+                    allocated[1] = Math.max(allocated[1], now - allocated[0]);
+                    allocated[0] = now;
+                })
+                .count()
+                .block();
+        assertThat(count).isPositive();
+        return allocated[1];
+    }
+
+    private List<Message> saveMessages(String channelId, int count, Instant timestamp) {
+        var saved = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            saved.add(repo.save(new NewMessage("message" + i, channelId, "user1", timestamp)));
+        }
+        return saved;
+    }
+}
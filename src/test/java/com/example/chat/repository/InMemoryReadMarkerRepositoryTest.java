@@ -0,0 +1,39 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.ReadMarker;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryReadMarkerRepositoryTest {
+
+    @Test
+    void markers_start_at_zero_and_only_move_forward() {
+        var repo = new InMemoryReadMarkerRepository();
+        assertThat(repo.findSequenceNumber("alice", "channel1")).isZero();
+
+        repo.saveAll(List.of(new ReadMarker("alice", "channel1", 5), new ReadMarker("alice", "channel2", 2)));
+        repo.saveAll(List.of(new ReadMarker("alice", "channel1", 3)));
+
+        assertThat(repo.findSequenceNumber("alice", "channel1")).isEqualTo(5);
+        assertThat(repo.findSequenceNumber("alice", "channel2")).isEqualTo(2);
+        assertThat(repo.findSequenceNumber("bob", "channel1")).isZero();
+    }
+
+    @Test
+    void markers_are_restored_from_a_snapshot(@TempDir Path directory) throws IOException {
+        var repo = new InMemoryReadMarkerRepository(directory);
+        repo.saveAll(List.of(new ReadMarker("alice", "channel1", 5), new ReadMarker("bob", "channel1", 9)));
+        repo.writeSnapshot();
+
+        var restored = new InMemoryReadMarkerRepository(directory);
+        assertThat(restored.findSequenceNumber("alice", "channel1")).isEqualTo(5);
+        assertThat(restored.findSequenceNumber("bob", "channel1")).isEqualTo(9);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.Message;
+import com.example.chat.model.NewMessage;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.Instant;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageFootprintTest {
+
+    private static final String CHANNEL = "channel1";
+    private static final int MESSAGES = 20_000;
+
+    @Test
+    void archived_messages_take_a_fraction_of_the_heap_of_message_beans() {
+        var repository = new InMemoryMessageRepository();
+        var timestamp = Instant.ofEpochSecond(1707380158L, 462_123_456);
+        for (int i = 0; i < MESSAGES; i++) {
+            repository.save(new NewMessage("The quick brown fox jumps over the lazy dog", CHANNEL, "user" + i % 100, timestamp.plusMillis(i)));
+        }
+        var beans = new ArrayList<Message>(repository.findLatest(CHANNEL, MESSAGES));
+
+        long beanBytes = GraphLayout.parseInstance(beans).totalSize() / MESSAGES;
+        long repositoryBytes = GraphLayout.parseInstance(repository).totalSize();
+        long archiveBytes = (repositoryBytes - repository.searchIndexBytes(CHANNEL)) / MESSAGES;
+
+        assertThat(archiveBytes).isLessThan(beanBytes / 2);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chat.repository;
+
+import com.example.chat.repository.impl.TimeOrderedIds;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeOrderedIdsTest {
+
+    private static final String CHANNEL1 = "channel1";
+    private static final String CHANNEL2 = "channel2";
+    private static final long MILLIS = 1707380158462L;
+
+    @Test
+    void message_ids_encode_the_sequence_number_of_their_channel() {
+        var id = TimeOrderedIds.messageId(MILLIS, CHANNEL1, 123_456_789L);
+
+        assertThat(id).hasSize(TimeOrderedIds.LENGTH).matches("[0-9A-HJKMNP-TV-Z]+");
+        assertThat(TimeOrderedIds.sequenceNumber(id, CHANNEL1)).isEqualTo(123_456_789L);
+        assertThat(TimeOrderedIds.sequenceNumber(id.toLowerCase(), CHANNEL1)).isEqualTo(123_456_789L);
+        assertThat(TimeOrderedIds.sequenceNumber(id, CHANNEL2)).isEqualTo(-1);
+    }
+
+    @Test
+    void message_ids_encode_their_timestamp() {
+        var id = TimeOrderedIds.messageId(MILLIS, CHANNEL1, 42);
+
+        assertThat(TimeOrderedIds.epochMillis(id)).isEqualTo(MILLIS);
+        assertThat(TimeOrderedIds.epochMillis(TimeOrderedIds.messageId((1L << 48) - 1, CHANNEL2, Long.MAX_VALUE))).isEqualTo((1L << 48) - 1);
+    }
+
+    @Test
+    void ids_sort_chronologically() {
+        var ids = new ArrayList<String>();
+        for (int i = 1; i <= 1000; i++) {
+            ids.add(TimeOrderedIds.messageId(MILLIS + i / 10, CHANNEL1, i));
+        }
+
+        assertThat(ids).isSorted();
+        assertThat(TimeOrderedIds.randomId(MILLIS)).isLessThan(TimeOrderedIds.randomId(MILLIS + 1));
+    }
+
+    @Test
+    void other_ids_are_not_decoded() {
+        assertThat(TimeOrderedIds.sequenceNumber(UUID.randomUUID().toString(), CHANNEL1)).isEqualTo(-1);
+        assertThat(TimeOrderedIds.sequenceNumber("8ZZZZZZZZZZZZZZZZZZZZZZZZZ", CHANNEL1)).isEqualTo(-1);
+        assertThat(TimeOrderedIds.sequenceNumber("0000000000000000000000000U", CHANNEL1)).isEqualTo(-1);
+        assertThat(TimeOrderedIds.sequenceNumber(null, CHANNEL1)).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.PostingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChannelPostingExecutorTest {
+
+    private static final String CHANNEL1 = "channel1";
+    private static final String CHANNEL2 = "channel2";
+    private ChannelPostingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void tasks_of_one_channel_run_in_submission_order() {
+        executor = executor(PostingProperties.Mode.CHANNEL_SERIAL, 4);
+        var order = new CopyOnWriteArrayList<Integer>();
+
+        var futures = IntStream.range(0, 1000)
+                .mapToObj(i -> executor.submit(CHANNEL1, () -> order.add(i)))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+
+        assertThat(order).isEqualTo(IntStream.range(0, 1000).boxed().toList());
+    }
+
+    @Test
+    void a_blocked_channel_does_not_hold_up_other_channels() throws Exception {
+        executor = executor(PostingProperties.Mode.CHANNEL_SERIAL, 2);
+        var release = new CountDownLatch(1);
+
+        var blocked = executor.submit(CHANNEL1, () -> {
+            await(release);
+            return "channel1";
+        });
+        var queued = executor.submit(CHANNEL1, () -> "queued");
+
+        assertThat(executor.submit(CHANNEL2, () -> "channel2").get(5, TimeUnit.SECONDS)).isEqualTo("channel2");
+        assertThat(blocked).isNotDone();
+        assertThat(queued).isNotDone();
+
+        release.countDown();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+
+    @Test
+    void failures_complete_the_future_and_leave_the_channel_usable() {
+        executor = executor(PostingProperties.Mode.CHANNEL_SERIAL, 1);
+
+        var failed = executor.submit(CHANNEL1, () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(failed).failsWithin(5, TimeUnit.SECONDS);
+        assertThat(executor.submit(CHANNEL1, () -> "next")).succeedsWithin(5, TimeUnit.SECONDS).isEqualTo("next");
+    }
+
+    @Test
+    void idle_channel_queues_are_removed() throws InterruptedException {
+        executor = executor(PostingProperties.Mode.CHANNEL_SERIAL, 4);
+        var order = new CopyOnWriteArrayList<Integer>();
+
+        for (int round = 0; round < 100; round++) {
+            int offset = round * 10;
+            var futures = IntStream.range(0, 100)
+                    .mapToObj(i -> executor.submit("channel" + i, () -> i))
+                    .toArray(CompletableFuture[]::new);
+            var ordered = IntStream.range(offset, offset + 10)
+                    .mapToObj(i -> executor.submit(CHANNEL1, () -> order.add(i)))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+            CompletableFuture.allOf(ordered).join();
+        }
+
+        assertThat(order).isEqualTo(IntStream.range(0, 1000).boxed().toList());
+        // a drain removes its queue just after completing the last future
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.queueCount() > 0) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void caller_mode_runs_tasks_on_the_calling_thread() {
+        executor = executor(PostingProperties.Mode.CALLER, 1);
+
+        var thread = executor.submit(CHANNEL1, Thread::currentThread);
+
+        assertThat(thread).isCompletedWithValue(Thread.currentThread());
+    }
+
+    private static ChannelPostingExecutor executor(PostingProperties.Mode mode, int threads) {
+        var properties = new PostingProperties();
+        properties.setMode(mode);
+        properties.setThreads(threads);
+        return new ChannelPostingExecutor(properties);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.DeliveryProperties;
+import com.example.chat.exception.MessagesMissedException;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChannelSinkRegistryTest {
+
+    private static final String CHANNEL1 = "channel1";
+    private static final String CHANNEL2 = "channel2";
+    private ChannelSinkRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new ChannelSinkRegistry();
+    }
+
+    @Test
+    void sink_is_created_on_first_subscribe_and_removed_after_last_cancel() {
+        assertThat(registry.isActive(CHANNEL1)).isFalse();
+
+        var first = registry.subscribe(CHANNEL1).subscribe();
+        var second = registry.subscribe(CHANNEL1).subscribe();
+        assertThat(registry.isActive(CHANNEL1)).isTrue();
+        assertThat(registry.subscriberCount(CHANNEL1)).isEqualTo(2);
+
+        first.dispose();
+        assertThat(registry.subscriberCount(CHANNEL1)).isEqualTo(1);
+
+        second.dispose();
+        assertThat(registry.isActive(CHANNEL1)).isFalse();
+    }
+
+    @Test
+    void subscribers_receive_messages_of_their_channel() {
+        var message = message(CHANNEL1);
+
+        StepVerifier.create(registry.subscribe(CHANNEL1))
+                .then(() -> registry.emit(CHANNEL1, List.of(message)))
+                .assertNext(batch -> assertThat(batch.getMessages()).containsExactly(message))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void posting_to_one_channel_does_no_work_for_subscribers_of_other_channels() {
+        var delivered = new AtomicInteger();
+        var subscription = registry.subscribe(CHANNEL1)
+                .doOnNext(message -> delivered.incrementAndGet())
+                .subscribe();
+
+        var emission = registry.emit(CHANNEL2, List.of(message(CHANNEL2)));
+
+        assertThat(emission).isEqualTo(ChannelSinkRegistry.Emission.NONE);
+        assertThat(registry.isActive(CHANNEL2)).isFalse();
+        assertThat(delivered).hasValue(0);
+        subscription.dispose();
+    }
+
+    @Test
+    void channel_can_be_resubscribed_after_teardown() {
+        registry.subscribe(CHANNEL1).subscribe().dispose();
+        var message = message(CHANNEL1);
+
+        StepVerifier.create(registry.subscribe(CHANNEL1))
+                .then(() -> registry.emit(CHANNEL1, List.of(message)))
+                .assertNext(batch -> assertThat(batch.getMessages()).containsExactly(message))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void first_message_is_pushed_immediately_and_later_ones_wait_for_a_full_batch() {
+        registry = new ChannelSinkRegistry(properties(10, 3, DeliveryProperties.OverflowStrategy.DROP_OLDEST));
+
+        StepVerifier.create(registry.subscribe(CHANNEL1))
+                .then(() -> registry.emit(CHANNEL1, messages(1)))
+                .assertNext(batch -> assertThat(batch.getMessages()).hasSize(1))
+                .then(() -> registry.emit(CHANNEL1, messages(2)))
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(() -> registry.emit(CHANNEL1, messages(1)))
+                .assertNext(batch -> assertThat(batch.getMessages()).hasSize(3))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void slow_subscriber_loses_the_oldest_messages_and_learns_about_the_gap() {
+        registry = new ChannelSinkRegistry(properties(3, 10, DeliveryProperties.OverflowStrategy.DROP_OLDEST));
+        var messages = messages(5);
+
+        StepVerifier.create(registry.subscribe(CHANNEL1), 0)
+                .then(() -> assertThat(registry.emit(CHANNEL1, messages).dropped()).isEqualTo(2))
+                .thenRequest(1)
+                .assertNext(batch -> {
+                    assertThat(batch.hasGap()).isTrue();
+                    assertThat(batch.getMissed()).isEqualTo(2);
+                    assertThat(batch.getMessages()).containsExactlyElementsOf(messages.subList(2, 5));
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void slow_subscriber_is_disconnected_when_configured() {
+        registry = new ChannelSinkRegistry(properties(3, 10, DeliveryProperties.OverflowStrategy.DISCONNECT));
+        var fast = registry.subscribe(CHANNEL1).subscribe();
+
+        StepVerifier.create(registry.subscribe(CHANNEL1), 0)
+                .then(() -> assertThat(registry.emit(CHANNEL1, messages(2))).isEqualTo(ChannelSinkRegistry.Emission.NONE))
+                .then(() -> assertThat(registry.emit(CHANNEL1, messages(2))).isEqualTo(new ChannelSinkRegistry.Emission(4, 1)))
+                .expectError(MessagesMissedException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(registry.subscriberCount(CHANNEL1)).isEqualTo(1);
+        fast.dispose();
+    }
+
+    private static DeliveryProperties properties(int queueSize, int maxBatchSize, DeliveryProperties.OverflowStrategy overflow) {
+        var properties = new DeliveryProperties();
+        properties.setQueueSize(queueSize);
+        properties.setMaxBatchSize(maxBatchSize);
+        properties.setMaxBatchDelay(Duration.ofHours(1));
+        properties.setOverflow(overflow);
+        return properties;
+    }
+
+    private static List<Message> messages(int count) {
+        return IntStream.range(0, count).mapToObj(i -> message(CHANNEL1)).toList();
+    }
+
+    @Test
+    void messages_emitted_during_catch_up_follow_it() {
+        var emittedDuringCatchUp = message(CHANNEL1);
+        var catchUp = Flux.defer(() -> {
+            registry.emit(CHANNEL1, List.of(emittedDuringCatchUp));
+            return Flux.just(new MessageBatch(List.of(), 0));
+        });
+
+        StepVerifier.create(registry.subscribe(CHANNEL1, catchUp))
+                .assertNext(batch -> assertThat(batch.getMessages()).isEmpty())
+                .assertNext(batch -> assertThat(batch.getMessages()).containsExactly(emittedDuringCatchUp))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertThat(registry.isActive(CHANNEL1)).isFalse();
+    }
+
+    private static Message message(String channelId) {
+        var message = new Message();
+        message.setMessageId("messageId");
+        message.setChannelId(channelId);
+        message.setSequenceNumber(1L);
+        message.setAuthor("user");
+        message.setTimestamp(Instant.now());
+        message.setMessage("message");
+        return message;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import com.sun.management.ThreadMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChatMetricsTest {
+
+    private static final String CHANNEL1 = "channel1";
+    private SimpleMeterRegistry meterRegistry;
+    private ChatMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new ChatMetrics(meterRegistry, Mockito.mock(MessageRepository.class), new ChannelSinkRegistry(), Clock.systemUTC());
+    }
+
+    @Test
+    void disconnects_and_drops_are_counted_per_channel() {
+        metrics.subscribed(CHANNEL1);
+        metrics.recordDisconnected(CHANNEL1, 1);
+        metrics.recordDropped(CHANNEL1, 3);
+        metrics.recordDropped("unsubscribed", 5);
+
+        assertThat(meterRegistry.get("chat.delivery.disconnected").tag("channel", CHANNEL1).counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("chat.delivery.dropped").tag("channel", CHANNEL1).counter().count()).isEqualTo(3.0);
+        assertThat(meterRegistry.find("chat.delivery.dropped").counters()).hasSize(1);
+
+        metrics.unsubscribed(CHANNEL1);
+        assertThat(meterRegistry.find("chat.delivery.dropped").counters()).isEmpty();
+        assertThat(meterRegistry.find("chat.delivery.disconnected").counters()).isEmpty();
+    }
+
+    @Test
+    void delivery_lag_is_recorded_once_per_batch_in_nanoseconds() {
+        var now = Instant.ofEpochSecond(1707380158L, 462_123_456);
+        metrics = new ChatMetrics(meterRegistry, Mockito.mock(MessageRepository.class), new ChannelSinkRegistry(),
+                Clock.fixed(now, ZoneOffset.UTC));
+        var oldest = new Message();
+        oldest.setTimestamp(now.minusNanos(1_500));
+        var newest = new Message();
+        newest.setTimestamp(now.minusNanos(500));
+
+        metrics.recordDelivery(List.of(oldest, newest));
+
+        var lag = meterRegistry.get("chat.delivery.lag").timer();
+        assertThat(lag.count()).isEqualTo(1);
+        assertThat(lag.totalTime(TimeUnit.NANOSECONDS)).isEqualTo(1_500);
+    }
+
+    @Test
+    void channel_gauges_exist_only_while_the_channel_has_subscribers() {
+        metrics.subscribed(CHANNEL1);
+        metrics.subscribed(CHANNEL1);
+        assertThat(meterRegistry.find("chat.archive.messages").tag("channel", CHANNEL1).gauge()).isNotNull();
+
+        metrics.unsubscribed(CHANNEL1);
+        assertThat(meterRegistry.find("chat.archive.messages").tag("channel", CHANNEL1).gauge()).isNotNull();
+
+        metrics.unsubscribed(CHANNEL1);
+        assertThat(meterRegistry.find("chat.subscribers.active").gauges()).isEmpty();
+        assertThat(meterRegistry.find("chat.archive.messages").gauges()).isEmpty();
+        assertThat(meterRegistry.find("chat.search.index.size").gauges()).isEmpty();
+
+        metrics.subscribed(CHANNEL1);
+        assertThat(meterRegistry.find("chat.archive.messages").tag("channel", CHANNEL1).gauge()).isNotNull();
+    }
+
+    @Test
+    void recording_on_the_post_path_does_not_allocate() {
+        metrics.subscribed(CHANNEL1);
+        var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 100_000; i++) {
+            record();
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            record();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(allocated).isLessThan(64 * 1024);
+    }
+
+    private void record() {
+        metrics.recordSave(1_000);
+        metrics.recordDropped(CHANNEL1, 1);
+    }
+}
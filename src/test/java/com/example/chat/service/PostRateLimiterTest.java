@@ -0,0 +1,211 @@
+package com.example.chat.service;
+
+import com.example.chat.bus.impl.LocalMessageBus;
+import com.example.chat.configuration.RateLimitProperties;
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.exception.RateLimitExceededException;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PostRateLimiterTest {
+
+    private long now = 1_000_000_000L;
+
+    @Test
+    void an_author_can_post_a_burst_and_then_at_the_refill_rate() {
+        var limiter = limiter(10, 5, 1000, 1000);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("alice", "channel1", 1);
+        }
+        assertThatThrownBy(() -> limiter.acquire("alice", "channel1", 1))
+                .isInstanceOfSatisfying(RateLimitExceededException.class, e -> {
+                    assertThat(e.getLimit()).isEqualTo(RateLimitExceededException.Limit.AUTHOR);
+                    assertThat(e.getRetryAfter()).isEqualTo(Duration.ofMillis(100));
+                });
+
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        limiter.acquire("alice", "channel1", 1);
+        assertThatThrownBy(() -> limiter.acquire("alice", "channel1", 1)).isInstanceOf(RateLimitExceededException.class);
+        limiter.acquire("bob", "channel1", 1);
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        limiter.acquire("alice", "channel1", 5);
+    }
+
+    @Test
+    void a_channel_limit_applies_to_all_authors_and_does_not_charge_the_rejected_author() {
+        var limiter = limiter(1000, 3, 10, 4);
+        limiter.acquire("alice", "channel1", 2);
+        limiter.acquire("bob", "channel1", 2);
+
+        assertThatThrownBy(() -> limiter.acquire("carol", "channel1", 1))
+                .isInstanceOfSatisfying(RateLimitExceededException.class,
+                        e -> assertThat(e.getLimit()).isEqualTo(RateLimitExceededException.Limit.CHANNEL));
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("carol", "channel" + (i + 2), 1);
+        }
+    }
+
+    @Test
+    void a_batch_larger_than_the_burst_is_rejected_and_charges_nothing() {
+        var limiter = limiter(10, 5, 1000, 8);
+        assertThatThrownBy(() -> limiter.acquire("alice", "channel1", 6))
+                .isInstanceOfSatisfying(RateLimitExceededException.class, e -> {
+                    assertThat(e.getLimit()).isEqualTo(RateLimitExceededException.Limit.AUTHOR);
+                    assertThat(e.getRetryAfter()).isNull();
+                });
+        assertThatThrownBy(() -> limiter.acquire("alice", "channel1", 10_000)).isInstanceOf(RateLimitExceededException.class);
+
+        limiter.acquire("alice", "channel1", 5);
+        assertThatThrownBy(() -> limiter.acquire("alice", "channel1", 1)).isInstanceOf(RateLimitExceededException.class);
+    }
+
+    @Test
+    void a_batch_is_charged_in_full() {
+        var limiter = limiter(10, 5, 1000, 1000);
+        limiter.acquire("alice", "channel1", 5);
+
+        now += TimeUnit.MILLISECONDS.toNanos(400);
+        assertThatThrownBy(() -> limiter.acquire("alice", "channel1", 5))
+                .isInstanceOfSatisfying(RateLimitExceededException.class,
+                        e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofMillis(100)));
+        limiter.acquire("alice", "channel1", 4);
+    }
+
+    @Test
+    void without_an_author_limit_only_channels_are_limited() {
+        var properties = new RateLimitProperties();
+        properties.setChannel(new RateLimitProperties.Limit(1000, 3));
+        var limiter = new PostRateLimiter(properties, () -> now);
+
+        limiter.acquire("alice", "channel1", 3);
+        limiter.acquire("alice", "channel2", 3);
+        assertThatThrownBy(() -> limiter.acquire("bob", "channel1", 1))
+                .isInstanceOfSatisfying(RateLimitExceededException.class,
+                        e -> assertThat(e.getLimit()).isEqualTo(RateLimitExceededException.Limit.CHANNEL));
+        assertThat(limiter.bucketCount()).isEqualTo(2);
+    }
+
+    @Test
+    void idle_buckets_are_evicted_and_recreated_full() {
+        var limiter = limiter(10, 5, 1_000_000, 100_000);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.acquire("author" + i, "channel1", 1);
+            now += 1000;
+        }
+        limiter.acquire("busy", "channel1", 5);
+        assertThat(limiter.bucketCount()).isEqualTo(10_002);
+
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        limiter.evictIdle();
+        assertThat(limiter.bucketCount()).isEqualTo(1);
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        limiter.evictIdle();
+        assertThat(limiter.bucketCount()).isZero();
+        limiter.acquire("busy", "channel1", 5);
+    }
+
+    @Test
+    void concurrent_posters_never_exceed_the_burst() throws InterruptedException {
+        var limiter = limiter(1, 1000, 1, 1000);
+        var granted = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    try {
+                        limiter.acquire("alice", "channel1", 1);
+                        granted.incrementAndGet();
+                    } catch (RateLimitExceededException ignored) {
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertThat(granted).hasValue(1000);
+    }
+
+    @Test
+    void admitting_a_post_does_not_allocate() {
+        var limiter = limiter(1_000_000, 1000, 1_000_000, 1000);
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 100_000; i++) {
+            limiter.acquire("alice", "channel1", 1);
+            now += 1000;
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            limiter.acquire("alice", "channel1", 1);
+            now += 1000;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    @Test
+    void rejected_posts_are_reported_and_counted() throws InterruptedException {
+        var messageRepository = new InMemoryMessageRepository();
+        var channelRepository = new InMemoryChannelRepository(messageRepository);
+        var sinkRegistry = new ChannelSinkRegistry();
+        var meterRegistry = new SimpleMeterRegistry();
+        var clock = Clock.systemUTC();
+        var metrics = new ChatMetrics(meterRegistry, messageRepository, sinkRegistry, clock);
+        var readMarkerTracker = new ReadMarkerTracker(new InMemoryReadMarkerRepository(), new ReadMarkerProperties());
+        var chatService = new ChatService(messageRepository, channelRepository, sinkRegistry, new LocalMessageBus(), metrics,
+                new ChannelPostingExecutor(), readMarkerTracker, limiter(0.001, 3, 1000, 1000), clock);
+        chatService.afterPropertiesSet();
+        var channelId = chatService.createChannel("Flooded").getId();
+
+        try {
+            chatService.postMessages(channelId, List.of("message1", "message2"));
+            chatService.postMessage(channelId, "message3");
+            assertThatThrownBy(() -> chatService.postMessage(channelId, "message4")).isInstanceOf(RateLimitExceededException.class);
+            assertThatThrownBy(() -> chatService.postMessageAsync(channelId, "message5").block()).isInstanceOf(RateLimitExceededException.class);
+            assertThatThrownBy(() -> chatService.postMessages(channelId, List.of("message6", "message7"))).isInstanceOf(RateLimitExceededException.class);
+        } finally {
+            readMarkerTracker.destroy();
+        }
+
+        assertThat(messageRepository.count(channelId)).isEqualTo(3);
+        assertThat(meterRegistry.get("chat.posting.rejected").tag("limit", "author").counter().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("chat.posting.rejected").tag("limit", "channel").counter().count()).isZero();
+    }
+
+    private PostRateLimiter limiter(double authorRate, int authorBurst, double channelRate, int channelBurst) {
+        var properties = new RateLimitProperties();
+        properties.setAuthor(new RateLimitProperties.Limit(authorRate, authorBurst));
+        properties.setChannel(new RateLimitProperties.Limit(channelRate, channelBurst));
+        return new PostRateLimiter(properties, () -> now);
+    }
+}
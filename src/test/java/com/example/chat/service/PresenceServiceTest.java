@@ -0,0 +1,157 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.PresenceProperties;
+import com.example.chat.exception.InvalidChannelException;
+import com.example.chat.model.NewChannel;
+import com.example.chat.model.PresenceUpdate;
+import com.example.chat.repository.impl.InMemoryChannelRepository;
+import com.example.chat.repository.impl.InMemoryMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class PresenceServiceTest {
+
+    private long now = 1_000_000_000L;
+    private InMemoryChannelRepository channelRepository;
+    private PresenceService presenceService;
+    private String channelId;
+
+    @BeforeEach
+    void setUp() {
+        channelRepository = new InMemoryChannelRepository(new InMemoryMessageRepository());
+        channelId = channelRepository.save(new NewChannel("Presence")).getId();
+        presenceService = new PresenceService(channelRepository, new PresenceProperties(), () -> now);
+    }
+
+    @Test
+    void subscribers_get_the_current_state_and_then_one_update_per_tick() {
+        presenceService.heartbeat("alice", channelId);
+        presenceService.tick();
+
+        var updates = new ConcurrentLinkedQueue<PresenceUpdate>();
+        var subscription = presenceService.presenceUpdates(channelId).subscribe(updates::add);
+        assertThat(updates).containsExactly(new PresenceUpdate(channelId, Set.of("alice"), Set.of()));
+
+        for (int i = 0; i < 1000; i++) {
+            presenceService.typing("bob", channelId);
+            presenceService.typing("carol", channelId);
+            presenceService.heartbeat("alice", channelId);
+        }
+        presenceService.tick();
+        presenceService.tick();
+
+        assertThat(updates).hasSize(2).last()
+                .isEqualTo(new PresenceUpdate(channelId, Set.of("alice", "bob", "carol"), Set.of("bob", "carol")));
+        subscription.dispose();
+    }
+
+    @Test
+    void typing_and_presence_expire() {
+        presenceService.typing("alice", channelId);
+        presenceService.heartbeat("bob", channelId);
+        var updates = new ArrayList<PresenceUpdate>();
+        var subscription = presenceService.presenceUpdates(channelId).subscribe(updates::add);
+        presenceService.tick();
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        presenceService.tick();
+        now += TimeUnit.SECONDS.toNanos(10);
+        presenceService.heartbeat("bob", channelId);
+        now += TimeUnit.SECONDS.toNanos(15);
+        presenceService.tick();
+
+        assertThat(updates).extracting(PresenceUpdate::getOnline, PresenceUpdate::getTyping).containsExactly(
+                tuple(Set.of(), Set.of()),
+                tuple(Set.of("alice", "bob"), Set.of("alice")),
+                tuple(Set.of("alice", "bob"), Set.of()),
+                tuple(Set.of("bob"), Set.of()));
+        subscription.dispose();
+    }
+
+    @Test
+    void leaving_and_stopping_typing_take_effect_on_the_next_tick() {
+        presenceService.typing("alice", channelId);
+        presenceService.tick();
+
+        StepVerifier.create(presenceService.presenceUpdates(channelId))
+                .expectNext(new PresenceUpdate(channelId, Set.of("alice"), Set.of("alice")))
+                .then(() -> {
+                    presenceService.stoppedTyping("alice", channelId);
+                    presenceService.tick();
+                })
+                .expectNext(new PresenceUpdate(channelId, Set.of("alice"), Set.of()))
+                .then(() -> {
+                    presenceService.leave("alice", channelId);
+                    presenceService.tick();
+                })
+                .expectNext(new PresenceUpdate(channelId, Set.of(), Set.of()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void channels_nobody_is_in_or_watching_are_dropped() {
+        presenceService.heartbeat("alice", channelId);
+        var subscription = presenceService.presenceUpdates(channelId).subscribe();
+        presenceService.leave("alice", channelId);
+        presenceService.tick();
+        assertThat(presenceService.channelCount()).isEqualTo(1);
+
+        subscription.dispose();
+        presenceService.tick();
+        assertThat(presenceService.channelCount()).isZero();
+
+        presenceService.heartbeat("bob", channelId);
+        assertThat(presenceService.getOnlineUsers(channelId)).containsExactly("bob");
+    }
+
+    @Test
+    void ten_thousand_users_across_channels_are_tracked_and_published() {
+        var channelIds = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            channelIds.add(channelRepository.save(new NewChannel("channel" + i)).getId());
+        }
+        var received = new ConcurrentLinkedQueue<PresenceUpdate>();
+        var subscriptions = channelIds.stream()
+                .map(id -> presenceService.presenceUpdates(id).skip(1).subscribe(received::add))
+                .toList();
+
+        for (int round = 0; round < 10; round++) {
+            for (int user = 0; user < 10_000; user++) {
+                var id = channelIds.get(user % channelIds.size());
+                if (round % 2 == 0) {
+                    presenceService.heartbeat("user" + user, id);
+                } else {
+                    presenceService.typing("user" + user, id);
+                }
+            }
+        }
+        presenceService.tick();
+
+        assertThat(received).hasSize(channelIds.size())
+                .allSatisfy(update -> {
+                    assertThat(update.getOnline()).hasSize(100);
+                    assertThat(update.getTyping()).hasSize(100);
+                });
+        subscriptions.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void unknown_channels_are_rejected() {
+        assertThatThrownBy(() -> presenceService.heartbeat("alice", "missing")).isInstanceOf(InvalidChannelException.class);
+        assertThatThrownBy(() -> presenceService.presenceUpdates("missing")).isInstanceOf(InvalidChannelException.class);
+        assertThat(presenceService.getOnlineUsers("missing")).isEqualTo(Set.of());
+        assertThat(presenceService.channelCount()).isZero();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chat.service;
+
+import com.example.chat.configuration.ReadMarkerProperties;
+import com.example.chat.model.ReadMarker;
+import com.example.chat.repository.ReadMarkerRepository;
+import com.example.chat.repository.impl.InMemoryReadMarkerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ReadMarkerTrackerTest {
+
+    private ReadMarkerRepository repository;
+    private ReadMarkerTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        repository = Mockito.spy(new InMemoryReadMarkerRepository());
+        var properties = new ReadMarkerProperties();
+        properties.setFlushInterval(Duration.ofHours(1));
+        tracker = new ReadMarkerTracker(repository, properties);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        tracker.destroy();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scrolling_through_a_channel_stores_one_marker_per_flush() {
+        for (int sequenceNumber = 1; sequenceNumber <= 1000; sequenceNumber++) {
+            tracker.markRead("alice", "channel1", sequenceNumber);
+        }
+        tracker.markRead("bob", "channel1", 7);
+        verify(repository, never()).saveAll(any());
+        assertThat(tracker.readMarker("alice", "channel1")).isEqualTo(1000);
+
+        tracker.flush();
+        tracker.flush();
+
+        ArgumentCaptor<Collection<ReadMarker>> flushed = ArgumentCaptor.forClass(Collection.class);
+        verify(repository, times(1)).saveAll(flushed.capture());
+        assertThat(flushed.getValue()).containsExactlyInAnyOrder(
+                new ReadMarker("alice", "channel1", 1000), new ReadMarker("bob", "channel1", 7));
+        assertThat(repository.findSequenceNumber("alice", "channel1")).isEqualTo(1000);
+        assertThat(tracker.readMarker("bob", "channel1")).isEqualTo(7);
+    }
+
+    @Test
+    void markers_never_move_backwards() {
+        tracker.markRead("alice", "channel1", 10);
+        tracker.flush();
+        tracker.markRead("alice", "channel1", 4);
+        assertThat(tracker.readMarker("alice", "channel1")).isEqualTo(10);
+
+        tracker.flush();
+        assertThat(repository.findSequenceNumber("alice", "channel1")).isEqualTo(10);
+        assertThat(tracker.readMarker("alice", "channel2")).isZero();
+    }
+
+    @Test
+    void markers_that_failed_to_store_are_retried_on_the_next_flush() {
+        doThrow(new IllegalStateException("unavailable")).doCallRealMethod().when(repository).saveAll(any());
+        tracker.markRead("alice", "channel1", 3);
+
+        tracker.flush();
+        assertThat(repository.findSequenceNumber("alice", "channel1")).isZero();
+        assertThat(tracker.readMarker("alice", "channel1")).isEqualTo(3);
+
+        tracker.flush();
+        assertThat(repository.findSequenceNumber("alice", "channel1")).isEqualTo(3);
+    }
+
+    @Test
+    void pending_markers_are_stored_on_shutdown() throws InterruptedException {
+        tracker.markRead("alice", "channel1", 5);
+        tracker.destroy();
+
+        assertThat(repository.findSequenceNumber("alice", "channel1")).isEqualTo(5);
+    }
+}